@@ -9,11 +9,14 @@ import java.nio.ByteOrder;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Allocated memory (64mb) using Foreign Memory API (MemorySegment)
+ * Allocated memory (64mb unless given) using Foreign Memory API (MemorySegment). The segment is
+ * zero-filled when it is allocated, so the whole capacity is committed from the start. If a
+ * WriteBufferManager is given, the capacity is charged to it at construction and every allocation
+ * is reported to it; both are handed back on close.
  */
 public class Arena implements AutoCloseable {
 
-  private final static long ALLOCATED_MEMORY_SIZE = 64L * (1 << 20);
+  public final static long DEFAULT_CAPACITY = 64L * (1 << 20);
 
   private final static ValueLayout.OfLong BE_LONG = ValueLayout.JAVA_LONG.withOrder(
       ByteOrder.BIG_ENDIAN);
@@ -22,13 +25,39 @@ public class Arena implements AutoCloseable {
 
   private final AtomicInteger availableOffset;
   private final java.lang.foreign.Arena offHeapScope;
+  private final WriteBufferManager writeBufferManager;
+  private final long capacity;
 
   public final MemorySegment memory;
 
   public Arena() {
+    this(DEFAULT_CAPACITY, null);
+  }
+
+  public Arena(WriteBufferManager writeBufferManager) {
+    this(DEFAULT_CAPACITY, writeBufferManager);
+  }
+
+  public Arena(long capacity) {
+    this(capacity, null);
+  }
+
+  /**
+   * Offsets are ints, so the capacity is at most Integer.MAX_VALUE bytes.
+   */
+  public Arena(long capacity, WriteBufferManager writeBufferManager) {
+    if (capacity <= 0 || capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Capacity must be in [1, 2^31 - 1]: " + capacity);
+    }
     this.offHeapScope = java.lang.foreign.Arena.ofShared();
-    this.memory = offHeapScope.allocate(ALLOCATED_MEMORY_SIZE);
+    // Word aligned, so that 8-aligned offsets can be accessed with aligned 8-byte VarHandles
+    this.memory = offHeapScope.allocate(capacity, Long.BYTES);
     this.availableOffset = new AtomicInteger(0);
+    this.writeBufferManager = writeBufferManager;
+    this.capacity = capacity;
+    if (writeBufferManager != null) {
+      writeBufferManager.commit(capacity);
+    }
   }
 
   public int allocate(int sizeOfPayload) {
@@ -38,11 +67,14 @@ public class Arena implements AutoCloseable {
       alignedOffset = (current + 7) & ~7;
       next = alignedOffset + sizeOfPayload;
 
-      if (next > ALLOCATED_MEMORY_SIZE) {
+      if (next > capacity) {
         throw ArenaCapacityException.of(ErrorMessage.ARENA_IS_FULL);
       }
     } while (!availableOffset.compareAndSet(current, next));
 
+    if (writeBufferManager != null) {
+      writeBufferManager.reserve(next - current);
+    }
     return alignedOffset;
   }
 
@@ -54,6 +86,10 @@ public class Arena implements AutoCloseable {
     return availableOffset.get();
   }
 
+  public long getCapacity() {
+    return capacity;
+  }
+
   public MemorySegment readBytes(int offset, int length) {
     return memory.asSlice(offset, length);
   }
@@ -90,6 +126,10 @@ public class Arena implements AutoCloseable {
   public void close() {
     if (offHeapScope.scope().isAlive()) {
       offHeapScope.close();
+      if (writeBufferManager != null) {
+        writeBufferManager.free(availableOffset.get());
+        writeBufferManager.uncommit(capacity);
+      }
     }
   }
 
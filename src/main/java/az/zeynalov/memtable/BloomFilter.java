@@ -0,0 +1,168 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Concurrent off-heap Bloom filter over whole keys and/or a fixed-length key prefix. It is blocked:
+ * all probes of one key fall into the same 64-byte block, so a check costs one cache miss. Bits
+ * are set with an atomic OR, so writers never lock and readers never see a torn word. Memory
+ * comes from its own shared scope and is released by close.
+ */
+public class BloomFilter implements AutoCloseable {
+
+  // Average cold record footprint assumed when the filter is sized from an arena
+  private final static int AVERAGE_RECORD_SIZE = 64;
+  private final static int BLOCK_BYTES = 64;
+  private final static int BLOCK_BITS = BLOCK_BYTES * 8;
+  private final static int PROBES = 6;
+
+  private final static long KEY_SEED = 0x9E3779B97F4A7C15L;
+  private final static long PREFIX_SEED = 0xC2B2AE3D27D4EB4FL;
+
+  private final static ValueLayout.OfLong UNALIGNED_LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+  private static final VarHandle WORD_HANDLE = ValueLayout.JAVA_LONG.varHandle();
+
+  private final java.lang.foreign.Arena offHeapScope;
+  private final MemorySegment bits;
+  private final long numBlocks;
+  private final boolean wholeKey;
+  private final int prefixLength;
+
+  /**
+   * @param numBits      size of the filter, rounded up to whole blocks
+   * @param wholeKey     whether whole keys are added and checked
+   * @param prefixLength length of the key prefix that is added, 0 for none
+   */
+  public BloomFilter(long numBits, boolean wholeKey, int prefixLength) {
+    this.numBlocks = Math.max(1, (numBits + BLOCK_BITS - 1) / BLOCK_BITS);
+    this.wholeKey = wholeKey;
+    this.prefixLength = prefixLength;
+    this.offHeapScope = java.lang.foreign.Arena.ofShared();
+    this.bits = offHeapScope.allocate(numBlocks * BLOCK_BYTES, BLOCK_BYTES);
+  }
+
+  /**
+   * Sizes the filter for as many records as the arena can hold at an average record size of 64
+   * bytes, with the given number of bits per key.
+   */
+  public static BloomFilter forArena(Arena coldArena, int bitsPerKey, boolean wholeKey,
+      int prefixLength) {
+    long expectedKeys = coldArena.getCapacity() / AVERAGE_RECORD_SIZE;
+    int hashesPerKey = (wholeKey ? 1 : 0) + (prefixLength > 0 ? 1 : 0);
+    return new BloomFilter(expectedKeys * bitsPerKey * Math.max(1, hashesPerKey), wholeKey,
+        prefixLength);
+  }
+
+  public void add(MemorySegment key) {
+    if (wholeKey) {
+      set(hash(key, key.byteSize(), KEY_SEED));
+    }
+    if (prefixLength > 0 && key.byteSize() >= prefixLength) {
+      set(hash(key, prefixLength, PREFIX_SEED));
+    }
+  }
+
+  /**
+   * Returns false only if the key was definitely never added. Always true when the filter does not
+   * track whole keys.
+   */
+  public boolean mayContain(MemorySegment key) {
+    if (wholeKey) {
+      return test(hash(key, key.byteSize(), KEY_SEED));
+    }
+    if (prefixLength > 0 && key.byteSize() >= prefixLength) {
+      return test(hash(key, prefixLength, PREFIX_SEED));
+    }
+    return true;
+  }
+
+  /**
+   * Returns false only if no key starting with the given prefix was added. Prefixes of a
+   * different length than the configured one cannot be answered and return true.
+   */
+  public boolean mayContainPrefix(MemorySegment prefix) {
+    if (prefixLength == 0 || prefix.byteSize() != prefixLength) {
+      return true;
+    }
+    return test(hash(prefix, prefixLength, PREFIX_SEED));
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  public long getSizeInBytes() {
+    return bits.byteSize();
+  }
+
+  private void set(long hash) {
+    long blockOffset = blockOffset(hash);
+    int probe = (int) hash;
+    for (int i = 0; i < PROBES; i++) {
+      probe *= 0x9E3779B9;
+      int bit = probe >>> 23;
+      long wordOffset = blockOffset + ((bit >>> 6) << 3);
+      WORD_HANDLE.getAndBitwiseOr(bits, wordOffset, 1L << bit);
+    }
+  }
+
+  private boolean test(long hash) {
+    long blockOffset = blockOffset(hash);
+    int probe = (int) hash;
+    for (int i = 0; i < PROBES; i++) {
+      probe *= 0x9E3779B9;
+      int bit = probe >>> 23;
+      long wordOffset = blockOffset + ((bit >>> 6) << 3);
+      long word = (long) WORD_HANDLE.getAcquire(bits, wordOffset);
+      if ((word & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long blockOffset(long hash) {
+    return Math.multiplyHigh(hash >>> 1, numBlocks << 1) * BLOCK_BYTES;
+  }
+
+  /**
+   * 64-bit hash of the first length bytes of the key, eight bytes per step with a MurmurHash3
+   * style mix and finalizer.
+   */
+  static long hash(MemorySegment key, long length, long seed) {
+    long h = seed ^ (length * 0x9E3779B97F4A7C15L);
+    long i = 0;
+    for (; i + 8 <= length; i += 8) {
+      h ^= mix(key.get(UNALIGNED_LONG, i));
+      h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+    }
+
+    long tail = 0;
+    for (int shift = 0; i < length; i++, shift += 8) {
+      tail |= (key.get(ValueLayout.JAVA_BYTE, i) & 0xFFL) << shift;
+    }
+    h ^= mix(tail);
+
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static long mix(long k) {
+    k *= 0x87C37B91114253D5L;
+    k = Long.rotateLeft(k, 31);
+    return k * 0x4CF5AD432745937FL;
+  }
+
+  @Override
+  public void close() {
+    if (offHeapScope.scope().isAlive()) {
+      offHeapScope.close();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * MemTable layout for prefix-scoped workloads (keys such as tenant|entity|...). The first
+ * prefixLength bytes of a key are hashed into one of bucketCount buckets, and every bucket is its
+ * own skip list on the shared arena pair. Point lookups, inserts and iterators over a prefix of at
+ * least prefixLength bytes touch a single bucket, so writers to different prefixes never contend
+ * on the same index. Keys shorter than prefixLength are hashed as a whole. A full ordered scan, or
+ * a scan over a shorter prefix, merges the buckets on demand.
+ */
+public class BucketedMemTable {
+
+  private final static long BUCKET_SEED = 0x2545F4914F6CDD1DL;
+
+  private final Arena hotArena;
+  private final Arena coldArena;
+  private final SkipList[] buckets;
+  private final int prefixLength;
+  private final int mask;
+
+  /**
+   * bucketCount is rounded up to a power of two.
+   */
+  public BucketedMemTable(Arena hotArena, Arena coldArena, int bucketCount, int prefixLength) {
+    if (bucketCount <= 0 || bucketCount > 1 << 16) {
+      throw new IllegalArgumentException("bucketCount must be in [1, 65536]: " + bucketCount);
+    }
+    if (prefixLength <= 0) {
+      throw new IllegalArgumentException("prefixLength must be positive: " + prefixLength);
+    }
+
+    int size = Integer.highestOneBit(bucketCount);
+    if (size < bucketCount) {
+      size <<= 1;
+    }
+
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    this.prefixLength = prefixLength;
+    this.mask = size - 1;
+    this.buckets = new SkipList[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new SkipList(hotArena, coldArena);
+      buckets[i].init();
+    }
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
+    bucketFor(key).insert(key, SN, type, value);
+  }
+
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    return lookup(key, SN, view) != LookupStatus.NOT_FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    SkipList bucket = bucketFor(key);
+    int node = bucket.get(key, SN);
+    if (node == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    bucket.readEntry(node, view);
+    return view.getType() == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN) {
+    SkipList bucket = bucketFor(key);
+    int node = bucket.get(key, SN);
+    if (node == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    return bucket.getType(node) == RecordType.TOMBSTONE ? LookupStatus.DELETED
+        : LookupStatus.FOUND;
+  }
+
+  /**
+   * Full ordered iterator; merges the snapshot iterators of all buckets.
+   */
+  public EntryIterator newIterator(long SN, boolean includeTombstones) {
+    EntryIterator[] iterators = new EntryIterator[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      iterators[i] = new SnapshotIterator(buckets[i], SN, includeTombstones);
+    }
+    return new MergingIterator(iterators);
+  }
+
+  /**
+   * Iterator over the keys that start with the prefix. When the prefix covers the hashed part of
+   * the key only its bucket is scanned, otherwise the prefix filter runs over the merged buckets.
+   */
+  public EntryIterator newPrefixIterator(MemorySegment prefix, long SN,
+      boolean includeTombstones) {
+    if (prefix.byteSize() >= prefixLength) {
+      return new PrefixIterator(new SnapshotIterator(bucketFor(prefix), SN, includeTombstones),
+          prefix);
+    }
+    return new PrefixIterator(newIterator(SN, includeTombstones), prefix);
+  }
+
+  public int getBucketCount() {
+    return buckets.length;
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  /**
+   * Returns the index of the bucket that holds the key.
+   */
+  public int bucketOf(MemorySegment key) {
+    long length = Math.min(key.byteSize(), prefixLength);
+    return (int) BloomFilter.hash(key, length, BUCKET_SEED) & mask;
+  }
+
+  public Arena getHotArena() {
+    return hotArena;
+  }
+
+  public Arena getColdArena() {
+    return coldArena;
+  }
+
+  private SkipList bucketFor(MemorySegment key) {
+    return buckets[bucketOf(key)];
+  }
+}
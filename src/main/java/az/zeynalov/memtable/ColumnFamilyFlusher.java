@@ -0,0 +1,12 @@
+package az.zeynalov.memtable;
+
+/**
+ * Writes out the entries of one column family, typically into a sorted file of that family. The
+ * iterator is positioned on the first entry and is closed by the caller once flush returns, so
+ * nothing read from it may be kept.
+ */
+@FunctionalInterface
+public interface ColumnFamilyFlusher {
+
+  void flush(int familyId, EntryIterator entries);
+}
@@ -0,0 +1,242 @@
+package az.zeynalov.memtable;
+
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableClosedException;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MemTable layout for many small logical keyspaces (column families) in one process. All families
+ * share one hot/cold arena pair; a family is a compact id that selects its own skip list head in
+ * the shared hot arena. Keys are stored as given, without a family prefix, and a lookup or scan in
+ * one family starts from that family's head, so it never compares against or walks over nodes of
+ * another family. Creating a family costs one head node (MAX_LEVEL + 1 pointers) in the hot arena,
+ * and a flush hands every non-empty family to the flusher separately.
+ * <p>
+ * Families are created at runtime and never dropped; their ids are dense and start at 0.
+ * <p>
+ * The families are plain skip lists: there are no range deletions, expiring entries, merge
+ * operands, bloom filter, hash index or in-place updates. A family that needs them belongs in a
+ * MemTable of its own. The lifecycle is the one of MemTable: operations pin the calling thread
+ * with the shared EpochReclaimer, and close releases the shared arena pair once the open
+ * iterators are closed and the pinned readers have exited.
+ */
+public class ColumnFamilyMemTable implements AutoCloseable {
+
+  public final static int MAX_FAMILIES = 1 << 16;
+
+  private final Arena hotArena;
+  private final Arena coldArena;
+  private final Map<String, Integer> ids;
+  private final Lifecycle lifecycle;
+  // Copy-on-write, indexed by family id
+  private volatile SkipList[] families;
+
+  public ColumnFamilyMemTable(Arena hotArena, Arena coldArena) {
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    this.ids = new ConcurrentHashMap<>();
+    this.families = new SkipList[0];
+    this.lifecycle = new Lifecycle(EpochReclaimer.shared(), () -> {
+      hotArena.close();
+      coldArena.close();
+    });
+  }
+
+  /**
+   * Creates the family and returns its id.
+   */
+  public synchronized int createFamily(String name) {
+    if (lifecycle.isClosed()) {
+      throw MemTableClosedException.of(ErrorMessage.MEMTABLE_IS_CLOSED);
+    }
+    if (ids.containsKey(name)) {
+      throw new IllegalArgumentException("Column family already exists: " + name);
+    }
+    SkipList[] current = families;
+    if (current.length == MAX_FAMILIES) {
+      throw new IllegalStateException("Too many column families: " + MAX_FAMILIES);
+    }
+
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    SkipList[] next = Arrays.copyOf(current, current.length + 1);
+    next[current.length] = skipList;
+    families = next;
+    ids.put(name, current.length);
+    return current.length;
+  }
+
+  /**
+   * Returns the id of the family, or -1 if it does not exist.
+   */
+  public int getFamilyId(String name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  public int getFamilyCount() {
+    return families.length;
+  }
+
+  @SuppressWarnings("try")
+  public void put(int familyId, MemorySegment key, long SN, byte type, MemorySegment value) {
+    try (EpochReclaimer.Pin pin = lifecycle.enter()) {
+      familyOf(familyId).insert(key, SN, type, value);
+    }
+  }
+
+  public boolean get(int familyId, MemorySegment key, long SN, EntryView view) {
+    return lookup(familyId, key, SN, view) != LookupStatus.NOT_FOUND;
+  }
+
+  /**
+   * The view points into the cold arena; hold a pin() around the lookup to read it while another
+   * thread may close the memtable.
+   */
+  @SuppressWarnings("try")
+  public LookupStatus lookup(int familyId, MemorySegment key, long SN, EntryView view) {
+    try (EpochReclaimer.Pin pin = lifecycle.enter()) {
+      SkipList family = familyOf(familyId);
+      int node = family.get(key, SN);
+      if (node == -1) {
+        return LookupStatus.NOT_FOUND;
+      }
+
+      family.readEntry(node, view);
+      return view.getType() == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+    }
+  }
+
+  @SuppressWarnings("try")
+  public LookupStatus lookup(int familyId, MemorySegment key, long SN) {
+    try (EpochReclaimer.Pin pin = lifecycle.enter()) {
+      SkipList family = familyOf(familyId);
+      int node = family.get(key, SN);
+      if (node == -1) {
+        return LookupStatus.NOT_FOUND;
+      }
+
+      return family.getType(node) == RecordType.TOMBSTONE ? LookupStatus.DELETED
+          : LookupStatus.FOUND;
+    }
+  }
+
+  /**
+   * Pins the calling thread so that views filled by lookups stay valid until the pin is closed,
+   * even if another thread closes the memtable meanwhile.
+   */
+  public EpochReclaimer.Pin pin() {
+    return lifecycle.enter();
+  }
+
+  /**
+   * Ordered iterator over one family. The arenas stay alive until it is closed.
+   */
+  public EntryIterator newIterator(int familyId, long SN, boolean includeTombstones) {
+    SkipList family = familyOf(familyId);
+    lifecycle.openIterator();
+    return new CountedIterator(new SnapshotIterator(family, SN, includeTombstones));
+  }
+
+  public EntryIterator newPrefixIterator(int familyId, MemorySegment prefix, long SN,
+      boolean includeTombstones) {
+    return new PrefixIterator(newIterator(familyId, SN, includeTombstones), prefix);
+  }
+
+  /**
+   * Hands the entries visible at SN of every non-empty family to the flusher, one family at a
+   * time in id order. Tombstones are included so that they shadow older data in the output.
+   */
+  public void flush(ColumnFamilyFlusher flusher, long SN) {
+    SkipList[] current = families;
+    for (int i = 0; i < current.length; i++) {
+      try (EntryIterator entries = newIterator(i, SN, true)) {
+        entries.seekToFirst();
+        if (entries.isValid()) {
+          flusher.flush(i, entries);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the memtable closed; new iterators are refused from now on. The shared arena pair is
+   * released once the open iterators are closed and the pinned readers have exited. Calling close
+   * again does nothing.
+   */
+  @Override
+  public void close() {
+    lifecycle.close();
+  }
+
+  public boolean isClosed() {
+    return lifecycle.isClosed();
+  }
+
+  public Arena getHotArena() {
+    return hotArena;
+  }
+
+  public Arena getColdArena() {
+    return coldArena;
+  }
+
+  private SkipList familyOf(int familyId) {
+    SkipList[] current = families;
+    if (familyId < 0 || familyId >= current.length) {
+      throw new IllegalArgumentException("Unknown column family: " + familyId);
+    }
+    return current[familyId];
+  }
+
+  /**
+   * Holds one reference on the memtable from creation until the first close.
+   */
+  private final class CountedIterator implements EntryIterator {
+
+    private final EntryIterator iterator;
+    private boolean open = true;
+
+    private CountedIterator(EntryIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public void seekToFirst() {
+      iterator.seekToFirst();
+    }
+
+    @Override
+    public void seek(MemorySegment key) {
+      iterator.seek(key);
+    }
+
+    @Override
+    public void next() {
+      iterator.next();
+    }
+
+    @Override
+    public boolean isValid() {
+      return iterator.isValid();
+    }
+
+    @Override
+    public void read(EntryView view) {
+      iterator.read(view);
+    }
+
+    @Override
+    public void close() {
+      if (open) {
+        open = false;
+        iterator.close();
+        lifecycle.closeIterator();
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.function.ToIntFunction;
+
+/**
+ * Joins iterators over consecutive key ranges into one ordered stream (keys descending, as in the
+ * SkipList). Child i holds the keys below those of child i + 1, so iteration starts at the last
+ * child and moves to the previous one when a child runs out. seek asks the router which child
+ * holds the key and only seeks that one; no heap or comparison is needed, unlike in
+ * MergingIterator.
+ */
+class ConcatenatingIterator implements EntryIterator {
+
+  private final EntryIterator[] children;
+  private final ToIntFunction<MemorySegment> router;
+  // Child the iterator is on, -1 once every child is exhausted
+  private int current;
+
+  ConcatenatingIterator(EntryIterator[] children, ToIntFunction<MemorySegment> router) {
+    this.children = children;
+    this.router = router;
+    this.current = -1;
+  }
+
+  @Override
+  public void seekToFirst() {
+    current = children.length - 1;
+    children[current].seekToFirst();
+    settle();
+  }
+
+  @Override
+  public void seek(MemorySegment key) {
+    current = router.applyAsInt(key);
+    children[current].seek(key);
+    settle();
+  }
+
+  @Override
+  public void next() {
+    children[current].next();
+    settle();
+  }
+
+  @Override
+  public boolean isValid() {
+    return current >= 0;
+  }
+
+  @Override
+  public void read(EntryView view) {
+    children[current].read(view);
+  }
+
+  @Override
+  public void close() {
+    for (EntryIterator child : children) {
+      child.close();
+    }
+  }
+
+  private void settle() {
+    while (current >= 0 && !children[current].isValid()) {
+      current--;
+      if (current >= 0) {
+        children[current].seekToFirst();
+      }
+    }
+  }
+}
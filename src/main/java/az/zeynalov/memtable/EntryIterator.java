@@ -0,0 +1,26 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Ordered iterator over the entries visible to one read SN, shared by the memtable layouts. Entries
+ * come in the same order as the SkipList (keys descending) and there is at most one entry per key.
+ * seek positions on the first visible key that is not before the given key. Iterators that pin a
+ * memtable release it on close, so they should be closed once the scan is done.
+ */
+public interface EntryIterator extends AutoCloseable {
+
+  void seekToFirst();
+
+  void seek(MemorySegment key);
+
+  void next();
+
+  boolean isValid();
+
+  void read(EntryView view);
+
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,108 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Reusable holder for one record that points into the cold arena instead of copying it out. The
+ * lookup methods only store offsets and sizes here; getKey and getValue slice the arena on demand
+ * and the copy methods move the bytes into a buffer owned by the caller. The slices are views over
+ * arena memory, so they are only valid while the arenas of the memtable are open.
+ */
+public class EntryView {
+
+  private Arena arena;
+  private long SN;
+  private byte type;
+  private int keyOffset;
+  private int keySize;
+  private int valueOffset;
+  private int valueSize;
+  // Value computed by a merge operator, used instead of the arena value when set
+  private MemorySegment resolvedValue;
+  // SN of the oldest operand when the merge chain may go on in an older memtable, -1 otherwise
+  private long openMergeSN;
+
+  void set(Arena arena, long SN, byte type, int keyOffset, int keySize, int valueOffset,
+      int valueSize) {
+    this.arena = arena;
+    this.SN = SN;
+    this.type = type;
+    this.keyOffset = keyOffset;
+    this.keySize = keySize;
+    this.valueOffset = valueOffset;
+    this.valueSize = valueSize;
+    this.resolvedValue = null;
+    this.openMergeSN = -1;
+  }
+
+  /**
+   * Replaces the value with one computed outside the arena, such as the result of folding merge
+   * operands. The entry becomes a plain value. openMergeSN is the SN of the oldest operand folded
+   * if the chain reached the oldest version of the key in its memtable without finding a base
+   * value, or -1 if it ended there.
+   */
+  void setResolvedValue(MemorySegment value, long openMergeSN) {
+    this.type = RecordType.VALUE;
+    this.resolvedValue = value;
+    this.valueSize = (int) value.byteSize();
+    this.openMergeSN = openMergeSN;
+  }
+
+  long getOpenMergeSN() {
+    return openMergeSN;
+  }
+
+  public long getSN() {
+    return SN;
+  }
+
+  public byte getType() {
+    return type;
+  }
+
+  public int getKeySize() {
+    return keySize;
+  }
+
+  public int getValueSize() {
+    return valueSize;
+  }
+
+  public MemorySegment getKey() {
+    return arena.readBytes(keyOffset, keySize);
+  }
+
+  public MemorySegment getValue() {
+    if (resolvedValue != null) {
+      return resolvedValue;
+    }
+    return arena.readBytes(valueOffset, valueSize);
+  }
+
+  public void copyKey(MemorySegment destination, long offset) {
+    MemorySegment.copy(arena.getMemory(), keyOffset, destination, offset, keySize);
+  }
+
+  public void copyValue(MemorySegment destination, long offset) {
+    if (resolvedValue != null) {
+      MemorySegment.copy(resolvedValue, 0, destination, offset, valueSize);
+      return;
+    }
+    MemorySegment.copy(arena.getMemory(), valueOffset, destination, offset, valueSize);
+  }
+
+  /**
+   * Copies the value into the given array starting at offset and returns the number of bytes
+   * copied. The array must have room for getValueSize() bytes.
+   */
+  public int copyValue(byte[] destination, int offset) {
+    if (resolvedValue != null) {
+      MemorySegment.copy(resolvedValue, ValueLayout.JAVA_BYTE, 0, destination, offset, valueSize);
+      return valueSize;
+    }
+    MemorySegment.copy(arena.getMemory(), ValueLayout.JAVA_BYTE, valueOffset, destination, offset,
+        valueSize);
+    return valueSize;
+  }
+}
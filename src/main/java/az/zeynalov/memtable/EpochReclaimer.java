@@ -0,0 +1,172 @@
+package az.zeynalov.memtable;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Epoch-based reclamation for off-heap memory that lock-free readers may still be touching.
+ *
+ * <p>Every thread owns a slot, padded to its own cache line, holding the global epoch it entered
+ * at or IDLE. enter and exit only write the slot of the calling thread, so pinning never writes a
+ * shared cache line. retire first makes the object unreachable for new readers (that is up to the
+ * caller), then advances the global epoch and queues the release action with the epoch it
+ * retired at. The action runs once no slot is pinned at that epoch or an older one: every reader
+ * that could have reached the object has exited by then, and every later reader entered after
+ * the object was unreachable.
+ *
+ * <p>Pins nest; the outermost enter decides the epoch of the thread. Actions run on whichever
+ * thread notices that they became safe, either the retiring thread or the last reader to exit.
+ * Slots of threads that have died stay registered, IDLE.
+ */
+public final class EpochReclaimer {
+
+  public final static long IDLE = Long.MAX_VALUE;
+
+  private final static EpochReclaimer SHARED = new EpochReclaimer();
+
+  private final AtomicLong epoch;
+  private final CopyOnWriteArrayList<Slot> slots;
+  private final ThreadLocal<Slot> localSlot;
+  private final ConcurrentLinkedQueue<Retired> retired;
+  private final AtomicBoolean reclaiming;
+  private final Pin pin;
+  private volatile boolean pending;
+
+  public EpochReclaimer() {
+    this.epoch = new AtomicLong();
+    this.slots = new CopyOnWriteArrayList<>();
+    this.localSlot = ThreadLocal.withInitial(this::register);
+    this.retired = new ConcurrentLinkedQueue<>();
+    this.reclaiming = new AtomicBoolean();
+    this.pin = this::exit;
+  }
+
+  /**
+   * The reclaimer memtables use, so that one pin protects every memtable a reader goes through.
+   */
+  public static EpochReclaimer shared() {
+    return SHARED;
+  }
+
+  /**
+   * Pins the calling thread at the current epoch. The returned pin exits when closed, so callers
+   * can use try-with-resources; it is the same object for every call.
+   * <p>
+   * The epoch is read before the slot is published, so a retire may advance it and scan the slots
+   * in between; the pin would then protect an epoch the reclaimer has already let go of. Reading
+   * the epoch again after the store closes that gap: once both reads agree, any retire at that
+   * epoch or later scans after the slot was published.
+   */
+  public Pin enter() {
+    Slot slot = localSlot.get();
+    if (slot.depth++ == 0) {
+      long current = epoch.get();
+      do {
+        // A volatile store, so the reads of the protected structures cannot move above it
+        slot.epoch = current;
+      } while (current != (current = epoch.get()));
+    }
+    return pin;
+  }
+
+  public void exit() {
+    Slot slot = localSlot.get();
+    if (--slot.depth == 0) {
+      slot.epoch = IDLE;
+      if (pending) {
+        reclaim();
+      }
+    }
+  }
+
+  /**
+   * Epoch the calling thread is pinned at, IDLE if it is not pinned.
+   */
+  public long getPinnedEpoch() {
+    return localSlot.get().epoch;
+  }
+
+  public long getEpoch() {
+    return epoch.get();
+  }
+
+  /**
+   * Runs the action once every reader pinned at the current epoch or an older one has exited.
+   * The object it releases must already be unreachable for readers that enter from now on.
+   */
+  public void retire(Runnable action) {
+    retired.add(new Retired(epoch.getAndIncrement(), action));
+    pending = true;
+    reclaim();
+  }
+
+  /**
+   * Runs the retired actions that became safe. Does nothing if another thread is already
+   * reclaiming.
+   */
+  public void reclaim() {
+    if (!reclaiming.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long oldest = IDLE;
+      for (Slot slot : slots) {
+        oldest = Math.min(oldest, slot.epoch);
+      }
+      Iterator<Retired> iterator = retired.iterator();
+      while (iterator.hasNext()) {
+        Retired entry = iterator.next();
+        if (entry.epoch < oldest) {
+          iterator.remove();
+          entry.action.run();
+        }
+      }
+      pending = !retired.isEmpty();
+    } finally {
+      reclaiming.set(false);
+    }
+    // An action retired while this thread held the flag may have been hidden by pending = false
+    if (!retired.isEmpty()) {
+      pending = true;
+    }
+  }
+
+  /**
+   * Number of retired actions that have not run yet.
+   */
+  public int getPendingCount() {
+    return retired.size();
+  }
+
+  private Slot register() {
+    Slot slot = new Slot();
+    slots.add(slot);
+    return slot;
+  }
+
+  /**
+   * Pin of the calling thread; closing it exits.
+   */
+  @FunctionalInterface
+  public interface Pin extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+
+  private record Retired(long epoch, Runnable action) {
+  }
+
+  // Padding keeps the epochs of two threads out of the same cache line
+  @SuppressWarnings("unused")
+  private static final class Slot {
+    private long p1, p2, p3, p4, p5, p6, p7;
+    private volatile long epoch = IDLE;
+    // Only touched by the owning thread
+    private int depth;
+    private long q1, q2, q3, q4, q5, q6, q7;
+  }
+}
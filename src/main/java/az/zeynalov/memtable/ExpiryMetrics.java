@@ -0,0 +1,41 @@
+package az.zeynalov.memtable;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cold arena bytes of records written with an expiry, grouped by expiry time in buckets of a fixed
+ * granularity. Expired records stay in the arena until the memtable is flushed, so the bytes of the
+ * buckets that lie entirely in the past tell how much of the memtable is dead. A bucket is only
+ * counted once its last instant has passed, so the result never overstates the expired bytes.
+ */
+class ExpiryMetrics {
+
+  private final long granularity;
+  private final ConcurrentSkipListMap<Long, LongAdder> buckets;
+  private final LongAdder expiringBytes;
+
+  ExpiryMetrics(long granularity) {
+    this.granularity = granularity;
+    this.buckets = new ConcurrentSkipListMap<>();
+    this.expiringBytes = new LongAdder();
+  }
+
+  void record(long expiresAt, long bytes) {
+    buckets.computeIfAbsent(Math.floorDiv(expiresAt, granularity), bucket -> new LongAdder())
+        .add(bytes);
+    expiringBytes.add(bytes);
+  }
+
+  long getExpiredBytes(long now) {
+    long total = 0;
+    for (LongAdder bytes : buckets.headMap(Math.floorDiv(now + 1, granularity)).values()) {
+      total += bytes.sum();
+    }
+    return total;
+  }
+
+  long getExpiringBytes() {
+    return expiringBytes.sum();
+  }
+}
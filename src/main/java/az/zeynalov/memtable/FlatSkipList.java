@@ -0,0 +1,218 @@
+package az.zeynalov.memtable;
+
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableFrozenException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Read-only copy of a SkipList that no longer takes writes. The towers of next pointers are gone:
+ * every node is one entry of a sorted array, [prefix (8 bytes)][offset of the cold record (4
+ * bytes)], in its own small off-heap segment, while the records stay where they are in the cold
+ * arena. A node is the offset of its entry, with the head at 0 and the first entry right after
+ * it, so the next node is the next entry and every reader of SkipList works unchanged.
+ * <p>
+ * Searches are binary searches on the prefixes that pick the next half with a conditional move
+ * instead of a branch; the key bytes in the cold arena are only compared on a prefix tie. Forward
+ * seeks gallop from the current entry first, so a target d entries ahead costs O(log d).
+ * <p>
+ * The list has a single level, so its spliterator does not split.
+ */
+final class FlatSkipList extends SkipList {
+
+  private final static int PREFIX_LENGTH = 8;
+  private final static int RECORD_POINTER_LENGTH = 4;
+  private final static int ENTRY_SIZE = PREFIX_LENGTH + RECORD_POINTER_LENGTH;
+  private final static int HEAD = 0;
+
+  private final java.lang.foreign.Arena offHeapScope;
+  private final MemorySegment entries;
+  private final int count;
+
+  private FlatSkipList(Arena coldArena, int count) {
+    super(null, coldArena);
+    this.count = count;
+    this.offHeapScope = java.lang.foreign.Arena.ofShared();
+    // The head takes the first entry, so that node offsets and positions map one to one
+    this.entries = offHeapScope.allocate((long) (count + 1) * ENTRY_SIZE, Long.BYTES);
+  }
+
+  /**
+   * Copies the nodes of the source list in list order. Writers must have stopped.
+   */
+  static FlatSkipList of(SkipList source) {
+    int count = 0;
+    for (int node = source.readNextValid(source.getHead()); node != -1;
+        node = source.readNextValid(node)) {
+      count++;
+    }
+
+    FlatSkipList flat = new FlatSkipList(source.getColdArena(), count);
+    int entry = ENTRY_SIZE;
+    for (int node = source.readNextValid(source.getHead()); node != -1 && entry <= flat.last();
+        node = source.readNextValid(node)) {
+      flat.entries.set(ValueLayout.JAVA_LONG_UNALIGNED, entry, source.getNodePrefix(node));
+      flat.entries.set(ValueLayout.JAVA_INT_UNALIGNED, entry + PREFIX_LENGTH,
+          source.getRecord(node));
+      entry += ENTRY_SIZE;
+    }
+    return flat;
+  }
+
+  @Override
+  public int get(MemorySegment key, long SN) {
+    long prefix = getPrefix(key);
+    int position = lowerBound(0, count, prefix, key, SN);
+    if (position == count) {
+      return -1;
+    }
+    int node = nodeAt(position);
+    return compareKeyOnly(node, prefix, key) == 0 ? node : -1;
+  }
+
+  @Override
+  public int seek(MemorySegment key, long SN, int[] path) {
+    int position = lowerBound(0, count, getPrefix(key), key, SN);
+    return settle(position, path);
+  }
+
+  @Override
+  public int seekFrom(int from, int[] path, MemorySegment key, long SN) {
+    long prefix = getPrefix(key);
+    int low = from == HEAD ? 0 : positionOf(from);
+    if (from != HEAD && !precedes(low, prefix, key, SN)) {
+      return from;
+    }
+    if (from != HEAD) {
+      low++;
+    }
+
+    // Gallop to an entry that does not precede the target, then search the last step
+    int bound = low;
+    for (int step = 1; bound < count && precedes(bound, prefix, key, SN); step <<= 1) {
+      low = bound + 1;
+      bound += step;
+    }
+    return settle(lowerBound(low, Math.min(bound, count), prefix, key, SN), path);
+  }
+
+  @Override
+  public int insert(MemorySegment key, long SN, byte type, MemorySegment value, long expiresAt) {
+    throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+  }
+
+  @Override
+  public int[] insertBatch(WriteBatch batch, long firstSN) {
+    throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+  }
+
+  @Override
+  Appender newAppender() {
+    throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+  }
+
+  @Override
+  public int readNextValid(int offset) {
+    int next = offset + ENTRY_SIZE;
+    return next <= last() ? next : -1;
+  }
+
+  @Override
+  int readNext(int index, int offset) {
+    return index == 0 ? readNextValid(offset) : -1;
+  }
+
+  @Override
+  public int getHead() {
+    return HEAD;
+  }
+
+  @Override
+  int getLevel() {
+    return 0;
+  }
+
+  @Override
+  int getLevelCount(int nodeOffset) {
+    return 1;
+  }
+
+  @Override
+  int getRecord(int nodeOffset) {
+    return entries.get(ValueLayout.JAVA_INT_UNALIGNED, nodeOffset + PREFIX_LENGTH);
+  }
+
+  @Override
+  long getNodePrefix(int nodeOffset) {
+    return entries.get(ValueLayout.JAVA_LONG_UNALIGNED, nodeOffset);
+  }
+
+  /**
+   * Number of nodes.
+   */
+  int getCount() {
+    return count;
+  }
+
+  long getMemoryUsage() {
+    return entries.byteSize();
+  }
+
+  void close() {
+    if (offHeapScope.scope().isAlive()) {
+      offHeapScope.close();
+    }
+  }
+
+  /**
+   * First position in [low, high) whose node does not precede (key, SN) in list order, or high.
+   * The range shrinks by half per step whichever way the comparison goes, so the loop has no
+   * data-dependent branch besides the comparison itself.
+   */
+  private int lowerBound(int low, int high, long prefix, MemorySegment key, long SN) {
+    int length = high - low;
+    if (length == 0) {
+      return low;
+    }
+    int base = low;
+    while (length > 1) {
+      int half = length >>> 1;
+      base = precedes(base + half, prefix, key, SN) ? base + half : base;
+      length -= half;
+    }
+    return precedes(base, prefix, key, SN) ? base + 1 : base;
+  }
+
+  private boolean precedes(int position, long prefix, MemorySegment key, long SN) {
+    int node = nodeAt(position);
+    long nodePrefix = getNodePrefix(node);
+    if (nodePrefix != prefix) {
+      return Long.compareUnsigned(nodePrefix, prefix) > 0;
+    }
+    int comparison = compareKeyOnly(node, prefix, key);
+    return comparison > 0 || (comparison == 0 && getSN(node) > SN);
+  }
+
+  /**
+   * Records the node before the position as the path of every level and returns the node at the
+   * position, -1 past the end.
+   */
+  private int settle(int position, int[] path) {
+    Arrays.fill(path, position == 0 ? HEAD : nodeAt(position - 1));
+    return position == count ? -1 : nodeAt(position);
+  }
+
+  private int last() {
+    return count * ENTRY_SIZE;
+  }
+
+  private static int nodeAt(int position) {
+    return (position + 1) * ENTRY_SIZE;
+  }
+
+  private static int positionOf(int node) {
+    return node / ENTRY_SIZE - 1;
+  }
+}
@@ -0,0 +1,122 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free open-addressing hash table in its own off-heap memory that maps a key to the hot-arena
+ * node of its newest version in a SkipList. Each slot is one 8-byte word, [hash tag (4 bytes)][node
+ * offset (4 bytes)], so a lookup usually costs one cache miss for the slot plus the key check on
+ * the node. Slots are claimed and replaced with a CAS; a slot is only replaced by a version with a
+ * higher or equal SN, so the index always points at the newest version.
+ * The node offset 0 is the head of the list and is never indexed, so an all-zero word is an empty
+ * slot. If the table runs out of slots, the key is left out. A miss therefore never proves that the
+ * key is absent; callers search the list instead.
+ */
+public class HashIndex implements AutoCloseable {
+
+  // Average cold record footprint assumed when the index is sized from an arena
+  private final static int AVERAGE_RECORD_SIZE = 64;
+  private final static int SLOT_SIZE = 8;
+  private final static long HASH_SEED = 0x2545F4914F6CDD1DL;
+
+  private static final VarHandle SLOT_HANDLE = ValueLayout.JAVA_LONG.varHandle();
+
+  private final SkipList skipList;
+  private final java.lang.foreign.Arena offHeapScope;
+  private final MemorySegment slots;
+  private final int mask;
+
+  /**
+   * @param capacity number of slots, rounded up to a power of two
+   */
+  public HashIndex(SkipList skipList, int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.skipList = skipList;
+    this.mask = size - 1;
+    this.offHeapScope = java.lang.foreign.Arena.ofShared();
+    this.slots = offHeapScope.allocate((long) size * SLOT_SIZE, 64);
+  }
+
+  /**
+   * Sizes the index to keep the load factor at or below one half for as many records as the arena
+   * can hold at an average record size of 64 bytes.
+   */
+  public static HashIndex forArena(SkipList skipList, Arena coldArena) {
+    long expectedKeys = coldArena.getCapacity() / AVERAGE_RECORD_SIZE;
+    return new HashIndex(skipList, (int) Math.min(1 << 30, expectedKeys * 2));
+  }
+
+  /**
+   * Points the key at the node if the node is newer than the version the slot points at. The key
+   * is left out if the table is full.
+   */
+  public void update(MemorySegment key, int nodeOffset, long SN) {
+    long hash = BloomFilter.hash(key, key.byteSize(), HASH_SEED);
+    long tag = hash >>> 32;
+    long word = (tag << 32) | (nodeOffset & 0xFFFFFFFFL);
+    long prefix = skipList.getPrefix(key);
+
+    int index = (int) hash & mask;
+    for (int probes = 0; probes <= mask; ) {
+      long slotOffset = (long) index * SLOT_SIZE;
+      long current = (long) SLOT_HANDLE.getAcquire(slots, slotOffset);
+
+      if (current == 0) {
+        if (SLOT_HANDLE.compareAndSet(slots, slotOffset, 0L, word)) {
+          return;
+        }
+        continue;
+      }
+
+      int node = (int) current;
+      if ((current >>> 32) == tag && skipList.compareKeyOnly(node, prefix, key) == 0) {
+        if (skipList.getSN(node) > SN
+            || SLOT_HANDLE.compareAndSet(slots, slotOffset, current, word)) {
+          return;
+        }
+        continue;
+      }
+
+      index = (index + 1) & mask;
+      probes++;
+    }
+  }
+
+  /**
+   * Returns the node of the newest version of the key, or -1 if the index has no entry for it.
+   */
+  public int find(MemorySegment key) {
+    long hash = BloomFilter.hash(key, key.byteSize(), HASH_SEED);
+    long tag = hash >>> 32;
+    long prefix = skipList.getPrefix(key);
+
+    int index = (int) hash & mask;
+    for (int probes = 0; probes <= mask; probes++) {
+      long current = (long) SLOT_HANDLE.getAcquire(slots, (long) index * SLOT_SIZE);
+      if (current == 0) {
+        break;
+      }
+
+      int node = (int) current;
+      if ((current >>> 32) == tag && skipList.compareKeyOnly(node, prefix, key) == 0) {
+        return node;
+      }
+      index = (index + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  public long getSizeInBytes() {
+    return slots.byteSize();
+  }
+
+  @Override
+  public void close() {
+    if (offHeapScope.scope().isAlive()) {
+      offHeapScope.close();
+    }
+  }
+}
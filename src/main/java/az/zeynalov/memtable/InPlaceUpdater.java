@@ -0,0 +1,197 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Overwrites the newest version of a key in the cold arena instead of appending a new one. A
+ * version can be reused when it is a value, both the old and the new value are 8 bytes, and no
+ * reader can tell the two versions apart: the oldest snapshot still in use is at or above both
+ * SNs. The record takes the higher SN. Every other write appends a new version.
+ * <p>
+ * Writers of a key serialize on a striped StampedLock: overwrites and appends hold the write lock,
+ * counter increments only hold the read lock and update the value with a VarHandle CAS, so
+ * increments of one key run in parallel. The SkipList of a memtable with in-place updates pads
+ * every 8-byte value onto a word boundary, so a reused value is always changed with a single
+ * aligned 8-byte VarHandle access and readers, which take no lock, see a value that was written as
+ * a whole.
+ */
+class InPlaceUpdater {
+
+  private final static int STRIPES = 64;
+  private final static int COUNTER_SIZE = 8;
+  private final static int SN_LENGTH = 8;
+  private final static long STRIPE_SEED = 0x9E3779B97F4A7C15L;
+
+  private final static ValueLayout.OfLong UNALIGNED_LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
+
+  private static final VarHandle LONG_HANDLE = ValueLayout.JAVA_LONG.withOrder(
+      ByteOrder.BIG_ENDIAN).varHandle();
+
+  private final Arena hotArena;
+  private final Arena coldArena;
+  private final LongSupplier oldestSnapshot;
+  private final StampedLock[] locks;
+
+  InPlaceUpdater(Arena hotArena, Arena coldArena, LongSupplier oldestSnapshot) {
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    this.oldestSnapshot = oldestSnapshot;
+    this.locks = new StampedLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new StampedLock();
+    }
+  }
+
+  StampedLock lockFor(MemorySegment key) {
+    return locks[stripeOf(key)];
+  }
+
+  /**
+   * Takes the write locks of the stripes of every key in the batch, in stripe order so that
+   * concurrent batches cannot deadlock. Returns the stamps by stripe, 0 where no lock was taken.
+   */
+  long[] lockAll(WriteBatch batch) {
+    boolean[] needed = new boolean[STRIPES];
+    for (int i = 0; i < batch.getCount(); i++) {
+      needed[stripeOf(batch.getKey(i))] = true;
+    }
+
+    long[] stamps = new long[STRIPES];
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      if (needed[stripe]) {
+        stamps[stripe] = locks[stripe].writeLock();
+      }
+    }
+    return stamps;
+  }
+
+  void unlockAll(long[] stamps) {
+    for (int stripe = STRIPES - 1; stripe >= 0; stripe--) {
+      if (stamps[stripe] != 0) {
+        locks[stripe].unlockWrite(stamps[stripe]);
+      }
+    }
+  }
+
+  private int stripeOf(MemorySegment key) {
+    return (int) BloomFilter.hash(key, key.byteSize(), STRIPE_SEED) & (STRIPES - 1);
+  }
+
+  /**
+   * Replaces the value of the version at the node with a newer write. Must be called with the
+   * write lock of the key held. Returns false if the version cannot be reused.
+   */
+  boolean overwrite(int node, long SN, byte type, MemorySegment value) {
+    int record = recordOf(node);
+    if (type != RecordType.VALUE || value.byteSize() != COUNTER_SIZE
+        || SN <= coldArena.readLong(record) || !isCounter(record) || !isReusable(record, SN)) {
+      return false;
+    }
+
+    int valueOffset = valueOffset(record);
+    if (!isAligned(valueOffset)) {
+      return false;
+    }
+
+    LONG_HANDLE.setVolatile(coldArena.getMemory(), (long) valueOffset,
+        value.get(UNALIGNED_LONG, 0));
+    raiseSN(record, SN);
+    return true;
+  }
+
+  /**
+   * Adds delta to the 8-byte counter of the version at the node with a CAS and returns the new
+   * value, or returns null if the version cannot be reused or was written unpadded, before in-place
+   * updates were enabled. Must be called with at least the read lock of the key held.
+   */
+  Long tryAdd(int node, long delta, long SN) {
+    int record = recordOf(node);
+    if (!isCounter(record) || !isReusable(record, SN)) {
+      return null;
+    }
+
+    int valueOffset = valueOffset(record);
+    if (!isAligned(valueOffset)) {
+      return null;
+    }
+
+    MemorySegment memory = coldArena.getMemory();
+    long current;
+    do {
+      current = (long) LONG_HANDLE.getVolatile(memory, (long) valueOffset);
+    } while (!LONG_HANDLE.compareAndSet(memory, (long) valueOffset, current, current + delta));
+
+    raiseSN(record, SN);
+    return current + delta;
+  }
+
+  /**
+   * Returns the counter value of the version at the node, 0 for a tombstone. Throws if the value
+   * is not 8 bytes long.
+   */
+  long readCounter(int node) {
+    int record = recordOf(node);
+    byte type = coldArena.readByte(record + SN_LENGTH);
+    if (type == RecordType.TOMBSTONE) {
+      return 0;
+    }
+    if (type != RecordType.VALUE
+        || coldArena.readInt(record + SkipList.VALUE_SIZE_OFFSET) != COUNTER_SIZE) {
+      throw new IllegalArgumentException("Value of the key is not an 8-byte counter");
+    }
+
+    return coldArena.getMemory().get(UNALIGNED_LONG, valueOffset(record));
+  }
+
+  private boolean isCounter(int record) {
+    return coldArena.readByte(record + SN_LENGTH) == RecordType.VALUE
+        && coldArena.readInt(record + SkipList.VALUE_SIZE_OFFSET) == COUNTER_SIZE;
+  }
+
+  /**
+   * Only plain values are reused: a merge operand or a tombstone overwritten in place would keep
+   * its type. Records with an expiry keep the timestamp behind the value, so they are never reused
+   * either.
+   */
+  private boolean isReusable(int record, long SN) {
+    if (coldArena.readByte(record + SN_LENGTH) != RecordType.VALUE) {
+      return false;
+    }
+    if ((coldArena.readByte(record + SkipList.FLAGS_OFFSET) & SkipList.EXPIRY_FLAG) != 0) {
+      return false;
+    }
+    long oldest = oldestSnapshot.getAsLong();
+    return oldest >= SN && oldest >= coldArena.readLong(record);
+  }
+
+  /**
+   * The SN only ever grows, so concurrent increments leave the highest SN behind. It is the first
+   * word of an 8-aligned record and can be updated with a CAS as well.
+   */
+  private void raiseSN(int record, long SN) {
+    MemorySegment memory = coldArena.getMemory();
+    long current;
+    do {
+      current = (long) LONG_HANDLE.getVolatile(memory, (long) record);
+    } while (current < SN && !LONG_HANDLE.compareAndSet(memory, (long) record, current, SN));
+  }
+
+  private int recordOf(int node) {
+    return hotArena.readInt(node + SkipList.COLD_ARENA_POINTER_OFFSET);
+  }
+
+  private int valueOffset(int record) {
+    return record + SkipList.getValueOffset(coldArena.readByte(record + SkipList.FLAGS_OFFSET),
+        coldArena.readInt(record + SkipList.KEY_SIZE_OFFSET));
+  }
+
+  private boolean isAligned(int offset) {
+    return ((coldArena.getMemory().address() + offset) & (COUNTER_SIZE - 1)) == 0;
+  }
+}
@@ -0,0 +1,83 @@
+package az.zeynalov.memtable;
+
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableClosedException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Close protocol of a memtable whose memory is read by threads that may race its close. Point
+ * operations pin the calling thread with enter; iterators count themselves with openIterator and
+ * closeIterator instead. close marks it closed and, once no iterator is open, retires it: the
+ * release action runs after every thread pinned before that point has exited. enter fails from
+ * then on, and openIterator fails as soon as close was called.
+ */
+final class Lifecycle {
+
+  private final EpochReclaimer reclaimer;
+  private final Runnable release;
+  private final AtomicInteger openIterators;
+  private final AtomicBoolean retired;
+  private volatile boolean closed;
+  // Epoch of the retirement, IDLE until then
+  private volatile long retiredAt;
+
+  Lifecycle(EpochReclaimer reclaimer, Runnable release) {
+    this.reclaimer = reclaimer;
+    this.release = release;
+    this.openIterators = new AtomicInteger();
+    this.retired = new AtomicBoolean();
+    this.retiredAt = EpochReclaimer.IDLE;
+  }
+
+  /**
+   * Pins the calling thread, unless the memory was retired before the thread got pinned: then it
+   * may already be released.
+   */
+  EpochReclaimer.Pin enter() {
+    EpochReclaimer.Pin pin = reclaimer.enter();
+    if (reclaimer.getPinnedEpoch() > retiredAt) {
+      pin.close();
+      throw MemTableClosedException.of(ErrorMessage.MEMTABLE_IS_CLOSED);
+    }
+    return pin;
+  }
+
+  void openIterator() {
+    openIterators.incrementAndGet();
+    if (closed) {
+      closeIterator();
+      throw MemTableClosedException.of(ErrorMessage.MEMTABLE_IS_CLOSED);
+    }
+  }
+
+  void closeIterator() {
+    if (openIterators.decrementAndGet() == 0 && closed) {
+      retire();
+    }
+  }
+
+  /**
+   * Calling close again does nothing.
+   */
+  void close() {
+    closed = true;
+    if (openIterators.get() == 0) {
+      retire();
+    }
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  private void retire() {
+    if (!retired.compareAndSet(false, true)) {
+      return;
+    }
+    // Published before the epoch advances, so a reader that enters at a later epoch sees it
+    retiredAt = reclaimer.getEpoch();
+    reclaimer.retire(release);
+  }
+}
@@ -0,0 +1,11 @@
+package az.zeynalov.memtable;
+
+/**
+ * Result of a point lookup. DELETED means the visible version is a tombstone, so the search must
+ * not continue in older levels; NOT_FOUND means the memtable has no visible version of the key.
+ */
+public enum LookupStatus {
+  FOUND,
+  DELETED,
+  NOT_FOUND
+}
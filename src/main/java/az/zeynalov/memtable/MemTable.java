@@ -1,24 +1,620 @@
 package az.zeynalov.memtable;
 
 
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableFrozenException;
+
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Closing is safe while other threads still read or write. Point operations pin the calling
+ * thread in the shared EpochReclaimer for their duration, which only writes a slot owned by that
+ * thread; iterators instead hold a reference count from newIterator until they are closed. close
+ * marks the memtable closed and, once no iterator is open, retires it: the arenas and the
+ * off-heap components are released after every thread pinned before that point has exited.
+ * Operations that start after the memtable is retired throw MemTableClosedException.
+ */
+public class MemTable implements AutoCloseable {
 
-// TODO add concurrency for closing memtable and arenas
-public class MemTable {
+  // Returned by find for a key that a range tombstone deletes
+  private final static int RANGE_DELETED = -2;
+  // Returned by find for a key whose visible version has expired
+  private final static int EXPIRED = -3;
+  private final static int RECORD_HEADER_SIZE = SkipList.VALUE_SIZE_OFFSET + SkipList.VALUE_LENGTH;
+  // Expired bytes are tracked per second of the default millisecond clock
+  private final static long EXPIRY_BUCKET_GRANULARITY = 1000;
 
   private final Arena hotArena;
   private final Arena coldArena;
   private final SkipList skipList;
+  private final RangeTombstones rangeTombstones;
+  private final LongSupplier clock;
+  private final ExpiryMetrics expiryMetrics;
+  private final LongAccumulator publishedSN;
+  private final EpochReclaimer reclaimer;
+  private final Lifecycle lifecycle;
+  // Set by freeze; reads go to it from then on and the hot arena is released
+  private volatile FlatSkipList flatList;
+  // Open iterators that walk the hot skip list and keep the hot arena alive
+  private final AtomicInteger hotIterators;
+  private final AtomicBoolean hotRetired;
+  // Optional components, null when not configured
+  private final BloomFilter bloomFilter;
+  private final HashIndex hashIndex;
+  private final InPlaceUpdater inPlaceUpdater;
+  private final MergeOperator mergeOperator;
+  private final SequenceAllocator sequenceAllocator;
 
   public MemTable(Arena hotArena, Arena coldArena, SkipList skipList) {
+    this(hotArena, coldArena, skipList, new MemTableOptions());
+  }
+
+  public MemTable(Arena hotArena, Arena coldArena, SkipList skipList, MemTableOptions options) {
     this.hotArena = hotArena;
     this.coldArena = coldArena;
     this.skipList = skipList;
+    this.rangeTombstones = new RangeTombstones();
+    this.clock = options.getClock();
+    this.expiryMetrics = new ExpiryMetrics(EXPIRY_BUCKET_GRANULARITY);
+    this.publishedSN = new LongAccumulator(Math::max, -1);
+    this.reclaimer = EpochReclaimer.shared();
+    this.lifecycle = new Lifecycle(reclaimer, this::release);
+    this.hotIterators = new AtomicInteger();
+    this.hotRetired = new AtomicBoolean();
+    this.bloomFilter = options.getBloomFilter();
+    this.hashIndex = options.getHashIndex();
+    this.inPlaceUpdater = options.getOldestSnapshot() == null ? null
+        : new InPlaceUpdater(hotArena, coldArena, options.getOldestSnapshot());
+    if (inPlaceUpdater != null) {
+      skipList.alignValues();
+    }
+    this.mergeOperator = options.getMergeOperator();
+    this.sequenceAllocator = options.getSequenceAllocator();
   }
 
+  /**
+   * The key goes into the filter before the node is linked, so a reader that can see the node
+   * also sees the filter bits. The hash index is updated after linking, because it points at the
+   * node itself. With in-place updates enabled, an 8-byte value overwrites the newest version when
+   * that is an aligned 8-byte value no snapshot can see; otherwise a new version is appended while
+   * the key is still locked.
+   */
   public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
-    skipList.insert(key, SN, type, value);
+    put(key, SN, type, value, SkipList.NO_EXPIRY);
+  }
+
+  /**
+   * Same as put, with the SN taken from the sequence allocator of the options. Returns the SN.
+   */
+  public long put(MemorySegment key, byte type, MemorySegment value) {
+    SequenceAllocator allocator = requireSequenceAllocator();
+    long SN = allocator.acquire();
+    try {
+      put(key, SN, type, value, SkipList.NO_EXPIRY);
+    } finally {
+      allocator.release();
+    }
+    return SN;
+  }
+
+  /**
+   * Same as put, for an entry that expires at the given time of the clock of the options. From
+   * then on reads treat the entry like a tombstone and flush drops it. Entries with an expiry are
+   * always appended, never updated in place.
+   */
+  @SuppressWarnings("try")
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value, long expiresAt) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      putPinned(key, SN, type, value, expiresAt);
+    }
+  }
+
+  private void putPinned(MemorySegment key, long SN, byte type, MemorySegment value,
+      long expiresAt) {
+    checkWritable();
+    if (bloomFilter != null) {
+      bloomFilter.add(key);
+    }
+    if (inPlaceUpdater == null) {
+      append(key, SN, type, value, expiresAt);
+      publishedSN.accumulate(SN);
+      return;
+    }
+
+    StampedLock lock = inPlaceUpdater.lockFor(key);
+    long stamp = lock.writeLock();
+    try {
+      int newest = find(skipList, key, Long.MAX_VALUE);
+      if (newest < 0 || expiresAt != SkipList.NO_EXPIRY
+          || !inPlaceUpdater.overwrite(newest, SN, type, value)) {
+        append(key, SN, type, value, expiresAt);
+      } else {
+        rangeTombstones.recordWrite(key, SN);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    publishedSN.accumulate(SN);
+  }
+
+  /**
+   * Writes every record of the batch, the i-th at SN firstSN + i, and returns the last SN. All
+   * records share one cold and one hot arena reservation. The published SN only moves to the last
+   * SN once every record is linked, so a reader at getPublishedSN() sees the whole batch or none
+   * of it, as long as writers publish their SNs in order. Records of a batch are never updated in
+   * place.
+   */
+  @SuppressWarnings("try")
+  public long write(WriteBatch batch, long firstSN) {
+    if (batch.isEmpty()) {
+      return firstSN - 1;
+    }
+    try (EpochReclaimer.Pin pin = enter()) {
+      return writePinned(batch, firstSN);
+    }
+  }
+
+  private long writePinned(WriteBatch batch, long firstSN) {
+    checkWritable();
+    if (bloomFilter != null) {
+      for (int i = 0; i < batch.getCount(); i++) {
+        bloomFilter.add(batch.getKey(i));
+      }
+    }
+
+    long[] stamps = inPlaceUpdater == null ? null : inPlaceUpdater.lockAll(batch);
+    try {
+      int[] nodes = skipList.insertBatch(batch, firstSN);
+      for (int i = 0; i < nodes.length; i++) {
+        MemorySegment key = batch.getKey(i);
+        if (hashIndex != null) {
+          hashIndex.update(key, nodes[i], firstSN + i);
+        }
+        rangeTombstones.recordWrite(key, firstSN + i);
+        long expiresAt = batch.getExpiry(i);
+        if (expiresAt != SkipList.NO_EXPIRY) {
+          expiryMetrics.record(expiresAt, batch.getRecordSize(i));
+        }
+      }
+    } finally {
+      if (stamps != null) {
+        inPlaceUpdater.unlockAll(stamps);
+      }
+    }
+
+    long lastSN = firstSN + batch.getCount() - 1;
+    publishedSN.accumulate(lastSN);
+    return lastSN;
+  }
+
+  /**
+   * Same as write, with a contiguous range of SNs taken from the sequence allocator of the
+   * options. Returns the last SN.
+   */
+  public long write(WriteBatch batch) {
+    SequenceAllocator allocator = requireSequenceAllocator();
+    if (batch.isEmpty()) {
+      return allocator.getPublishedSN();
+    }
+    long firstSN = allocator.acquire(batch.getCount());
+    try {
+      return write(batch, firstSN);
+    } finally {
+      allocator.release();
+    }
+  }
+
+  /**
+   * SN to read at for a consistent view. With a sequence allocator this is its published SN, so
+   * SNs leased to other writers but not written yet never show up as gaps that fill in later;
+   * otherwise it is getPublishedSN().
+   */
+  public long getSnapshotSN() {
+    return sequenceAllocator != null ? sequenceAllocator.getPublishedSN() : publishedSN.get();
+  }
+
+  /**
+   * Highest SN of a completed put or write, -1 before the first one. Reading at this SN never
+   * shows part of a batch.
+   */
+  public long getPublishedSN() {
+    return publishedSN.get();
+  }
+
+  /**
+   * Atomically adds delta to the 8-byte big-endian counter stored under the key and returns the
+   * new value. A missing or deleted key counts as 0. Increments that no snapshot can tell apart
+   * update the newest version in place with a CAS; otherwise the sum is appended as a new version
+   * at SN. Requires in-place updates to be enabled, and the value of the key must be 8 bytes. An
+   * expired counter counts as 0; the sum is written without an expiry.
+   */
+  @SuppressWarnings("try")
+  public long addAndGet(MemorySegment key, long delta, long SN) {
+    if (inPlaceUpdater == null) {
+      throw new IllegalStateException("In-place updates are not enabled for this memtable");
+    }
+    try (EpochReclaimer.Pin pin = enter()) {
+      return addAndGetPinned(key, delta, SN);
+    }
+  }
+
+  private long addAndGetPinned(MemorySegment key, long delta, long SN) {
+    checkWritable();
+    StampedLock lock = inPlaceUpdater.lockFor(key);
+    long stamp = lock.readLock();
+    try {
+      int newest = find(skipList, key, Long.MAX_VALUE);
+      Long result = newest < 0 ? null : inPlaceUpdater.tryAdd(newest, delta, SN);
+      if (result != null) {
+        rangeTombstones.recordWrite(key, SN);
+        publishedSN.accumulate(SN);
+        return result;
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+
+    stamp = lock.writeLock();
+    try {
+      int newest = find(skipList, key, Long.MAX_VALUE);
+      Long result = newest < 0 ? null : inPlaceUpdater.tryAdd(newest, delta, SN);
+      if (result != null) {
+        rangeTombstones.recordWrite(key, SN);
+        publishedSN.accumulate(SN);
+        return result;
+      }
+
+      long sum = (newest < 0 ? 0 : inPlaceUpdater.readCounter(newest)) + delta;
+      MemorySegment value = MemorySegment.ofArray(new byte[Long.BYTES]);
+      value.set(ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN), 0, sum);
+      if (bloomFilter != null) {
+        bloomFilter.add(key);
+      }
+      append(key, SN, RecordType.VALUE, value, SkipList.NO_EXPIRY);
+      publishedSN.accumulate(SN);
+      return sum;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Deletes every key k with start <= k < end at SN with a single range tombstone, however many
+   * keys the range holds. Point lookups and snapshot iterators hide the versions it covers.
+   */
+  @SuppressWarnings("try")
+  public void deleteRange(MemorySegment start, MemorySegment end, long SN) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      checkWritable();
+      rangeTombstones.deleteRange(start, end, SN);
+      publishedSN.accumulate(SN);
+    }
+  }
+
+  public RangeTombstones getRangeTombstones() {
+    return rangeTombstones;
+  }
+
+  /**
+   * Cold arena bytes of entries that have expired but are still resident, counted in whole
+   * seconds of the clock. Together with getExpiringBytes and the arena size it tells when most of
+   * the memtable is dead and it is worth rotating early.
+   */
+  public long getExpiredBytes() {
+    return expiryMetrics.getExpiredBytes(clock.getAsLong());
+  }
+
+  /**
+   * Cold arena bytes of all entries written with an expiry, expired or not.
+   */
+  public long getExpiringBytes() {
+    return expiryMetrics.getExpiringBytes();
+  }
+
+  /**
+   * Fraction of the fuller of the two arenas that is allocated, between 0 and 1. Once frozen only
+   * the cold arena counts.
+   */
+  public double getFillRatio() {
+    double cold = (double) coldArena.getArenaSize() / coldArena.getCapacity();
+    if (flatList != null) {
+      return cold;
+    }
+    return Math.max((double) hotArena.getArenaSize() / hotArena.getCapacity(), cold);
+  }
+
+  /**
+   * Bytes allocated in both arenas, or in the cold arena and the flat list once frozen.
+   */
+  public long getMemoryUsage() {
+    FlatSkipList flat = flatList;
+    long hot = flat == null ? hotArena.getArenaSize() : flat.getMemoryUsage();
+    return hot + coldArena.getArenaSize();
+  }
+
+  /**
+   * Replaces the skip list with a FlatSkipList for the rest of the life of the memtable. Reads
+   * switch over at once. The hot arena and the hash index, which only the skip list needs, are
+   * released once the iterators opened before are closed and the readers pinned meanwhile have
+   * exited. Writes must have stopped; later ones fail with MemTableFrozenException. A
+   * MemTableIterator over the skip list given to the constructor must not be used after the
+   * freeze. Calling freeze again does nothing.
+   */
+  @SuppressWarnings("try")
+  public synchronized void freeze() {
+    if (flatList != null) {
+      return;
+    }
+    try (EpochReclaimer.Pin pin = enter()) {
+      flatList = FlatSkipList.of(skipList);
+    }
+    if (hotIterators.get() == 0) {
+      retireHot();
+    }
+  }
+
+  public boolean isFrozen() {
+    return flatList != null;
+  }
+
+  /**
+   * Copies into target the versions that a read at the latest SN or at one of the snapshot SNs
+   * can still see, together with all range tombstones. A version that every such read finds a
+   * newer version of first is dropped; a merge operand is kept with the operands and the base
+   * below it. The records are appended in list order, so they lie sequentially in the arenas of
+   * target. Target must be empty and must not be written until this returns, but may be read.
+   * Returns the number of versions kept.
+   */
+  public int compactInto(MemTable target, long[] snapshots) {
+    return compact(new MemTable[]{this}, target, snapshots);
+  }
+
+  /**
+   * Same as compactInto for several memtables at once, merged into one target. When a key has
+   * versions with the same SN in two sources, the one of the earlier source comes first.
+   */
+  @SuppressWarnings("try")
+  static int compact(MemTable[] sources, MemTable target, long[] snapshots) {
+    if (target.publishedSN.get() >= 0 || !target.rangeTombstones.isEmpty()) {
+      throw new IllegalArgumentException("Compaction target must be empty");
+    }
+    target.checkWritable();
+    long[] readPoints = new long[snapshots.length + 1];
+    long[] sorted = snapshots.clone();
+    Arrays.sort(sorted);
+    readPoints[0] = Long.MAX_VALUE;
+    for (int i = 0; i < sorted.length; i++) {
+      readPoints[i + 1] = sorted[sorted.length - 1 - i];
+    }
+
+    int pinned = 0;
+    try {
+      for (MemTable source : sources) {
+        source.enter();
+        pinned++;
+      }
+      try (EpochReclaimer.Pin pin = target.enter()) {
+        return target.copyVisible(sources, readPoints);
+      }
+    } finally {
+      for (int i = 0; i < pinned; i++) {
+        sources[i].reclaimer.exit();
+      }
+    }
+  }
+
+  /**
+   * Merges level 0 of the sources and appends, key by key, the versions some read point sees.
+   * Read points are in descending order.
+   */
+  private int copyVisible(MemTable[] sources, long[] readPoints) {
+    for (MemTable source : sources) {
+      rangeTombstones.addAll(source.rangeTombstones);
+    }
+
+    SkipList[] lists = new SkipList[sources.length];
+    int[] nodes = new int[sources.length];
+    EntryView[] views = new EntryView[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      lists[i] = sources[i].readList();
+      views[i] = new EntryView();
+      nodes[i] = lists[i].readNextValid(lists[i].getHead());
+      if (nodes[i] != -1) {
+        lists[i].readEntry(nodes[i], views[i]);
+      }
+    }
+
+    SkipList.Appender appender = skipList.newAppender();
+    EntryView copied = new EntryView();
+    int[] versionSources = new int[16];
+    int[] versionNodes = new int[16];
+    boolean[] kept = new boolean[16];
+    int total = 0;
+
+    int next = nextSource(nodes, views);
+    while (next >= 0) {
+      MemorySegment key = views[next].getKey();
+      int count = 0;
+      while (next >= 0 && MergingIterator.compareKeys(views[next].getKey(), key) == 0) {
+        if (count == versionNodes.length) {
+          versionSources = Arrays.copyOf(versionSources, count * 2);
+          versionNodes = Arrays.copyOf(versionNodes, count * 2);
+          kept = new boolean[count * 2];
+        }
+        versionSources[count] = next;
+        versionNodes[count] = nodes[next];
+        count++;
+        nodes[next] = lists[next].readNextValid(nodes[next]);
+        if (nodes[next] != -1) {
+          lists[next].readEntry(nodes[next], views[next]);
+        }
+        next = nextSource(nodes, views);
+      }
+
+      // Versions are in SN order, newest first, so each read point starts where the last stopped
+      Arrays.fill(kept, 0, count, false);
+      int version = 0;
+      for (long readPoint : readPoints) {
+        while (version < count
+            && lists[versionSources[version]].getSN(versionNodes[version]) > readPoint) {
+          version++;
+        }
+        if (version == count) {
+          break;
+        }
+        kept[version] = true;
+        for (int operand = version; operand + 1 < count
+            && lists[versionSources[operand]].getType(versionNodes[operand])
+            == RecordType.MERGE; operand++) {
+          kept[operand + 1] = true;
+        }
+      }
+
+      for (int i = 0; i < count; i++) {
+        if (kept[i]) {
+          int node = appender.append(lists[versionSources[i]], versionNodes[i]);
+          recordCopy(node, copied);
+          total++;
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Source whose current node comes first in list order, -1 once all are exhausted.
+   */
+  private static int nextSource(int[] nodes, EntryView[] views) {
+    int best = -1;
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i] == -1) {
+        continue;
+      }
+      if (best < 0) {
+        best = i;
+        continue;
+      }
+      int order = MergingIterator.compareKeys(views[i].getKey(), views[best].getKey());
+      if (order > 0 || (order == 0 && views[i].getSN() > views[best].getSN())) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Updates the filter, the index and the metrics for a node that compaction appended.
+   */
+  private void recordCopy(int node, EntryView view) {
+    skipList.readEntry(node, view);
+    MemorySegment key = view.getKey();
+    if (bloomFilter != null) {
+      bloomFilter.add(key);
+    }
+    if (hashIndex != null) {
+      hashIndex.update(key, node, view.getSN());
+    }
+    rangeTombstones.recordWrite(key, view.getSN());
+    long expiresAt = skipList.getExpiry(node);
+    if (expiresAt != SkipList.NO_EXPIRY) {
+      expiryMetrics.record(expiresAt, RECORD_HEADER_SIZE + view.getKeySize()
+          + view.getValueSize() + Long.BYTES);
+    }
+    publishedSN.accumulate(view.getSN());
+  }
+
+  /**
+   * Pins the calling thread so that views filled by lookups stay valid until the pin is closed,
+   * even if another thread closes the memtable meanwhile. Pins are cheap and nest.
+   */
+  public EpochReclaimer.Pin pin() {
+    return enter();
+  }
+
+  /**
+   * Marks the memtable closed; new iterators are refused from now on. The arenas and the optional
+   * off-heap components are released once the open iterators are closed and the pinned readers
+   * have exited. Calling close again does nothing.
+   */
+  @Override
+  public void close() {
+    lifecycle.close();
+  }
+
+  public boolean isClosed() {
+    return lifecycle.isClosed();
+  }
+
+  private EpochReclaimer.Pin enter() {
+    return lifecycle.enter();
+  }
+
+  private void release() {
+    if (bloomFilter != null) {
+      bloomFilter.close();
+    }
+    FlatSkipList flat = flatList;
+    if (flat != null) {
+      flat.close();
+    }
+    releaseHot();
+    coldArena.close();
+  }
+
+  /**
+   * List that reads go to: the flat one once frozen, the skip list before.
+   */
+  private SkipList readList() {
+    FlatSkipList flat = flatList;
+    return flat != null ? flat : skipList;
+  }
+
+  /**
+   * List for a new iterator. An iterator over the skip list is counted, so that freeze keeps the
+   * hot arena alive until it is closed.
+   */
+  private SkipList iterationList() {
+    hotIterators.incrementAndGet();
+    FlatSkipList flat = flatList;
+    if (flat == null) {
+      return skipList;
+    }
+    closeHotIterator();
+    return flat;
+  }
+
+  private void closeHotIterator() {
+    if (hotIterators.decrementAndGet() == 0 && flatList != null) {
+      retireHot();
+    }
+  }
+
+  private void retireHot() {
+    if (hotRetired.compareAndSet(false, true)) {
+      reclaimer.retire(this::releaseHot);
+    }
+  }
+
+  private void releaseHot() {
+    if (hashIndex != null) {
+      hashIndex.close();
+    }
+    hotArena.close();
+  }
+
+  private void checkWritable() {
+    if (flatList != null) {
+      throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+    }
   }
 
   /**
@@ -30,17 +626,321 @@ public class MemTable {
    * - value bytes (value size)
    */
 
+  @SuppressWarnings("try")
   public byte[] get(MemTableIterator iterator) {
     if (!iterator.isValid()) {
       return null;
     }
 
-    int coldArenaOffset = hotArena.readInt(iterator.getCurrent() + SkipList.COLD_ARENA_POINTER_OFFSET);
-    int keySizeOffset = coldArenaOffset + SkipList.KEY_SIZE_OFFSET;
-    int keySize = coldArena.readInt(keySizeOffset);
-    int valueSize = coldArena.readInt(keySizeOffset + SkipList.KEY_LENGTH);
-    final int totalSize = SkipList.KEY_LENGTH + SkipList.VALUE_LENGTH + keySize + valueSize;
+    try (EpochReclaimer.Pin pin = enter()) {
+      int coldArenaOffset = hotArena.readInt(iterator.getCurrent() + SkipList.COLD_ARENA_POINTER_OFFSET);
+      int keySizeOffset = coldArenaOffset + SkipList.KEY_SIZE_OFFSET;
+      int keySize = coldArena.readInt(keySizeOffset);
+      int valueSize = coldArena.readInt(keySizeOffset + SkipList.KEY_LENGTH);
+      final int totalSize = SkipList.KEY_LENGTH + SkipList.VALUE_LENGTH + keySize + valueSize;
+
+      // The value may be padded away from the key, so it is copied separately
+      byte[] bytes = new byte[totalSize];
+      int headerAndKey = totalSize - valueSize;
+      MemorySegment.copy(coldArena.getMemory(), ValueLayout.JAVA_BYTE, keySizeOffset, bytes, 0,
+          headerAndKey);
+      int valueOffset = coldArenaOffset + SkipList.getValueOffset(
+          coldArena.readByte(coldArenaOffset + SkipList.FLAGS_OFFSET), keySize);
+      MemorySegment.copy(coldArena.getMemory(), ValueLayout.JAVA_BYTE, valueOffset, bytes,
+          headerAndKey, valueSize);
+      return bytes;
+    }
+  }
+
+  /**
+   * Zero-copy variant of get: fills the view with the record at the current position of the
+   * iterator and returns false if the iterator is not valid. Nothing is copied out of the arena.
+   */
+  @SuppressWarnings("try")
+  public boolean get(MemTableIterator iterator, EntryView view) {
+    if (!iterator.isValid()) {
+      return false;
+    }
+
+    try (EpochReclaimer.Pin pin = enter()) {
+      skipList.readEntry(iterator.getCurrent(), view);
+      return true;
+    }
+  }
+
+  /**
+   * Point lookup that fills the view with the latest version of the key whose SN is less than or
+   * equal to the given SN. Returns false if there is no such version, if it has expired, or if a
+   * range tombstone deletes it. A merge operand is folded with the older versions of the key, in
+   * which case the view holds the merged value.
+   */
+  @SuppressWarnings("try")
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      SkipList list = readList();
+      int node = find(list, key, SN);
+      if (node < 0) {
+        return false;
+      }
+
+      readVisible(list, node, view, SN);
+      return true;
+    }
+  }
+
+  /**
+   * Typed point lookup in a single descent. The view is filled with the visible version when the
+   * result is FOUND or DELETED, so callers can reuse one view and one lookup allocates nothing. A
+   * key deleted by a range tombstone or whose visible version has expired is DELETED and leaves
+   * the view untouched.
+   */
+  @SuppressWarnings("try")
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      SkipList list = readList();
+      int node = find(list, key, SN);
+      if (node == RANGE_DELETED || node == EXPIRED) {
+        return LookupStatus.DELETED;
+      }
+      if (node == -1) {
+        return LookupStatus.NOT_FOUND;
+      }
+
+      readVisible(list, node, view, SN);
+      return view.getType() == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+    }
+  }
+
+  /**
+   * Same as lookup with a view, for callers that only need to know whether the key is live,
+   * deleted or absent at the given SN. Merge operands always produce a value, so they are not
+   * folded here.
+   */
+  @SuppressWarnings("try")
+  public LookupStatus lookup(MemorySegment key, long SN) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      SkipList list = readList();
+      int node = find(list, key, SN);
+      if (node == RANGE_DELETED || node == EXPIRED) {
+        return LookupStatus.DELETED;
+      }
+      if (node == -1) {
+        return LookupStatus.NOT_FOUND;
+      }
+
+      return list.getType(node) == RecordType.TOMBSTONE ? LookupStatus.DELETED
+          : LookupStatus.FOUND;
+    }
+  }
+
+  /**
+   * Returns a snapshot iterator that reads at the current time of the clock: entries expired by
+   * then are skipped, so a flush through this iterator drops them. The memtable stays readable
+   * until the iterator is closed, even if it is closed meanwhile.
+   */
+  public EntryIterator newIterator(long SN, boolean includeTombstones) {
+    lifecycle.openIterator();
+    SkipList list = iterationList();
+    return new PinnedIterator(new SnapshotIterator(list, SN, includeTombstones, mergeOperator,
+        rangeTombstones, clock.getAsLong()), list == skipList);
+  }
+
+  /**
+   * Returns a snapshot iterator over the keys that start with the prefix. If the filter tracks
+   * prefixes of this length and has never seen this one, an empty iterator is returned without
+   * touching the skip list.
+   */
+  public EntryIterator newPrefixIterator(MemorySegment prefix, long SN,
+      boolean includeTombstones) {
+    if (bloomFilter != null && !bloomFilter.mayContainPrefix(prefix)) {
+      return EMPTY_ITERATOR;
+    }
+    lifecycle.openIterator();
+    SkipList list = iterationList();
+    return new PinnedIterator(new PrefixIterator(
+        new SnapshotIterator(list, SN, includeTombstones, mergeOperator, rangeTombstones,
+            clock.getAsLong()), prefix), list == skipList);
+  }
+
+  /**
+   * Returns a spliterator over the node offsets visible at the given SN, split by key range. It is
+   * meant for full scans (flush, checksum, export) that should run on several threads. The
+   * spliterator does not pin the memtable: the scan has to finish before it is closed, and
+   * before it is frozen if it started earlier. A frozen memtable is scanned without splitting.
+   */
+  public Spliterator.OfInt spliterator(long SN) {
+    return readList().spliterator(SN);
+  }
+
+  /**
+   * The hash index points at the newest version of the key, so whenever that version is visible at
+   * SN it is the answer and the skip list is not touched. Older snapshots and keys the index does
+   * not know yet fall back to the skip list. Returns RANGE_DELETED if a range tombstone visible at
+   * SN is newer than the version found (or than nothing at all), and EXPIRED if the version found
+   * has expired. The clock is only read for versions that carry an expiry.
+   */
+  private int find(SkipList list, MemorySegment key, long SN) {
+    int node = findVersion(list, key, SN);
+    if (!rangeTombstones.isEmpty()) {
+      long deletedAt = rangeTombstones.getCoveringSN(key, SN);
+      if (deletedAt != RangeTombstones.NONE && (node == -1 || list.getSN(node) < deletedAt)) {
+        return RANGE_DELETED;
+      }
+    }
+
+    if (node >= 0) {
+      long expiresAt = list.getExpiry(node);
+      if (expiresAt != SkipList.NO_EXPIRY && expiresAt <= clock.getAsLong()) {
+        return EXPIRED;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * SN of what decides the key at SN: the visible version or the range tombstone that deletes it,
+   * whichever is newer, or -1 if the memtable knows nothing about the key.
+   */
+  @SuppressWarnings("try")
+  long getVisibleSN(MemorySegment key, long SN) {
+    try (EpochReclaimer.Pin pin = enter()) {
+      SkipList list = readList();
+      int node = findVersion(list, key, SN);
+      long visible = node < 0 ? -1 : list.getSN(node);
+      if (!rangeTombstones.isEmpty()) {
+        visible = Math.max(visible, rangeTombstones.getCoveringSN(key, SN));
+      }
+      return visible;
+    }
+  }
+
+  private int findVersion(SkipList list, MemorySegment key, long SN) {
+    if (bloomFilter != null && !bloomFilter.mayContain(key)) {
+      return -1;
+    }
+
+    // The hash index points at nodes of the hot list
+    if (hashIndex != null && list == skipList) {
+      // A miss is not trusted: the index is updated after linking, so a racing reader can find
+      // the node in the list before the index knows about it
+      int newest = hashIndex.find(key);
+      if (newest >= 0 && skipList.getSN(newest) <= SN) {
+        return newest;
+      }
+    }
+
+    return list.get(key, SN);
+  }
 
-    return coldArena.readBytes(keySizeOffset, totalSize).toArray(ValueLayout.JAVA_BYTE);
+  private void readVisible(SkipList list, int node, EntryView view, long SN) {
+    list.readEntry(node, view);
+    if (view.getType() == RecordType.MERGE) {
+      MergeResolver.resolve(list, mergeOperator, node, view,
+          rangeTombstones.getCoveringSN(view.getKey(), SN), clock.getAsLong());
+    }
+  }
+
+  MergeOperator getMergeOperator() {
+    return mergeOperator;
+  }
+
+  SequenceAllocator getSequenceAllocator() {
+    return sequenceAllocator;
+  }
+
+  private SequenceAllocator requireSequenceAllocator() {
+    if (sequenceAllocator == null) {
+      throw new IllegalStateException("No sequence allocator is configured for this memtable");
+    }
+    return sequenceAllocator;
   }
+
+  private void append(MemorySegment key, long SN, byte type, MemorySegment value,
+      long expiresAt) {
+    int node = skipList.insert(key, SN, type, value, expiresAt);
+    if (expiresAt != SkipList.NO_EXPIRY) {
+      expiryMetrics.record(expiresAt, RECORD_HEADER_SIZE + key.byteSize() + value.byteSize()
+          + Long.BYTES);
+    }
+    if (hashIndex != null) {
+      hashIndex.update(key, node, SN);
+    }
+    rangeTombstones.recordWrite(key, SN);
+  }
+
+  /**
+   * Holds one reference on the memtable from creation until the first close.
+   */
+  private final class PinnedIterator implements EntryIterator {
+
+    private final EntryIterator iterator;
+    // Walks the hot skip list rather than the flat one
+    private final boolean hot;
+    private boolean open = true;
+
+    private PinnedIterator(EntryIterator iterator, boolean hot) {
+      this.iterator = iterator;
+      this.hot = hot;
+    }
+
+    @Override
+    public void seekToFirst() {
+      iterator.seekToFirst();
+    }
+
+    @Override
+    public void seek(MemorySegment key) {
+      iterator.seek(key);
+    }
+
+    @Override
+    public void next() {
+      iterator.next();
+    }
+
+    @Override
+    public boolean isValid() {
+      return iterator.isValid();
+    }
+
+    @Override
+    public void read(EntryView view) {
+      iterator.read(view);
+    }
+
+    @Override
+    public void close() {
+      if (open) {
+        open = false;
+        iterator.close();
+        if (hot) {
+          closeHotIterator();
+        }
+        lifecycle.closeIterator();
+      }
+    }
+  }
+
+  private static final EntryIterator EMPTY_ITERATOR = new EntryIterator() {
+    @Override
+    public void seekToFirst() {
+    }
+
+    @Override
+    public void seek(MemorySegment key) {
+    }
+
+    @Override
+    public void next() {
+    }
+
+    @Override
+    public boolean isValid() {
+      return false;
+    }
+
+    @Override
+    public void read(EntryView view) {
+    }
+  };
 }
@@ -0,0 +1,13 @@
+package az.zeynalov.memtable;
+
+/**
+ * Writes a frozen memtable out, typically by scanning MemTable.newIterator into a sorted file. It
+ * runs on the flush executor of the MemTableManager after the last write to the memtable has
+ * finished. Once it returns the memtable is dropped and closed, so nothing read from it may be
+ * kept. If it throws, the memtable stays resident and readable.
+ */
+@FunctionalInterface
+public interface MemTableFlusher {
+
+  void flush(MemTable memTable);
+}
@@ -1,21 +1,46 @@
 package az.zeynalov.memtable;
 
 import java.lang.foreign.MemorySegment;
+import java.util.Arrays;
 
 public class MemTableIterator {
   private final SkipList skipList;
+  // Last node visited before the current position at every level, used by skipTo
+  private final int[] path;
   private int current;
 
   public MemTableIterator(SkipList skipList) {
     this.skipList = skipList;
+    this.path = new int[SkipList.MAX_LEVEL + 1];
+    this.current = skipList.getHead();
+    Arrays.fill(path, current);
   }
 
   public void seek(MemorySegment key){
-    current = skipList.get(key, Long.MAX_VALUE);
+    seek(key, Long.MAX_VALUE);
   }
 
   public void seek(MemorySegment key, long SN){
-    current = skipList.get(key, SN);
+    int candidate = skipList.seek(key, SN, path);
+    current = isSameKey(candidate, key) ? candidate : -1;
+  }
+
+  /**
+   * Moves forward to the first entry that is not before (key, SN) in iteration order and returns
+   * true if that entry is a version of the given key. Unlike seek, the search starts from the
+   * current position and the path remembered by the previous seek, so it only climbs as many
+   * levels as the distance to the target needs. The iterator never moves backwards: if the current
+   * entry is already at or after the target it stays where it is. When the key is absent the
+   * iterator is left on the entry that follows it, so a merge-join can keep going from there.
+   */
+  public boolean skipTo(MemorySegment key) {
+    return skipTo(key, Long.MAX_VALUE);
+  }
+
+  public boolean skipTo(MemorySegment key, long SN) {
+    int from = isValid() ? current : path[0];
+    current = skipList.seekFrom(from, path, key, SN);
+    return isSameKey(current, key);
   }
 
   public void next(){
@@ -27,10 +52,15 @@ public class MemTableIterator {
   }
 
   public void seekToFirst(){
+    Arrays.fill(path, skipList.getHead());
     current = skipList.readNextValid(skipList.getHead());
   }
 
   public int getCurrent() {
     return current;
   }
+
+  private boolean isSameKey(int node, MemorySegment key) {
+    return node != -1 && skipList.compareKeyOnly(node, skipList.getPrefix(key), key) == 0;
+  }
 }
@@ -0,0 +1,644 @@
+package az.zeynalov.memtable;
+
+import az.zeynalov.memtable.exception.ArenaCapacityException;
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableFlushException;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Owns the active MemTable and the frozen ones that wait for their flush. Once a write leaves
+ * either arena of the active memtable filled above the rotation threshold, or a write does not
+ * fit at all, a fresh memtable (prepared in the background when possible) takes its place and the
+ * old one is handed to the flusher on the executor. Writers never see ArenaCapacityException
+ * unless a single write does not fit into an empty memtable.
+ * <p>
+ * All memtables live in one immutable array, newest first, that is replaced with a CAS, so
+ * writers and readers take no lock. A writer registers with the memtable it writes to; the flush
+ * starts once the writers that raced the rotation are done. Flushed memtables are dropped from the
+ * array oldest first, so a newer memtable never disappears before an older one, and then closed.
+ * A lookup pins the calling thread before it reads the array, so the arenas of a memtable it found
+ * there are released only after it returns. The flush task freezes a memtable first, which swaps
+ * its skip list for a flat sorted array and releases the hot arena while it waits for its turn.
+ * <p>
+ * If the flusher throws, the manager fails: the memtable stays resident and readable, no further
+ * flush runs, and every later write throws MemTableFlushException with the failure as its cause.
+ * Newer memtables could not be dropped before the failed one anyway. getFlushFailure reports it.
+ * <p>
+ * Point lookups search the memtables newest first. Writes that raced a rotation can leave a newer
+ * version of a key in an older memtable; the SN ranges of the memtables tell when that is possible
+ * and only then the older memtables are checked as well.
+ * <p>
+ * With a WriteBufferManager, the manager also rotates when the shared budget asks for it, even
+ * below its own threshold. The factory should then create the arenas with that WriteBufferManager.
+ * With a WriteController, writers are slowed down or stopped while too many frozen memtables wait
+ * for their flush.
+ * <p>
+ * With in-memory compaction enabled, a frozen memtable is first rewritten into a fresh one that
+ * keeps only the versions the registered snapshots can still see; every deferred memtable is
+ * merged in as well. A result that fills less than half of the rotation threshold is not flushed
+ * but deferred, and the next frozen memtable is merged into it. Writes that overwrite the same keys
+ * are thus flushed far less often. If the result does not fit into one memtable, the sources are
+ * flushed as they are, oldest first. A deferred memtable is not part of the flush backlog the write
+ * controller looks at; an explicit rotate() and close() flush it.
+ */
+public class MemTableManager implements AutoCloseable {
+
+  private final static double DEFAULT_ROTATION_THRESHOLD = 0.9;
+  private final static int RECORD_HEADER_SIZE = SkipList.VALUE_SIZE_OFFSET + SkipList.VALUE_LENGTH;
+  // Share of the rotation threshold below which a compacted memtable waits for the next one
+  private final static double DEFERRED_FILL = 0.5;
+  // A flush spins this often for the writers of its memtable to finish before it parks
+  private final static int WRITER_SPINS = 100;
+  private final static long WRITER_PARK_NANOS = 10_000;
+
+  private final Supplier<MemTable> factory;
+  private final MemTableFlusher flusher;
+  private final Executor executor;
+  private final double rotationThreshold;
+  private final AtomicReference<Holder[]> tables;
+  private final AtomicReference<MemTable> spare;
+  private final AtomicBoolean rotating;
+  // Null when the manager is not part of a shared budget
+  private final WriteBufferManager writeBufferManager;
+  private final WriteController writeController;
+  // Null unless in-memory compaction is enabled
+  private volatile SnapshotRegistry snapshots;
+  private final Object compactionLock = new Object();
+  private volatile boolean closed;
+  private volatile RuntimeException flushFailure;
+
+  public static MemTableManager create(Supplier<MemTable> factory, MemTableFlusher flusher,
+      Executor executor) {
+    return create(factory, flusher, executor, DEFAULT_ROTATION_THRESHOLD);
+  }
+
+  public static MemTableManager create(Supplier<MemTable> factory, MemTableFlusher flusher,
+      Executor executor, double rotationThreshold) {
+    return create(factory, flusher, executor, rotationThreshold, null);
+  }
+
+  public static MemTableManager create(Supplier<MemTable> factory, MemTableFlusher flusher,
+      Executor executor, double rotationThreshold, WriteBufferManager writeBufferManager) {
+    return create(factory, flusher, executor, rotationThreshold, writeBufferManager, null);
+  }
+
+  /**
+   * Creates the manager, registers it with the write buffer manager and starts preparing the
+   * spare memtable. Either the write buffer manager or the write controller may be null.
+   */
+  public static MemTableManager create(Supplier<MemTable> factory, MemTableFlusher flusher,
+      Executor executor, double rotationThreshold, WriteBufferManager writeBufferManager,
+      WriteController writeController) {
+    MemTableManager manager = new MemTableManager(factory, flusher, executor, rotationThreshold,
+        writeBufferManager, writeController);
+    if (writeBufferManager != null) {
+      writeBufferManager.register(manager);
+    }
+    executor.execute(manager::prepareSpare);
+    return manager;
+  }
+
+  // Registration and the first task happen in create, once the manager is fully constructed
+  private MemTableManager(Supplier<MemTable> factory, MemTableFlusher flusher, Executor executor,
+      double rotationThreshold, WriteBufferManager writeBufferManager,
+      WriteController writeController) {
+    if (rotationThreshold <= 0 || rotationThreshold > 1) {
+      throw new IllegalArgumentException("Rotation threshold must be in (0, 1]");
+    }
+    this.factory = factory;
+    this.flusher = flusher;
+    this.executor = executor;
+    this.rotationThreshold = rotationThreshold;
+    this.tables = new AtomicReference<>(new Holder[]{new Holder(factory.get())});
+    this.spare = new AtomicReference<>();
+    this.rotating = new AtomicBoolean();
+    this.writeBufferManager = writeBufferManager;
+    this.writeController = writeController;
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
+    put(key, SN, type, value, SkipList.NO_EXPIRY);
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value, long expiresAt) {
+    apply(SN, RECORD_HEADER_SIZE + key.byteSize() + value.byteSize(),
+        memTable -> memTable.put(key, SN, type, value, expiresAt));
+  }
+
+  public long write(WriteBatch batch, long firstSN) {
+    apply(firstSN, batch.getByteSize(), memTable -> memTable.write(batch, firstSN));
+    return firstSN + batch.getCount() - 1;
+  }
+
+  /**
+   * The range tombstone goes into the active memtable, where lookups find it before any older
+   * version of the keys it covers.
+   */
+  public void deleteRange(MemorySegment start, MemorySegment end, long SN) {
+    apply(SN, start.byteSize() + end.byteSize(),
+        memTable -> memTable.deleteRange(start, end, SN));
+  }
+
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    return lookup(key, SN, view) == LookupStatus.FOUND;
+  }
+
+  /**
+   * The view points into the arena of the memtable that answered; callers that read it after
+   * another thread may have flushed that memtable should hold a pin() around the lookup. A merge
+   * chain that runs past the oldest version of the key in its memtable is folded on into the
+   * older memtables, down to a base value, a deletion or the oldest memtable.
+   */
+  @SuppressWarnings("try")
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    try (EpochReclaimer.Pin pin = pin()) {
+      Holder[] current = tables.get();
+      LookupStatus status = lookupNewest(current, key, SN, view);
+      if (status == LookupStatus.FOUND && view.getOpenMergeSN() > 0) {
+        foldOlder(current, key, view);
+      }
+      return status;
+    }
+  }
+
+  /**
+   * Pins the calling thread, so no memtable that is in the manager now is released before the
+   * pin is closed.
+   */
+  public EpochReclaimer.Pin pin() {
+    return EpochReclaimer.shared().enter();
+  }
+
+  /**
+   * Compacts frozen memtables in memory before they are flushed, keeping the versions that the
+   * snapshots of the registry can see. Meant to be called before the first rotation.
+   */
+  public void enableInMemoryCompaction(SnapshotRegistry snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * Freezes the active memtable now, whatever its fill. Its flush is never deferred, so any
+   * deferred memtable is flushed along with it.
+   */
+  public void rotate() {
+    Holder active = tables.get()[0];
+    active.forced = true;
+    while (!rotate(active) && tables.get()[0] == active) {
+      Thread.onSpinWait();
+    }
+  }
+
+  public MemTable getActive() {
+    return tables.get()[0].memTable;
+  }
+
+  /**
+   * Bytes of the active and the frozen memtables.
+   */
+  public long getMemoryUsage() {
+    long total = 0;
+    for (Holder holder : tables.get()) {
+      total += holder.memTable.getMemoryUsage();
+    }
+    return total;
+  }
+
+  /**
+   * Frozen memtables waiting for their flush. A deferred memtable waits for the next frozen one
+   * instead and is not counted.
+   */
+  int getImmutableCount() {
+    Holder[] current = tables.get();
+    int count = 0;
+    for (int i = 1; i < current.length; i++) {
+      if (!current[i].deferred) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  long getImmutableMemoryUsage() {
+    Holder[] current = tables.get();
+    long total = 0;
+    for (int i = 1; i < current.length; i++) {
+      if (!current[i].deferred) {
+        total += current[i].memTable.getMemoryUsage();
+      }
+    }
+    return total;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * The exception the flusher threw, or null while every flush succeeded.
+   */
+  public RuntimeException getFlushFailure() {
+    return flushFailure;
+  }
+
+  /**
+   * Frozen memtables that are not flushed yet, newest first.
+   */
+  public List<MemTable> getImmutableMemTables() {
+    Holder[] current = tables.get();
+    List<MemTable> result = new ArrayList<>(current.length - 1);
+    for (int i = 1; i < current.length; i++) {
+      result.add(current[i].memTable);
+    }
+    return result;
+  }
+
+  /**
+   * Flushes the deferred memtables, then closes every memtable, flushed or not. The flush executor
+   * should be shut down and drained first.
+   */
+  @Override
+  public void close() {
+    if (snapshots != null && flushFailure == null) {
+      synchronized (compactionLock) {
+        try {
+          flushDeferred();
+        } catch (RuntimeException e) {
+          flushFailure = e;
+        }
+      }
+    }
+    closed = true;
+    if (writeBufferManager != null) {
+      writeBufferManager.unregister(this);
+    }
+    for (Holder holder : tables.getAndSet(new Holder[0])) {
+      holder.memTable.close();
+    }
+    MemTable unused = spare.getAndSet(null);
+    if (unused != null) {
+      unused.close();
+    }
+    if (writeController != null) {
+      writeController.signal();
+    }
+  }
+
+  /**
+   * Runs the write against the active memtable. If the memtable is full, it is rotated and the
+   * write retried on the next one; nothing of a write that did not fit is visible. The write
+   * controller may hold the writer back first.
+   */
+  /**
+   * Fills the view with the newest version of the key visible at SN across the memtables.
+   */
+  private static LookupStatus lookupNewest(Holder[] current, MemorySegment key, long SN,
+      EntryView view) {
+    for (int i = 0; i < current.length; i++) {
+      LookupStatus status = current[i].memTable.lookup(key, SN, view);
+      if (status == LookupStatus.NOT_FOUND) {
+        continue;
+      }
+
+      int best = i;
+      long bestSN = Long.MIN_VALUE;
+      for (int j = i + 1; j < current.length; j++) {
+        long floor = bestSN == Long.MIN_VALUE ? current[i].minSN.get() : bestSN;
+        if (current[j].memTable.getPublishedSN() < floor) {
+          continue;
+        }
+        if (bestSN == Long.MIN_VALUE) {
+          bestSN = current[i].memTable.getVisibleSN(key, SN);
+        }
+        long candidate = current[j].memTable.getVisibleSN(key, SN);
+        if (candidate > bestSN) {
+          best = j;
+          bestSN = candidate;
+        }
+      }
+      return best == i ? status : current[best].memTable.lookup(key, SN, view);
+    }
+    return LookupStatus.NOT_FOUND;
+  }
+
+  /**
+   * Folds the versions older than the open merge chain in the view into it, one memtable at a
+   * time, until the chain ends. The memtables all come from the factory, so they share the
+   * merge operator.
+   */
+  private static void foldOlder(Holder[] current, MemorySegment key, EntryView view) {
+    MergeOperator mergeOperator = current[0].memTable.getMergeOperator();
+    EntryView older = new EntryView();
+    long openSN = view.getOpenMergeSN();
+    while (openSN > 0) {
+      if (lookupNewest(current, key, openSN - 1, older) != LookupStatus.FOUND) {
+        // Deleted or never written before the chain, which is then folded already
+        view.setResolvedValue(view.getValue(), -1);
+        return;
+      }
+      openSN = older.getOpenMergeSN();
+      view.setResolvedValue(mergeOperator.merge(key, older.getValue(), view.getValue()), openSN);
+    }
+  }
+
+  private void apply(long SN, long bytes, Consumer<MemTable> write) {
+    checkFlushFailure();
+    if (writeController != null) {
+      writeController.throttle(this, bytes);
+      checkFlushFailure();
+    }
+    while (true) {
+      Holder active = acquire();
+      boolean full = false;
+      try {
+        write.accept(active.memTable);
+        active.minSN.accumulate(SN);
+      } catch (ArenaCapacityException e) {
+        if (active.memTable.getPublishedSN() < 0) {
+          throw e;
+        }
+        full = true;
+      } finally {
+        active.writers.decrementAndGet();
+      }
+
+      if (full) {
+        if (!rotate(active)) {
+          Thread.onSpinWait();
+        }
+        continue;
+      }
+      if (active.memTable.getFillRatio() >= rotationThreshold) {
+        rotate(active);
+      }
+      if (writeBufferManager != null) {
+        writeBufferManager.maybeFlush();
+      }
+      return;
+    }
+  }
+
+  /**
+   * Registers with the active memtable. The check after the increment guarantees that a flush,
+   * which waits for the writers of a memtable it took out of the active slot, sees every write.
+   */
+  private Holder acquire() {
+    while (true) {
+      Holder active = tables.get()[0];
+      active.writers.incrementAndGet();
+      if (tables.get()[0] == active) {
+        return active;
+      }
+      active.writers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Replaces the given active memtable with a fresh one and schedules its flush. Returns false if
+   * another rotation is running; writers then keep using the old memtable until it finishes.
+   */
+  private boolean rotate(Holder full) {
+    if (!rotating.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      Holder[] current = tables.get();
+      if (current.length == 0 || current[0] != full) {
+        return true;
+      }
+
+      MemTable next = spare.getAndSet(null);
+      Holder[] rotated = new Holder[current.length + 1];
+      rotated[0] = new Holder(next != null ? next : factory.get());
+      System.arraycopy(current, 0, rotated, 1, current.length);
+      tables.set(rotated);
+    } finally {
+      rotating.set(false);
+    }
+
+    executor.execute(() -> flush(full));
+    executor.execute(this::prepareSpare);
+    return true;
+  }
+
+  private void flush(Holder frozen) {
+    awaitWriters(frozen);
+    try {
+      if (closed || flushFailure != null) {
+        return;
+      }
+      frozen.memTable.freeze();
+      if (snapshots == null) {
+        flushNow(frozen);
+      } else {
+        synchronized (compactionLock) {
+          compactOrFlush(frozen);
+        }
+      }
+    } catch (RuntimeException e) {
+      flushFailure = e;
+    } finally {
+      if (writeController != null) {
+        writeController.signal();
+      }
+    }
+  }
+
+  /**
+   * Waits for the writers that raced the rotation. Their writes are short, so the wait spins first
+   * and only parks the flush thread if they take longer.
+   */
+  private static void awaitWriters(Holder frozen) {
+    for (int spins = 0; frozen.writers.get() != 0; spins++) {
+      if (spins < WRITER_SPINS) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(WRITER_PARK_NANOS);
+      }
+    }
+  }
+
+  private void checkFlushFailure() {
+    RuntimeException failure = flushFailure;
+    if (failure != null) {
+      throw MemTableFlushException.of(ErrorMessage.FLUSH_FAILED, failure);
+    }
+  }
+
+  private void flushNow(Holder frozen) {
+    flusher.flush(frozen.memTable);
+    frozen.flushed = true;
+    dropFlushed();
+  }
+
+  /**
+   * Compacts the frozen memtable, together with every deferred one, into a fresh memtable that
+   * replaces them in the array at the position of the newest. Deferred memtables need not sit
+   * next to the frozen one: with several flush threads a newer memtable may be compacted before an
+   * older one. Only runs under the compaction lock, so no other thread touches a deferred memtable
+   * meanwhile.
+   */
+  private void compactOrFlush(Holder frozen) {
+    // Newest first, like the array
+    List<Holder> merged = new ArrayList<>();
+    for (Holder holder : tables.get()) {
+      if (holder == frozen || holder.deferred) {
+        merged.add(holder);
+      }
+    }
+    if (!merged.contains(frozen)) {
+      return;
+    }
+    MemTable[] sources = new MemTable[merged.size()];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = merged.get(i).memTable;
+    }
+
+    MemTable target = factory.get();
+    try {
+      MemTable.compact(sources, target, snapshots.getSNs());
+    } catch (ArenaCapacityException e) {
+      target.close();
+      for (int i = merged.size() - 1; i >= 0; i--) {
+        merged.get(i).deferred = false;
+        flushNow(merged.get(i));
+      }
+      return;
+    }
+
+    Holder compacted = new Holder(target);
+    for (Holder holder : merged) {
+      compacted.minSN.accumulate(holder.minSN.get());
+    }
+    compacted.deferred = !frozen.forced
+        && target.getFillRatio() < rotationThreshold * DEFERRED_FILL;
+    if (!replace(merged, compacted)) {
+      target.close();
+      return;
+    }
+    for (Holder holder : merged) {
+      holder.memTable.close();
+    }
+    if (compacted.deferred) {
+      target.freeze();
+    } else {
+      flushNow(compacted);
+    }
+  }
+
+  /**
+   * Flushes the deferred memtables as they are, oldest first. Runs under the compaction lock.
+   */
+  private void flushDeferred() {
+    Holder[] current = tables.get();
+    for (int i = current.length - 1; i > 0; i--) {
+      if (current[i].deferred) {
+        current[i].deferred = false;
+        flushNow(current[i]);
+      }
+    }
+  }
+
+  /**
+   * Puts the compacted memtable in place of the merged ones, at the position of the newest of
+   * them. Returns false if the manager was closed meanwhile.
+   */
+  private boolean replace(List<Holder> merged, Holder compacted) {
+    while (true) {
+      Holder[] current = tables.get();
+      for (Holder holder : merged) {
+        if (indexOf(current, holder) < 0) {
+          return false;
+        }
+      }
+      Holder[] replaced = new Holder[current.length - merged.size() + 1];
+      int next = 0;
+      boolean placed = false;
+      for (Holder holder : current) {
+        if (!merged.contains(holder)) {
+          replaced[next++] = holder;
+        } else if (!placed) {
+          replaced[next++] = compacted;
+          placed = true;
+        }
+      }
+      if (tables.compareAndSet(current, replaced)) {
+        return true;
+      }
+    }
+  }
+
+  private static int indexOf(Holder[] holders, Holder holder) {
+    for (int i = 0; i < holders.length; i++) {
+      if (holders[i] == holder) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Drops the flushed memtables at the old end of the array and closes them. Readers that still
+   * hold them keep their arenas alive until they are done.
+   */
+  private void dropFlushed() {
+    while (true) {
+      Holder[] current = tables.get();
+      int keep = current.length;
+      while (keep > 1 && current[keep - 1].flushed) {
+        keep--;
+      }
+      if (keep == current.length) {
+        return;
+      }
+      if (tables.compareAndSet(current, Arrays.copyOf(current, keep))) {
+        for (int i = keep; i < current.length; i++) {
+          current[i].memTable.close();
+        }
+        return;
+      }
+    }
+  }
+
+  private void prepareSpare() {
+    if (closed || spare.get() != null) {
+      return;
+    }
+    MemTable prepared = factory.get();
+    if (!spare.compareAndSet(null, prepared)) {
+      prepared.close();
+    } else if (closed && spare.compareAndSet(prepared, null)) {
+      prepared.close();
+    }
+  }
+
+  private static final class Holder {
+    private final MemTable memTable;
+    private final AtomicInteger writers;
+    // Lowest SN written through the manager
+    private final LongAccumulator minSN;
+    private volatile boolean flushed;
+    // Compacted and waiting to be merged with the next frozen memtable instead of flushed
+    private volatile boolean deferred;
+    // Rotated on request: the flush is never deferred
+    private volatile boolean forced;
+
+    private Holder(MemTable memTable) {
+      this.memTable = memTable;
+      this.writers = new AtomicInteger();
+      this.minSN = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package az.zeynalov.memtable;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Optional components of a MemTable. Everything is off by default; the setters return this so the
+ * options can be built in one expression.
+ */
+public class MemTableOptions {
+
+  private BloomFilter bloomFilter;
+  private HashIndex hashIndex;
+  private LongSupplier oldestSnapshot;
+  private MergeOperator mergeOperator;
+  private LongSupplier clock = System::currentTimeMillis;
+  private SequenceAllocator sequenceAllocator;
+
+  public MemTableOptions bloomFilter(BloomFilter bloomFilter) {
+    this.bloomFilter = bloomFilter;
+    return this;
+  }
+
+  public MemTableOptions hashIndex(HashIndex hashIndex) {
+    this.hashIndex = hashIndex;
+    return this;
+  }
+
+  /**
+   * Enables in-place updates. The supplier returns the lowest SN a reader may still read this
+   * memtable at, or Long.MAX_VALUE when every reader only wants the latest data; versions that no
+   * such reader can see are overwritten instead of appended. Only 8-byte values on a word boundary
+   * are overwritten, so that lock-free readers never see a partly written value.
+   */
+  public MemTableOptions inPlaceUpdates(LongSupplier oldestSnapshot) {
+    this.oldestSnapshot = oldestSnapshot;
+    return this;
+  }
+
+  /**
+   * Operator that folds RecordType.MERGE operands on read. Needed as soon as merge operands are
+   * written.
+   */
+  public MemTableOptions mergeOperator(MergeOperator mergeOperator) {
+    this.mergeOperator = mergeOperator;
+    return this;
+  }
+
+  /**
+   * Source of the current time, in the unit of the expiry timestamps passed to put. Defaults to
+   * System.currentTimeMillis.
+   */
+  public MemTableOptions clock(LongSupplier clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  /**
+   * Source of SNs for the put and write overloads that take none. Memtables that follow each
+   * other should share one allocator.
+   */
+  public MemTableOptions sequenceAllocator(SequenceAllocator sequenceAllocator) {
+    this.sequenceAllocator = sequenceAllocator;
+    return this;
+  }
+
+  public BloomFilter getBloomFilter() {
+    return bloomFilter;
+  }
+
+  public HashIndex getHashIndex() {
+    return hashIndex;
+  }
+
+  public LongSupplier getOldestSnapshot() {
+    return oldestSnapshot;
+  }
+
+  public MergeOperator getMergeOperator() {
+    return mergeOperator;
+  }
+
+  public LongSupplier getClock() {
+    return clock;
+  }
+
+  public SequenceAllocator getSequenceAllocator() {
+    return sequenceAllocator;
+  }
+}
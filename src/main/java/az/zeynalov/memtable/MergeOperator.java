@@ -0,0 +1,16 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Combines merge operands (records of type RecordType.MERGE) with the versions below them. The
+ * operator must be associative: operands are folded from the oldest to the newest, starting at
+ * the base value when the key has one, and starting at the oldest operand when the chain ends in
+ * a tombstone or at the oldest version of the key. The returned segment may be one of the
+ * arguments or new memory; arguments that point into the arena must not be kept.
+ */
+@FunctionalInterface
+public interface MergeOperator {
+
+  MemorySegment merge(MemorySegment key, MemorySegment older, MemorySegment newer);
+}
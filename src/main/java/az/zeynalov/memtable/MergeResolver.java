@@ -0,0 +1,72 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lazy folding of merge operands on read. The versions of a key are adjacent in the SkipList and
+ * come newest first, so the operands under a visible MERGE version are the nodes that follow it
+ * at level 0, up to the first value, tombstone, other key, version deleted by a range
+ * tombstone or expired version. A chain that reaches the other key, or the end of the list, is
+ * left open: the older versions of the key may be in an older memtable, which is up to the caller
+ * to fold in.
+ */
+final class MergeResolver {
+
+  private MergeResolver() {
+  }
+
+  /**
+   * Folds the merge chain that starts at the node into the view, which must already hold the
+   * entry of that node. Versions with an SN below deletedAt are treated as deleted
+   * (RangeTombstones.NONE if no range tombstone covers the key), and versions that expire at or
+   * before now as expired. A chain left open is recorded in the view with the SN of its oldest
+   * operand.
+   */
+  static void resolve(SkipList skipList, MergeOperator mergeOperator, int node, EntryView view,
+      long deletedAt, long now) {
+    if (mergeOperator == null) {
+      throw new IllegalStateException("Found a merge operand but no merge operator is configured");
+    }
+
+    MemorySegment key = view.getKey();
+    long prefix = skipList.getPrefix(key);
+    List<MemorySegment> operands = new ArrayList<>();
+    operands.add(view.getValue());
+
+    EntryView older = new EntryView();
+    MemorySegment value = null;
+    long oldestSN = view.getSN();
+    boolean open = deletedAt == RangeTombstones.NONE;
+    for (int next = skipList.readNextValid(node);
+        next != -1 && skipList.compareKeyOnly(next, prefix, key) == 0;
+        next = skipList.readNextValid(next)) {
+      skipList.readEntry(next, older);
+      if (older.getSN() < deletedAt || skipList.getExpiry(next) <= now) {
+        open = false;
+        break;
+      }
+      if (older.getType() == RecordType.VALUE) {
+        value = older.getValue();
+        open = false;
+        break;
+      }
+      if (older.getType() == RecordType.TOMBSTONE) {
+        open = false;
+        break;
+      }
+      operands.add(older.getValue());
+      oldestSN = older.getSN();
+    }
+
+    int index = operands.size() - 1;
+    if (value == null) {
+      value = operands.get(index--);
+    }
+    for (; index >= 0; index--) {
+      value = mergeOperator.merge(key, value, operands.get(index));
+    }
+    view.setResolvedValue(value, open ? oldestSN : -1);
+  }
+}
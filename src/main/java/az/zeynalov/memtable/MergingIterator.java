@@ -0,0 +1,105 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.PriorityQueue;
+
+/**
+ * Merges several iterators into one ordered stream (keys descending, as in the SkipList). The
+ * children must hold disjoint key sets, which is the case when every key is routed to exactly one
+ * of them, so no key appears twice and no version resolution is needed. The valid children sit in
+ * a heap ordered by their current key; next advances only the child on top.
+ */
+class MergingIterator implements EntryIterator {
+
+  private final Child[] children;
+  private final PriorityQueue<Child> heap;
+
+  MergingIterator(EntryIterator[] iterators) {
+    this.children = new Child[iterators.length];
+    for (int i = 0; i < iterators.length; i++) {
+      children[i] = new Child(iterators[i]);
+    }
+    this.heap = new PriorityQueue<>(Math.max(1, iterators.length),
+        (a, b) -> compareKeys(b.view.getKey(), a.view.getKey()));
+  }
+
+  @Override
+  public void seekToFirst() {
+    heap.clear();
+    for (Child child : children) {
+      child.iterator.seekToFirst();
+      offer(child);
+    }
+  }
+
+  @Override
+  public void seek(MemorySegment key) {
+    heap.clear();
+    for (Child child : children) {
+      child.iterator.seek(key);
+      offer(child);
+    }
+  }
+
+  @Override
+  public void next() {
+    Child top = heap.poll();
+    if (top != null) {
+      top.iterator.next();
+      offer(top);
+    }
+  }
+
+  @Override
+  public boolean isValid() {
+    return !heap.isEmpty();
+  }
+
+  @Override
+  public void read(EntryView view) {
+    heap.element().iterator.read(view);
+  }
+
+  @Override
+  public void close() {
+    for (Child child : children) {
+      child.iterator.close();
+    }
+  }
+
+  private void offer(Child child) {
+    if (child.iterator.isValid()) {
+      child.iterator.read(child.view);
+      heap.offer(child);
+    }
+  }
+
+  /**
+   * Unsigned lexicographic comparison, a shorter key sorts before the keys it is a prefix of. Same
+   * order as SkipList.compareKeyBytes.
+   */
+  static int compareKeys(MemorySegment a, MemorySegment b) {
+    long mismatch = MemorySegment.mismatch(a, 0, a.byteSize(), b, 0, b.byteSize());
+    if (mismatch == -1) {
+      return 0;
+    }
+    if (mismatch == a.byteSize()) {
+      return -1;
+    }
+    if (mismatch == b.byteSize()) {
+      return 1;
+    }
+    return Byte.compareUnsigned(a.get(ValueLayout.JAVA_BYTE, mismatch),
+        b.get(ValueLayout.JAVA_BYTE, mismatch));
+  }
+
+  private static final class Child {
+    private final EntryIterator iterator;
+    private final EntryView view = new EntryView();
+
+    private Child(EntryIterator iterator) {
+      this.iterator = iterator;
+    }
+  }
+}
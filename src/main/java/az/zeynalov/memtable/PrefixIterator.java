@@ -0,0 +1,105 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Snapshot iterator restricted to the keys that start with a prefix. Keys are in descending order,
+ * so the range starts at the largest key with the prefix: seekToFirst seeks to the successor of
+ * the prefix (the prefix with its last byte below 0xFF incremented and the rest dropped) and skips
+ * the successor itself if it exists. The iterator becomes invalid at the first key without the
+ * prefix.
+ */
+public class PrefixIterator implements EntryIterator {
+
+  private final EntryIterator iterator;
+  private final MemorySegment prefix;
+  private final MemorySegment successor;
+  private final EntryView view;
+  private boolean valid;
+
+  public PrefixIterator(EntryIterator iterator, MemorySegment prefix) {
+    this.iterator = iterator;
+    this.prefix = prefix;
+    this.successor = successor(prefix);
+    this.view = new EntryView();
+  }
+
+  @Override
+  public void seekToFirst() {
+    if (successor == null) {
+      iterator.seekToFirst();
+    } else {
+      iterator.seek(successor);
+    }
+
+    while (iterator.isValid() && !startsWithPrefix() && isBeforePrefix()) {
+      iterator.next();
+    }
+    valid = iterator.isValid() && startsWithPrefix();
+  }
+
+  @Override
+  public void seek(MemorySegment key) {
+    iterator.seek(key);
+    valid = iterator.isValid() && startsWithPrefix();
+  }
+
+  @Override
+  public void next() {
+    iterator.next();
+    valid = iterator.isValid() && startsWithPrefix();
+  }
+
+  @Override
+  public boolean isValid() {
+    return valid;
+  }
+
+  @Override
+  public void read(EntryView target) {
+    iterator.read(target);
+  }
+
+  @Override
+  public void close() {
+    iterator.close();
+  }
+
+  private boolean startsWithPrefix() {
+    iterator.read(view);
+    long length = prefix.byteSize();
+    return view.getKeySize() >= length
+        && MemorySegment.mismatch(view.getKey(), 0, length, prefix, 0, length) == -1;
+  }
+
+  private boolean isBeforePrefix() {
+    MemorySegment key = view.getKey();
+    long mismatch = MemorySegment.mismatch(key, 0, key.byteSize(), prefix, 0, prefix.byteSize());
+    if (mismatch == -1 || mismatch == prefix.byteSize()) {
+      return false;
+    }
+    if (mismatch == key.byteSize()) {
+      return false;
+    }
+    return Byte.compareUnsigned(key.get(ValueLayout.JAVA_BYTE, mismatch),
+        prefix.get(ValueLayout.JAVA_BYTE, mismatch)) > 0;
+  }
+
+  /**
+   * Returns the smallest key greater than every key that starts with the prefix, or null if the
+   * prefix consists only of 0xFF bytes.
+   */
+  private static MemorySegment successor(MemorySegment prefix) {
+    byte[] bytes = prefix.toArray(ValueLayout.JAVA_BYTE);
+    for (int i = bytes.length - 1; i >= 0; i--) {
+      if (bytes[i] != (byte) 0xFF) {
+        byte[] result = new byte[i + 1];
+        System.arraycopy(bytes, 0, result, 0, i + 1);
+        result[i]++;
+        return MemorySegment.ofArray(result);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,260 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Range deletions of a memtable, kept next to the SkipList instead of as one tombstone per key. A
+ * range tombstone [start, end) at SN deletes every version of the keys in the range whose SN is
+ * lower than SN, for readers at SN or above.
+ * <p>
+ * The tombstones are fragmented: the key space is cut at every start and end into disjoint
+ * fragments, and each fragment lists the SNs of the tombstones that cover it, highest first. A
+ * lookup is a binary search over the fragments plus a scan of one short SN list. deleteRange
+ * splits only the fragments at the bounds of the new tombstone, copies the rest of the array and
+ * publishes it with a volatile write, so readers never lock and a deletion costs one pass over the
+ * fragments.
+ * <p>
+ * A tombstone is clean until a write with an SN at or above its own lands inside its range. As
+ * long as writers use increasing SNs, every version in the range of a clean tombstone is older
+ * than it, so a scan can seek past the whole fragment instead of visiting each deleted key.
+ * Writers first raise a high watermark of written SNs and then look for tombstones to mark;
+ * deleteRange first publishes the tombstone and then reads the watermark. A write racing with
+ * deleteRange is therefore either seen by deleteRange, which marks the new tombstone dirty, or
+ * sees the new tombstone itself.
+ */
+public class RangeTombstones {
+
+  public final static long NONE = Long.MIN_VALUE;
+
+  private final List<Tombstone> tombstones = new ArrayList<>();
+  private final LongAccumulator writeWatermark = new LongAccumulator(Math::max, Long.MIN_VALUE);
+  private volatile Fragment[] fragments = new Fragment[0];
+
+  /**
+   * Deletes the keys k with start <= k < end (unsigned lexicographic order) at SN.
+   */
+  public synchronized void deleteRange(MemorySegment start, MemorySegment end, long SN) {
+    if (MergingIterator.compareKeys(start, end) >= 0) {
+      throw new IllegalArgumentException("Range start must be lower than range end");
+    }
+
+    add(new Tombstone(copy(start), copy(end), SN));
+  }
+
+  /**
+   * Adds every tombstone of the source, for a memtable that takes over the contents of another.
+   */
+  synchronized void addAll(RangeTombstones source) {
+    for (Tombstone tombstone : source.getTombstones()) {
+      add(new Tombstone(tombstone.start, tombstone.end, tombstone.SN));
+    }
+  }
+
+  private void add(Tombstone tombstone) {
+    tombstones.add(tombstone);
+    fragments = insert(fragments, tombstone);
+    if (writeWatermark.get() >= tombstone.SN) {
+      tombstone.dirty = true;
+    }
+  }
+
+  public boolean isEmpty() {
+    return fragments.length == 0;
+  }
+
+  /**
+   * Number of deleteRange calls, not fragments.
+   */
+  public synchronized int size() {
+    return tombstones.size();
+  }
+
+  public synchronized List<Tombstone> getTombstones() {
+    return List.copyOf(tombstones);
+  }
+
+  /**
+   * Returns the highest SN at or below the read SN of the tombstones that cover the key, or NONE.
+   * Versions of the key with a lower SN are deleted for this reader.
+   */
+  public long getCoveringSN(MemorySegment key, long SN) {
+    Fragment fragment = findFragment(key);
+    if (fragment == null) {
+      return NONE;
+    }
+    Tombstone tombstone = fragment.visible(SN);
+    return tombstone == null ? NONE : tombstone.SN;
+  }
+
+  /**
+   * Marks the tombstones that cover the key and are not newer than the write as dirty. Called
+   * after every write.
+   */
+  void recordWrite(MemorySegment key, long SN) {
+    writeWatermark.accumulate(SN);
+    if (fragments.length == 0) {
+      return;
+    }
+
+    Fragment fragment = findFragment(key);
+    if (fragment == null) {
+      return;
+    }
+    for (Tombstone tombstone : fragment.tombstones) {
+      if (tombstone.SN <= SN && !tombstone.dirty) {
+        tombstone.dirty = true;
+      }
+    }
+  }
+
+  Fragment findFragment(MemorySegment key) {
+    Fragment[] current = fragments;
+    int low = 0;
+    int high = current.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      Fragment fragment = current[middle];
+      if (MergingIterator.compareKeys(key, fragment.start) < 0) {
+        high = middle - 1;
+      } else if (MergingIterator.compareKeys(key, fragment.end) >= 0) {
+        low = middle + 1;
+      } else {
+        return fragment;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the fragments with the tombstone added: fragments outside its range are kept, the ones
+   * it partly covers are split at its bounds, and the gaps it covers become new fragments.
+   */
+  private static Fragment[] insert(Fragment[] current, Tombstone tombstone) {
+    List<Fragment> result = new ArrayList<>(current.length + 3);
+    Tombstone[] alone = {tombstone};
+    // Start of the part of the range that no output fragment covers yet
+    MemorySegment cursor = tombstone.start;
+    for (Fragment fragment : current) {
+      if (MergingIterator.compareKeys(fragment.end, tombstone.start) <= 0) {
+        result.add(fragment);
+        continue;
+      }
+
+      MemorySegment gapEnd = min(fragment.start, tombstone.end);
+      if (MergingIterator.compareKeys(cursor, gapEnd) < 0) {
+        result.add(new Fragment(cursor, gapEnd, alone));
+        cursor = gapEnd;
+      }
+      if (MergingIterator.compareKeys(fragment.start, tombstone.end) >= 0) {
+        result.add(fragment);
+        continue;
+      }
+
+      if (MergingIterator.compareKeys(fragment.start, tombstone.start) < 0) {
+        result.add(new Fragment(fragment.start, tombstone.start, fragment.tombstones));
+      }
+      MemorySegment from = max(fragment.start, tombstone.start);
+      cursor = min(fragment.end, tombstone.end);
+      result.add(new Fragment(from, cursor, with(fragment.tombstones, tombstone)));
+      if (MergingIterator.compareKeys(fragment.end, tombstone.end) > 0) {
+        result.add(new Fragment(tombstone.end, fragment.end, fragment.tombstones));
+      }
+    }
+    if (MergingIterator.compareKeys(cursor, tombstone.end) < 0) {
+      result.add(new Fragment(cursor, tombstone.end, alone));
+    }
+    return result.toArray(new Fragment[0]);
+  }
+
+  /**
+   * Copy of the tombstones, highest SN first, with the new one after those of an equal SN.
+   */
+  private static Tombstone[] with(Tombstone[] tombstones, Tombstone tombstone) {
+    int position = 0;
+    while (position < tombstones.length && tombstones[position].SN >= tombstone.SN) {
+      position++;
+    }
+    Tombstone[] result = new Tombstone[tombstones.length + 1];
+    System.arraycopy(tombstones, 0, result, 0, position);
+    result[position] = tombstone;
+    System.arraycopy(tombstones, position, result, position + 1, tombstones.length - position);
+    return result;
+  }
+
+  private static MemorySegment min(MemorySegment a, MemorySegment b) {
+    return MergingIterator.compareKeys(a, b) <= 0 ? a : b;
+  }
+
+  private static MemorySegment max(MemorySegment a, MemorySegment b) {
+    return MergingIterator.compareKeys(a, b) >= 0 ? a : b;
+  }
+
+  private static MemorySegment copy(MemorySegment key) {
+    return MemorySegment.ofArray(key.toArray(ValueLayout.JAVA_BYTE));
+  }
+
+  public static final class Tombstone {
+    private final MemorySegment start;
+    private final MemorySegment end;
+    private final long SN;
+    private volatile boolean dirty;
+
+    private Tombstone(MemorySegment start, MemorySegment end, long SN) {
+      this.start = start;
+      this.end = end;
+      this.SN = SN;
+    }
+
+    public MemorySegment getStart() {
+      return start;
+    }
+
+    public MemorySegment getEnd() {
+      return end;
+    }
+
+    public long getSN() {
+      return SN;
+    }
+  }
+
+  /**
+   * Disjoint key range [start, end) with the tombstones that cover it, highest SN first.
+   */
+  static final class Fragment {
+    final MemorySegment start;
+    final MemorySegment end;
+    private final Tombstone[] tombstones;
+
+    private Fragment(MemorySegment start, MemorySegment end, Tombstone[] tombstones) {
+      this.start = start;
+      this.end = end;
+      this.tombstones = tombstones;
+    }
+
+    /**
+     * Highest tombstone visible at the read SN, or null.
+     */
+    Tombstone visible(long SN) {
+      for (Tombstone tombstone : tombstones) {
+        if (tombstone.SN <= SN) {
+          return tombstone;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * True if every version in the fragment below the tombstone visible at SN is deleted, so a
+     * scan may skip the fragment.
+     */
+    boolean isClean(long SN) {
+      Tombstone tombstone = visible(SN);
+      return tombstone != null && !tombstone.dirty;
+    }
+  }
+}
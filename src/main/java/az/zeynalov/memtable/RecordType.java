@@ -0,0 +1,13 @@
+package az.zeynalov.memtable;
+
+/**
+ * Values of the type field stored in every cold record.
+ */
+public class RecordType {
+
+  public final static byte TOMBSTONE = 0;
+  public final static byte VALUE = 1;
+  // Operand folded onto the older versions of the key by the MergeOperator of the memtable
+  public final static byte MERGE = 2;
+
+}
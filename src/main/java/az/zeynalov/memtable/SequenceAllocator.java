@@ -0,0 +1,149 @@
+package az.zeynalov.memtable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out SNs to writer threads in leased ranges and tracks the published SN, below which every
+ * SN is either written or never will be.
+ * <p>
+ * A thread leases leaseSize SNs at a time from the shared counter and then takes them one by one
+ * (or a batch at a time) from its own slot, so the shared counter is touched once per lease. A slot
+ * sits on its own cache line and holds the next SN its thread may take, with the IN_FLIGHT bit set
+ * between acquire and release. Only the owner ever writes its slot.
+ * <p>
+ * getPublishedSN walks the slots without writing them. Everything below the counter has been
+ * handed out, so the watermark is one below the lowest SN in flight, or one below the counter if
+ * nothing is in flight. Idle slots are skipped: a slot that still holds part of a lease would
+ * otherwise keep the watermark back, maybe forever. Instead, before it walks the slots, the reader
+ * raises the revoked bound to one below the counter it read, and a writer that starts a write from
+ * the rest of its lease sets IN_FLIGHT first and then checks that bound. Both sides write before
+ * they read, so either the reader sees the write in flight or the writer sees that its lease was
+ * revoked and leases again; the SNs it held are never written. A reader at the published SN
+ * therefore never sees a gap that a slow writer fills in later.
+ * <p>
+ * A thread that dies between acquire and release holds the watermark back for good.
+ */
+public class SequenceAllocator {
+
+  public final static int DEFAULT_LEASE_SIZE = 64;
+
+  private final static long IN_FLIGHT = 1L << 62;
+  private final static long NONE = Long.MAX_VALUE;
+
+  private final int leaseSize;
+  private final AtomicLong counter;
+  private final AtomicLong published;
+  // Every lease SN up to this one is revoked, see getPublishedSN
+  private final AtomicLong revoked;
+  private final CopyOnWriteArrayList<Slot> slots;
+  private final ThreadLocal<Slot> localSlot;
+
+  public SequenceAllocator() {
+    this(1, DEFAULT_LEASE_SIZE);
+  }
+
+  public SequenceAllocator(long firstSN, int leaseSize) {
+    if (firstSN < 0 || leaseSize <= 0) {
+      throw new IllegalArgumentException("First SN must not be negative and lease size positive");
+    }
+    this.leaseSize = leaseSize;
+    this.counter = new AtomicLong(firstSN);
+    this.published = new AtomicLong(firstSN - 1);
+    this.revoked = new AtomicLong(firstSN - 1);
+    this.slots = new CopyOnWriteArrayList<>();
+    this.localSlot = ThreadLocal.withInitial(this::register);
+  }
+
+  /**
+   * Takes one SN for a write of the calling thread, which must call release once the write is
+   * visible or has failed.
+   */
+  public long acquire() {
+    return acquire(1);
+  }
+
+  /**
+   * Takes count contiguous SNs for a batch; the first one is returned.
+   */
+  public long acquire(int count) {
+    Slot slot = localSlot.get();
+    if (slot.count != 0) {
+      throw new IllegalStateException("The thread already has SNs in flight");
+    }
+
+    long next = slot.state;
+    if (next != NONE && next + count <= slot.end) {
+      slot.state = next | IN_FLIGHT;
+    }
+    // Checked after the bit is set, see getPublishedSN
+    if (next == NONE || next + count > slot.end || revoked.get() >= next) {
+      // The lower bound is announced before the counter moves, see getPublishedSN
+      slot.state = counter.get() | IN_FLIGHT;
+      int size = Math.max(count, leaseSize);
+      next = counter.getAndAdd(size);
+      slot.state = next | IN_FLIGHT;
+      slot.end = next + size;
+    }
+    slot.count = count;
+    return next;
+  }
+
+  /**
+   * Ends the write of the SNs the calling thread acquired last.
+   */
+  public void release() {
+    Slot slot = localSlot.get();
+    if (slot.count == 0) {
+      throw new IllegalStateException("The thread has no SNs in flight");
+    }
+    long next = (slot.state & ~IN_FLIGHT) + slot.count;
+    slot.count = 0;
+    slot.state = next < slot.end ? next : NONE;
+  }
+
+  /**
+   * Highest SN up to which every SN is written or abandoned. Reads at this SN are repeatable.
+   */
+  public long getPublishedSN() {
+    long bound = counter.get();
+    // Revokes the idle leases below the counter before the slots are read; the shared line is
+    // only written when the counter moved since the last call
+    if (revoked.get() < bound - 1) {
+      revoked.accumulateAndGet(bound - 1, Math::max);
+    }
+    for (Slot slot : slots) {
+      long state = slot.state;
+      if ((state & IN_FLIGHT) != 0 && state != NONE) {
+        bound = Math.min(bound, state & ~IN_FLIGHT);
+      }
+    }
+    long watermark = bound - 1;
+    long current = published.get();
+    return watermark > current ? published.accumulateAndGet(watermark, Math::max) : current;
+  }
+
+  /**
+   * Next SN a new lease would start at.
+   */
+  public long getNextSN() {
+    return counter.get();
+  }
+
+  private Slot register() {
+    Slot slot = new Slot();
+    slots.add(slot);
+    return slot;
+  }
+
+  // Padding keeps the slots of two threads out of the same cache line
+  @SuppressWarnings("unused")
+  private static final class Slot {
+    private long p1, p2, p3, p4, p5, p6, p7;
+    private volatile long state = NONE;
+    // Only touched by the owning thread
+    private long end;
+    private int count;
+    private long q1, q2, q3, q4, q5, q6, q7;
+  }
+}
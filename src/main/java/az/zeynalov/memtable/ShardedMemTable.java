@@ -0,0 +1,212 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Supplier;
+
+/**
+ * MemTable layout for many concurrent writers. The key space is cut into ranges at the split
+ * keys, and every range is a MemTable of its own with its own skip list and arena pair. A single
+ * skip list has one head, one level counter and one allocation counter per arena that every
+ * writer hits with a CAS; here writers to different ranges share none of them, so inserts scale
+ * with the number of shards as long as the keys spread over the ranges.
+ * <p>
+ * Shard i holds the keys from split key i - 1 (inclusive) up to split key i (exclusive); the first
+ * shard has no lower and the last no upper bound. Point operations go to one shard, found by a
+ * binary search over the split keys. Keys are ordered descending, so an ordered scan reads the
+ * shards from the last to the first and needs no merge. Split keys are either given or taken from
+ * a sample of the keys with sampleSplitKeys.
+ * <p>
+ * Write batches are not offered: a batch over several shards would not become visible at once.
+ */
+public class ShardedMemTable implements AutoCloseable {
+
+  private final MemorySegment[] splitKeys;
+  private final MemTable[] shards;
+  private final LongAccumulator publishedSN;
+
+  /**
+   * splitKeys must be in ascending order without duplicates; there is one shard more than split
+   * keys. The factory creates the memtable of every shard.
+   */
+  public ShardedMemTable(MemorySegment[] splitKeys, Supplier<MemTable> factory) {
+    for (int i = 1; i < splitKeys.length; i++) {
+      if (MergingIterator.compareKeys(splitKeys[i - 1], splitKeys[i]) >= 0) {
+        throw new IllegalArgumentException("Split keys must be ascending and distinct");
+      }
+    }
+
+    this.splitKeys = new MemorySegment[splitKeys.length];
+    for (int i = 0; i < splitKeys.length; i++) {
+      this.splitKeys[i] = copy(splitKeys[i]);
+    }
+    this.shards = new MemTable[splitKeys.length + 1];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = factory.get();
+    }
+    this.publishedSN = new LongAccumulator(Math::max, -1);
+  }
+
+  /**
+   * Picks shardCount - 1 split keys at the quantiles of the sample, so that every shard gets about
+   * the same share of keys distributed like the sample. Fewer keys are returned if the sample has
+   * too few distinct keys.
+   */
+  public static MemorySegment[] sampleSplitKeys(List<MemorySegment> sample, int shardCount) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+    }
+    List<MemorySegment> sorted = new ArrayList<>(sample);
+    sorted.sort(MergingIterator::compareKeys);
+
+    List<MemorySegment> splits = new ArrayList<>(shardCount - 1);
+    for (int i = 1; i < shardCount && !sorted.isEmpty(); i++) {
+      MemorySegment candidate = sorted.get((int) ((long) i * sorted.size() / shardCount));
+      if (splits.isEmpty()
+          || MergingIterator.compareKeys(splits.get(splits.size() - 1), candidate) < 0) {
+        splits.add(candidate);
+      }
+    }
+    return splits.toArray(new MemorySegment[0]);
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
+    shards[shardOf(key)].put(key, SN, type, value);
+    publishedSN.accumulate(SN);
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value, long expiresAt) {
+    shards[shardOf(key)].put(key, SN, type, value, expiresAt);
+    publishedSN.accumulate(SN);
+  }
+
+  /**
+   * The tombstone goes to every shard whose range overlaps [start, end). The shard that starts at
+   * end itself does not.
+   */
+  public void deleteRange(MemorySegment start, MemorySegment end, long SN) {
+    int last = shardOf(end);
+    if (last > 0 && MergingIterator.compareKeys(splitKeys[last - 1], end) == 0) {
+      last--;
+    }
+    for (int i = shardOf(start); i <= last; i++) {
+      shards[i].deleteRange(start, end, SN);
+    }
+    publishedSN.accumulate(SN);
+  }
+
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    return shards[shardOf(key)].get(key, SN, view);
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    return shards[shardOf(key)].lookup(key, SN, view);
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN) {
+    return shards[shardOf(key)].lookup(key, SN);
+  }
+
+  /**
+   * Full ordered iterator that reads the shards one after the other.
+   */
+  public EntryIterator newIterator(long SN, boolean includeTombstones) {
+    EntryIterator[] iterators = new EntryIterator[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      iterators[i] = shards[i].newIterator(SN, includeTombstones);
+    }
+    return new ConcatenatingIterator(iterators, this::shardOf);
+  }
+
+  public EntryIterator newPrefixIterator(MemorySegment prefix, long SN,
+      boolean includeTombstones) {
+    return new PrefixIterator(newIterator(SN, includeTombstones), prefix);
+  }
+
+  /**
+   * Highest SN of a completed write routed through this table, -1 before the first one. It is kept
+   * for the whole table rather than taken from the shards, so a shard that gets no writes does not
+   * hold it back. Writes made directly on a shard are not counted.
+   */
+  public long getPublishedSN() {
+    return publishedSN.get();
+  }
+
+  /**
+   * SN to read at for a consistent view. The factory must give either every shard the same
+   * SequenceAllocator, whose published SN this then is, or none, in which case this is
+   * getPublishedSN().
+   */
+  public long getSnapshotSN() {
+    SequenceAllocator allocator = shards[0].getSequenceAllocator();
+    return allocator != null ? allocator.getPublishedSN() : publishedSN.get();
+  }
+
+  /**
+   * Bytes allocated in the arenas of all shards.
+   */
+  public long getMemoryUsage() {
+    long total = 0;
+    for (MemTable shard : shards) {
+      total += shard.getMemoryUsage();
+    }
+    return total;
+  }
+
+  /**
+   * Fill ratio of the fullest shard, which is the first to run out of space.
+   */
+  public double getFillRatio() {
+    double fill = 0;
+    for (MemTable shard : shards) {
+      fill = Math.max(fill, shard.getFillRatio());
+    }
+    return fill;
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  public MemTable getShard(int index) {
+    return shards[index];
+  }
+
+  /**
+   * Returns the index of the shard that holds the key: the number of split keys that are less than
+   * or equal to it.
+   */
+  public int shardOf(MemorySegment key) {
+    int low = 0;
+    int high = splitKeys.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (MergingIterator.compareKeys(splitKeys[middle], key) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  public void freeze() {
+    for (MemTable shard : shards) {
+      shard.freeze();
+    }
+  }
+
+  @Override
+  public void close() {
+    for (MemTable shard : shards) {
+      shard.close();
+    }
+  }
+
+  private static MemorySegment copy(MemorySegment key) {
+    return MemorySegment.ofArray(key.toArray(ValueLayout.JAVA_BYTE));
+  }
+}
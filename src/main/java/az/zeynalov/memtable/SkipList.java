@@ -5,6 +5,8 @@ import java.lang.foreign.ValueLayout;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Spliterator;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 
@@ -12,7 +14,7 @@ import java.util.function.Consumer;
 public class SkipList {
 
   private final static float PROBABILITY = 0.25F;
-  private final static int MAX_LEVEL = 12;
+  public final static int MAX_LEVEL = 12;
 
   private final static int PREFIX_LENGTH = 8;
   private final static int SN_LENGTH = 8;
@@ -28,8 +30,19 @@ public class SkipList {
   public final static int COLD_ARENA_POINTER_OFFSET = PREFIX_LENGTH + LEVEL_COUNT_LENGTH;
   public final static int KEY_SIZE_OFFSET = SN_LENGTH + TYPE_LENGTH;
   public final static int VALUE_SIZE_OFFSET = SN_LENGTH + TYPE_LENGTH + KEY_LENGTH;
+  // Expiry timestamp of records written without a TTL
+  public final static long NO_EXPIRY = Long.MAX_VALUE;
+  final static int TYPE_OFFSET = SN_LENGTH;
+  // Flags live in the unused bytes of the 4-byte type field
+  final static int FLAGS_OFFSET = SN_LENGTH + 1;
+  final static byte EXPIRY_FLAG = 1;
+  // Set on records whose 8-byte value starts on the word boundary after the key
+  final static byte ALIGNED_VALUE_FLAG = 2;
+  private final static int RECORD_HEADER_SIZE = VALUE_SIZE_OFFSET + VALUE_LENGTH;
 
   private static final VarHandle LEVEL_HANDLE;
+  private static final ValueLayout.OfLong UNALIGNED_LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
   private static final VarHandle UPDATE_CACHE_HANDLE = ValueLayout.JAVA_INT.withOrder(
       ByteOrder.BIG_ENDIAN).varHandle();
 
@@ -40,6 +53,7 @@ public class SkipList {
 
   private int head;
   private int currenLevel;
+  private boolean alignValues;
 
   static {
     try {
@@ -59,6 +73,30 @@ public class SkipList {
     this.head = createNewNodePointers(MAX_LEVEL + 1);
   }
 
+  /**
+   * From now on 8-byte values are padded to start on a word boundary, so that they can be updated
+   * in place with an aligned 8-byte access. Must be called before the list is shared.
+   */
+  void alignValues() {
+    this.alignValues = true;
+  }
+
+  /**
+   * Bytes between the key and an 8-byte value that put the value on a word boundary of an 8-aligned
+   * record.
+   */
+  static int getValuePadding(int keySize) {
+    return -(RECORD_HEADER_SIZE + keySize) & 7;
+  }
+
+  /**
+   * Offset of the value from the start of the record, given the flags and the key size.
+   */
+  static int getValueOffset(byte flags, int keySize) {
+    int padding = (flags & ALIGNED_VALUE_FLAG) != 0 ? getValuePadding(keySize) : 0;
+    return RECORD_HEADER_SIZE + keySize + padding;
+  }
+
   // Returns the offset according to MVCC
   // (user:42, 130, tombstone)
   // (user:42, 122, "Al")
@@ -71,30 +109,114 @@ public class SkipList {
   public int get(MemorySegment key, long SN) {
     int currentPosition = head;
     long targetPrefix = getPrefix(key);
+    int candidate = -1;
 
     for (int i = (int) LEVEL_HANDLE.get(this); i >= 0; i--) {
       while (true) {
         int next = readNext(i, currentPosition);
         if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
+          candidate = next;
           break;
         }
         currentPosition = next;
       }
     }
 
-    int candidate = readNext(0, currentPosition);
+    // The candidate is the node the descent stopped at. Reading the next pointer again could
+    // return a newer version linked in the meantime and miss the visible one.
     if (isNull(candidate)) {
       return -1;
     }
 
-    if (compare(candidate, targetPrefix, SN, key) <= 0
-        && compareKeyOnly(candidate, targetPrefix, key) == 0) {
+    if (compareKeyOnly(candidate, targetPrefix, key) == 0) {
       return candidate;
     }
 
     return -1;
   }
 
+  /**
+   * Same descent as get, but it stops on the first node that does not precede the target (key, SN)
+   * in list order, whether or not it has the same key, and records in path the last node visited
+   * before it at every level. The path can then be handed to seekFrom for forward seeks. It
+   * returns -1 if every node precedes the target.
+   */
+  public int seek(MemorySegment key, long SN, int[] path) {
+    int currentPosition = head;
+    long targetPrefix = getPrefix(key);
+    int level = (int) LEVEL_HANDLE.get(this);
+
+    for (int i = MAX_LEVEL; i > level; i--) {
+      path[i] = head;
+    }
+
+    for (int i = level; i >= 0; i--) {
+      while (true) {
+        int next = readNext(i, currentPosition);
+        if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
+          break;
+        }
+        currentPosition = next;
+      }
+
+      path[i] = currentPosition;
+    }
+
+    return readNext(0, currentPosition);
+  }
+
+  /**
+   * Forward (finger) search from the node at offset from, which must not be behind any node in
+   * path. The levels below the height of from start at from itself, higher levels start at the
+   * nodes recorded in path. The search climbs only while the next node on the level above still
+   * precedes the target and then descends as in seek, so a target d nodes ahead costs O(log d)
+   * instead of a full descent from head. If from is already at or after the target it is returned
+   * unchanged.
+   */
+  public int seekFrom(int from, int[] path, MemorySegment key, long SN) {
+    long targetPrefix = getPrefix(key);
+    if (from != head && compare(from, targetPrefix, SN, key) <= 0) {
+      return from;
+    }
+
+    int height = getLevelCount(from);
+    for (int i = 0; i < height; i++) {
+      path[i] = from;
+    }
+
+    int level = 0;
+    int top = (int) LEVEL_HANDLE.get(this);
+    while (level < top) {
+      int next = readNext(level + 1, path[level + 1]);
+      if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
+        break;
+      }
+      level++;
+    }
+
+    // Once a level has moved forward, its position is ahead of the recorded
+    // path of the levels below, so the descent continues from it.
+    int currentPosition = path[level];
+    boolean advanced = false;
+    for (int i = level; i >= 0; i--) {
+      if (!advanced) {
+        currentPosition = path[i];
+      }
+      while (true) {
+        int next = readNext(i, currentPosition);
+        if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
+          break;
+        }
+        currentPosition = next;
+        advanced = true;
+      }
+
+      path[i] = currentPosition;
+    }
+
+    return readNext(0, currentPosition);
+  }
+
   /**
    * Layout of the node in hot arena: [prefix (8 bytes)][level count (4 bytes)][offset to cold data
    * (4 bytes)][next pointers...] Layout of the node in cold arena: [SN (8 bytes)][type (4
@@ -104,13 +226,101 @@ public class SkipList {
    * the next pointers of the new node and the existing nodes to maintain the skip list structure.
    * The method uses the updateCache to store the offsets of the nodes that need to be updated at
    * each level, which helps to efficiently update the pointers after inserting the new node.
+   * It returns the offset of the new node in the hot arena.
+   */
+  public int insert(MemorySegment key, long SN, byte type, MemorySegment value) {
+    return insert(key, SN, type, value, NO_EXPIRY);
+  }
+
+  /**
+   * Same as insert, for a record that expires at the given timestamp. The timestamp is stored
+   * after the value and flagged in the type field, so records without a TTL take no extra space.
+   */
+  public int insert(MemorySegment key, long SN, byte type, MemorySegment value, long expiresAt) {
+    int newLevel = randomLevel();
+    int newNode = createNodeWithRecord(newLevel + 1, key, SN, type, value, expiresAt);
+    link(newNode, key, SN, newLevel, updateCache.get(), -1);
+    return newNode;
+  }
+
+  /**
+   * Inserts all records of the batch, the i-th with the SN firstSN + i, and returns their nodes.
+   * The serialized records are copied into one cold arena reservation and the nodes are carved out
+   * of one hot arena reservation, so the whole batch costs two allocations. The nodes are linked in
+   * list order, each search starting from the path of the previous one, so a batch of keys that are
+   * close together is linked with short forward walks instead of full descents from the head.
+   */
+  public int[] insertBatch(WriteBatch batch, long firstSN) {
+    int count = batch.getCount();
+    Integer[] order = new Integer[count];
+    MemorySegment[] keys = new MemorySegment[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+      keys[i] = batch.getKey(i);
+    }
+    // Descending keys, and newest (highest index) first within a key
+    Arrays.sort(order, (a, b) -> {
+      int comparison = MergingIterator.compareKeys(keys[b], keys[a]);
+      return comparison != 0 ? comparison : Integer.compare(b, a);
+    });
+
+    int[] levels = new int[count];
+    int hotSize = 0;
+    for (int i = 0; i < count; i++) {
+      levels[i] = randomLevel();
+      hotSize += nodeSize(levels[i] + 1);
+    }
+
+    MemorySegment records = batch.getRecords();
+    int coldOffset = coldArena.allocate((int) records.byteSize());
+    MemorySegment.copy(records, 0, coldArena.getMemory(), coldOffset, records.byteSize());
+    int hotOffset = hotArena.allocate(hotSize);
+
+    int[] nodes = new int[count];
+    for (int i = 0; i < count; i++) {
+      int record = coldOffset + batch.getRecordOffset(i);
+      coldArena.writeLong(record, firstSN + i);
+      writeNode(hotOffset, levels[i] + 1, getPrefix(keys[i]), record);
+      nodes[i] = hotOffset;
+      hotOffset += nodeSize(levels[i] + 1);
+    }
+
+    int[] path = new int[MAX_LEVEL + 1];
+    int known = -1;
+    for (int index : order) {
+      known = link(nodes[index], keys[index], firstSN + index, levels[index], path, known);
+    }
+    return nodes;
+  }
+
+  /**
+   * Links a node that is not reachable yet into levels 0 to newLevel. If update already holds a
+   * path up to level known whose nodes precede the new one, the search is a finger search as in
+   * seekFrom: it climbs the path only while the next node on the level above still precedes the
+   * target and descends from there, instead of starting at the head. Afterwards update holds, on
+   * every level, the new node or a node before it, and the returned level tells up to where, so a
+   * caller inserting in list order can pass both on to the next call.
    */
-  public void insert(MemorySegment key, long SN, byte type, MemorySegment value) {
-    int[] update = updateCache.get();
+  private int link(int newNode, MemorySegment key, long SN, int newLevel, int[] update,
+      int known) {
     int currentPosition = head;
     long targetPrefix = getPrefix(key);
+    int top = (int) LEVEL_HANDLE.get(this);
 
-    for (int i = (int) LEVEL_HANDLE.get(this); i >= 0; i--) {
+    int start = top;
+    if (known >= top) {
+      start = 0;
+      while (start < top) {
+        int next = readNext(start + 1, update[start + 1]);
+        if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
+          break;
+        }
+        start++;
+      }
+      currentPosition = update[start];
+    }
+
+    for (int i = start; i >= 0; i--) {
       while (true) {
         int next = readNext(i, currentPosition);
         if (isNull(next) || compare(next, targetPrefix, SN, key) <= 0) {
@@ -122,10 +332,10 @@ public class SkipList {
       update[i] = currentPosition;
     }
 
-    int newLevel = randomLevel();
-    int oldLevel = (int) LEVEL_HANDLE.get(this);
-    if (newLevel > oldLevel) {
-      for (int i = oldLevel + 1; i <= newLevel; i++) {
+    // Levels above the ones searched start at the head, even if another thread has raised the
+    // level since; the linking loop below walks forward from there.
+    if (newLevel > top) {
+      for (int i = top + 1; i <= newLevel; i++) {
         update[i] = head;
       }
 
@@ -137,8 +347,6 @@ public class SkipList {
       }
     }
 
-    int newNode = createNodeWithRecord(newLevel + 1, key, SN, type, value);
-
     // Link new node into each level bottom-up using CAS.
     // 1. Set newNode's forward pointer to what we expect predecessor's next to be.
     // 2. CAS predecessor's next from that expected value to newNode.
@@ -168,6 +376,56 @@ public class SkipList {
           break;
         }
       }
+      update[i] = newNode;
+    }
+    return Math.max(top, newLevel);
+  }
+
+  Appender newAppender() {
+    return new Appender();
+  }
+
+  /**
+   * Builds the list from nodes of other lists that arrive in list order, as compaction produces
+   * them. The cold record is copied verbatim and the node is linked after the last node of every
+   * level it spans, so no search is needed. Only for a list that was empty when the appender was
+   * created and that nobody else writes to meanwhile; readers may already traverse it.
+   */
+  final class Appender {
+
+    private final int[] tails;
+
+    private Appender() {
+      this.tails = new int[MAX_LEVEL + 1];
+      Arrays.fill(tails, head);
+    }
+
+    int append(SkipList source, int sourceNode) {
+      int record = source.getRecord(sourceNode);
+      int keySize = source.coldArena.readInt(record + KEY_SIZE_OFFSET);
+      int valueSize = source.coldArena.readInt(record + VALUE_SIZE_OFFSET);
+      byte flags = source.coldArena.readByte(record + FLAGS_OFFSET);
+      int recordSize = getValueOffset(flags, keySize) + valueSize
+          + ((flags & EXPIRY_FLAG) != 0 ? SN_LENGTH : 0);
+
+      int copy = coldArena.allocate(recordSize);
+      MemorySegment.copy(source.coldArena.getMemory(), record, coldArena.getMemory(), copy,
+          recordSize);
+      int level = randomLevel();
+      int node = hotArena.allocate(nodeSize(level + 1));
+      writeNode(node, level + 1, source.getNodePrefix(sourceNode), copy);
+
+      for (int i = 0; i <= level; i++) {
+        writeNext(tails[i], i, node);
+        tails[i] = node;
+      }
+      int witness;
+      while ((witness = (int) LEVEL_HANDLE.get(SkipList.this)) < level) {
+        if ((boolean) LEVEL_HANDLE.compareAndSet(SkipList.this, witness, level)) {
+          break;
+        }
+      }
+      return node;
     }
   }
 
@@ -182,6 +440,14 @@ public class SkipList {
     }
   }
 
+  /**
+   * Returns a spliterator over the offsets of the nodes whose SN is less than or equal to the given
+   * SN, in list order. It splits on the nodes of the upper levels, so every part covers a disjoint
+   * key range and the parts can be scanned in parallel, e.g. with StreamSupport.intStream(..., true).
+   */
+  public Spliterator.OfInt spliterator(long SN) {
+    return new SkipListSpliterator(this, SN);
+  }
 
   /**
    * This method compares the key and SN of the node at the given offset with the target key and SN.
@@ -198,9 +464,7 @@ public class SkipList {
     int keyComparison = compareKeyOnly(nodeOffset, targetPrefix, targetKey);
 
     if (keyComparison == 0) {
-      int tempDataOffset = nodeOffset + LEVEL_COUNT_LENGTH + PREFIX_LENGTH;
-      int offset = hotArena.readInt(tempDataOffset);
-      long SN = coldArena.readLong(offset);
+      long SN = coldArena.readLong(getRecord(nodeOffset));
       return Long.compare(SN, targetSN);
     }
 
@@ -208,7 +472,7 @@ public class SkipList {
   }
 
   public int compareKeyOnly(int nodeOffset, long targetPrefix, MemorySegment targetKey) {
-    long sourcePrefix = hotArena.readLong(nodeOffset);
+    long sourcePrefix = getNodePrefix(nodeOffset);
 
     int comparison = Long.compareUnsigned(sourcePrefix, targetPrefix);
     if (comparison != 0) {
@@ -219,11 +483,20 @@ public class SkipList {
   }
 
   private int compareRawKeys(int nodeOffset, MemorySegment targetKey) {
-    int tempDataOffset = nodeOffset + LEVEL_COUNT_LENGTH + PREFIX_LENGTH;
-    int offset = hotArena.readInt(tempDataOffset);
+    int offset = getRecord(nodeOffset);
     int keyLength = coldArena.readInt(offset + KEY_LENGTH_OFFSET);
     int keyOffset = offset + KEY_LENGTH_OFFSET + KEY_LENGTH + VALUE_LENGTH;
 
+    return compareKeyBytes(coldArena, keyOffset, keyLength, targetKey);
+  }
+
+  /**
+   * Compares the key stored in the arena at keyOffset with the target key, unsigned and
+   * lexicographically. Short keys are compared byte by byte, longer ones with a vectorized
+   * mismatch.
+   */
+  static int compareKeyBytes(Arena coldArena, int keyOffset, int keyLength,
+      MemorySegment targetKey) {
     if (keyLength < 32) {
       long targetLenLong = targetKey.byteSize();
       int targetLen = targetLenLong > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) targetLenLong;
@@ -270,6 +543,10 @@ public class SkipList {
    */
 
   public long getPrefix(MemorySegment key) {
+    return prefixOf(key);
+  }
+
+  static long prefixOf(MemorySegment key) {
     long size = key.byteSize();
 
     if (size >= 8) {
@@ -295,44 +572,61 @@ public class SkipList {
    */
 
   private int createNodeWithRecord(int numberOfLevels, MemorySegment key, long SN, byte type,
-      MemorySegment value) {
+      MemorySegment value, long expiresAt) {
     long prefix = getPrefix(key);
     int keySize = (int) key.byteSize();
     int valueSize = (int) value.byteSize();
+    boolean expires = expiresAt != NO_EXPIRY;
+    byte flags = (byte) ((expires ? EXPIRY_FLAG : 0)
+        | (alignValues && valueSize == Long.BYTES ? ALIGNED_VALUE_FLAG : 0));
+    int valueOffset = getValueOffset(flags, keySize);
 
-    final int coldDataSize =
-        SN_LENGTH + TYPE_LENGTH + KEY_LENGTH + VALUE_LENGTH + keySize + valueSize;
-    final int hotDataSize =
-        PREFIX_LENGTH + LEVEL_COUNT_LENGTH + POINTER_SIZE + numberOfLevels * POINTER_SIZE;
-
+    final int coldDataSize = valueOffset + valueSize + (expires ? SN_LENGTH : 0);
     int offset = coldArena.allocate(coldDataSize);
     int temp = offset;
     // Write cold data first
     coldArena.writeLong(offset, SN);
     offset += SN_LENGTH;
     coldArena.writeByte(offset, type);
+    if (flags != 0) {
+      coldArena.writeByte(offset + 1, flags);
+    }
     offset += TYPE_LENGTH;
     coldArena.writeInt(offset, keySize);
     offset += KEY_LENGTH;
     coldArena.writeInt(offset, valueSize);
     offset += VALUE_LENGTH;
     coldArena.writeBytes(offset, key);
-    offset += keySize;
+    offset = temp + valueOffset;
     coldArena.writeBytes(offset, value);
+    if (expires) {
+      coldArena.getMemory().set(UNALIGNED_LONG, offset + valueSize, expiresAt);
+    }
+
+    int newOffset = hotArena.allocate(nodeSize(numberOfLevels));
+    writeNode(newOffset, numberOfLevels, prefix, temp);
+    return newOffset;
+  }
 
-    int newOffset = hotArena.allocate(hotDataSize);
-    int tempOffset = newOffset;
-    hotArena.writeLong(newOffset, prefix);
-    newOffset += PREFIX_LENGTH;
-    hotArena.writeInt(newOffset, numberOfLevels);
-    newOffset += LEVEL_COUNT_LENGTH;
-    hotArena.writeInt(newOffset, temp);
-    newOffset += POINTER_SIZE;
+  private void writeNode(int offset, int numberOfLevels, long prefix, int recordOffset) {
+    hotArena.writeLong(offset, prefix);
+    offset += PREFIX_LENGTH;
+    hotArena.writeInt(offset, numberOfLevels);
+    offset += LEVEL_COUNT_LENGTH;
+    hotArena.writeInt(offset, recordOffset);
+    offset += POINTER_SIZE;
 
     for (int i = 0; i < numberOfLevels; i++) {
-      hotArena.writeInt(newOffset + (POINTER_SIZE * i), -1);
+      hotArena.writeInt(offset + (POINTER_SIZE * i), -1);
     }
-    return tempOffset;
+  }
+
+  /**
+   * Size of a node rounded up to 8 bytes, so that nodes carved out of one reservation keep their
+   * prefix aligned.
+   */
+  private static int nodeSize(int numberOfLevels) {
+    return (HOT_PATH_METADATA + numberOfLevels * POINTER_SIZE + 7) & ~7;
   }
 
   /**
@@ -367,12 +661,76 @@ public class SkipList {
     return head;
   }
 
+  /**
+   * Points the view at the cold record of the node at the given offset without copying anything.
+   * Layout of the record: [SN (8 bytes)][type (4 bytes)][key size (4 bytes)][value size (4
+   * bytes)][key bytes][padding][value bytes], with padding only before aligned 8-byte values
+   */
+  public void readEntry(int nodeOffset, EntryView view) {
+    int offset = getRecord(nodeOffset);
+    int keySize = coldArena.readInt(offset + KEY_SIZE_OFFSET);
+    int valueSize = coldArena.readInt(offset + VALUE_SIZE_OFFSET);
+    int keyOffset = offset + RECORD_HEADER_SIZE;
+    int valueOffset = offset + getValueOffset(coldArena.readByte(offset + FLAGS_OFFSET), keySize);
+    view.set(coldArena, coldArena.readLong(offset), coldArena.readByte(offset + SN_LENGTH),
+        keyOffset, keySize, valueOffset, valueSize);
+  }
+
+  /**
+   * Returns the expiry timestamp of the record of the node, or NO_EXPIRY.
+   */
+  public long getExpiry(int nodeOffset) {
+    int offset = getRecord(nodeOffset);
+    byte flags = coldArena.readByte(offset + FLAGS_OFFSET);
+    if ((flags & EXPIRY_FLAG) == 0) {
+      return NO_EXPIRY;
+    }
+    int keySize = coldArena.readInt(offset + KEY_SIZE_OFFSET);
+    int valueSize = coldArena.readInt(offset + VALUE_SIZE_OFFSET);
+    return coldArena.getMemory().get(UNALIGNED_LONG,
+        offset + getValueOffset(flags, keySize) + valueSize);
+  }
+
+  public byte getType(int nodeOffset) {
+    return coldArena.readByte(getRecord(nodeOffset) + SN_LENGTH);
+  }
+
+  int getLevel() {
+    return (int) LEVEL_HANDLE.get(this);
+  }
+
+  int getLevelCount(int nodeOffset) {
+    return hotArena.readInt(nodeOffset + PREFIX_LENGTH);
+  }
+
+  long getSN(int nodeOffset) {
+    return coldArena.readLong(getRecord(nodeOffset));
+  }
+
+  /**
+   * Offset of the cold record of the node.
+   */
+  int getRecord(int nodeOffset) {
+    return hotArena.readInt(nodeOffset + COLD_ARENA_POINTER_OFFSET);
+  }
+
+  /**
+   * First 8 bytes of the key of the node, as getPrefix computes them.
+   */
+  long getNodePrefix(int nodeOffset) {
+    return hotArena.readLong(nodeOffset);
+  }
+
+  Arena getColdArena() {
+    return coldArena;
+  }
+
   /**
    * Instead of just jumping to the offset of the next node, this method reads the offset of the
    * next node at a specific level and returns it. Uses acquire semantics to see writes from other
    * threads.
    */
-  private int readNext(int index, int offset) {
+  int readNext(int index, int offset) {
     int nextNodeOffset = offset + HOT_PATH_METADATA + (POINTER_SIZE * index);
     return (int) UPDATE_CACHE_HANDLE.getAcquire(hotArena.getMemory(), (long) nextNodeOffset);
   }
@@ -0,0 +1,144 @@
+package az.zeynalov.memtable;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Range-partitioned scan over the level-0 list of a SkipList. A part covers the nodes from origin
+ * (inclusive) up to fence (exclusive, -1 for the end of the list). trySplit walks one of the upper
+ * levels between anchor and fence and cuts the range at its middle node, so both halves are
+ * disjoint key ranges that need no coordination. It starts at the top level and moves one level
+ * down when a level has no node left to cut on; level 0 is never walked for splitting because
+ * that would already cost a full scan.
+ * <p>
+ * The part that starts at the head has no origin until it is first traversed or split: it is read
+ * from the level-0 list after the cut is chosen, so a node inserted in front of the first node
+ * after the spliterator was created belongs to that part and is never picked as a cut that lies
+ * before the origin.
+ * <p>
+ * Only nodes whose SN is less than or equal to the snapshot SN are reported, so nodes inserted by
+ * concurrent writers with higher SNs are skipped in every part.
+ */
+class SkipListSpliterator implements Spliterator.OfInt {
+
+  private final static int CHARACTERISTICS =
+      Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.CONCURRENT;
+  // Every level holds about 1/4 of the nodes of the level below (PROBABILITY = 0.25)
+  private final static int LEVEL_FANOUT_SHIFT = 2;
+  // Origin of the part that starts at the head, read from the list when it is needed
+  private final static int UNSET = -2;
+
+  private final SkipList skipList;
+  private final long SN;
+  private final int fence;
+  // A node with a tower of at least level + 1 from which the upper levels are walked
+  private int anchor;
+  private int origin;
+  private int level;
+  private long estimate;
+  private boolean started;
+
+  SkipListSpliterator(SkipList skipList, long SN) {
+    this(skipList, SN, skipList.getHead(), UNSET, -1, skipList.getLevel(), Long.MAX_VALUE);
+  }
+
+  private SkipListSpliterator(SkipList skipList, long SN, int anchor, int origin, int fence,
+      int level, long estimate) {
+    this.skipList = skipList;
+    this.SN = SN;
+    this.anchor = anchor;
+    this.origin = origin;
+    this.fence = fence;
+    this.level = level;
+    this.estimate = estimate;
+  }
+
+  @Override
+  public boolean tryAdvance(IntConsumer action) {
+    start();
+    while (origin != -1 && origin != fence) {
+      int node = origin;
+      origin = skipList.readNextValid(node);
+      if (skipList.getSN(node) <= SN) {
+        action.accept(node);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void forEachRemaining(IntConsumer action) {
+    start();
+    int node = origin;
+    origin = fence;
+    while (node != -1 && node != fence) {
+      if (skipList.getSN(node) <= SN) {
+        action.accept(node);
+      }
+      node = skipList.readNextValid(node);
+    }
+  }
+
+  @Override
+  public Spliterator.OfInt trySplit() {
+    int first = origin != UNSET ? origin : skipList.readNextValid(anchor);
+    if (started || first == -1 || first == fence) {
+      return null;
+    }
+
+    for (level = Math.min(level, skipList.getLevelCount(anchor) - 1); level > 0; level--) {
+      int count = 0;
+      int firstOnLevel = -1;
+      for (int node = skipList.readNext(level, anchor); node != -1 && node != fence;
+          node = skipList.readNext(level, node)) {
+        if (count++ == 0) {
+          firstOnLevel = node;
+        }
+      }
+      if (count == 0) {
+        continue;
+      }
+
+      int split = firstOnLevel;
+      for (int i = 0; i < count / 2; i++) {
+        split = skipList.readNext(level, split);
+      }
+      // Read after the cut: the cut is linked on level 0 before the upper levels, so it is never
+      // in front of this origin
+      int start = origin != UNSET ? origin : skipList.readNextValid(anchor);
+      if (start == split) {
+        continue;
+      }
+
+      long nodesPerStep = 1L << (LEVEL_FANOUT_SHIFT * level);
+      SkipListSpliterator prefix = new SkipListSpliterator(skipList, SN, anchor, origin, split,
+          level, Math.max(1, count / 2) * nodesPerStep);
+      this.anchor = split;
+      this.origin = split;
+      this.estimate = (count - count / 2) * nodesPerStep;
+      return prefix;
+    }
+
+    return null;
+  }
+
+  private void start() {
+    if (!started) {
+      started = true;
+      if (origin == UNSET) {
+        origin = skipList.readNextValid(anchor);
+      }
+    }
+  }
+
+  @Override
+  public long estimateSize() {
+    return estimate;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
@@ -0,0 +1,177 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Iterator bound to a read SN that yields at most one entry per user key: the newest version whose
+ * SN is less than or equal to the read SN. Versions written after the snapshot are jumped over, so
+ * concurrent inserts never show up in the middle of a scan as long as writers use higher SNs.
+ * Tombstones are yielded only when includeTombstones is set. The remaining versions of a key are
+ * skipped with a forward seek (MemTableIterator.skipTo) instead of being stepped through, so a key
+ * with hundreds of versions costs O(log n) rather than O(versions). A visible merge operand is
+ * folded with the versions below it when the entry is read.
+ * Keys deleted by a range tombstone are never yielded, with or without includeTombstones; the
+ * range tombstones themselves are available from RangeTombstones. When the covering tombstone is
+ * clean the iterator seeks past the whole fragment at once.
+ * Entries that expire at or before the time the iterator was created at are treated like
+ * tombstones: the key is skipped and never yielded, and expired values are never materialized.
+ */
+public class SnapshotIterator implements EntryIterator {
+
+  private final SkipList skipList;
+  private final MemTableIterator iterator;
+  private final long SN;
+  private final boolean includeTombstones;
+  private final MergeOperator mergeOperator;
+  private final RangeTombstones rangeTombstones;
+  private final long now;
+  private final EntryView view;
+
+  public SnapshotIterator(SkipList skipList, long SN, boolean includeTombstones) {
+    this(skipList, SN, includeTombstones, null, null, Long.MIN_VALUE);
+  }
+
+  /**
+   * The iterator reads at time now: entries whose expiry is at or before it are hidden.
+   * Long.MIN_VALUE means that nothing expires.
+   */
+  public SnapshotIterator(SkipList skipList, long SN, boolean includeTombstones,
+      MergeOperator mergeOperator, RangeTombstones rangeTombstones, long now) {
+    this.skipList = skipList;
+    this.iterator = new MemTableIterator(skipList);
+    this.SN = SN;
+    this.includeTombstones = includeTombstones;
+    this.mergeOperator = mergeOperator;
+    this.rangeTombstones = rangeTombstones;
+    this.now = now;
+    this.view = new EntryView();
+  }
+
+  @Override
+  public void seekToFirst() {
+    iterator.seekToFirst();
+    settle();
+  }
+
+  /**
+   * Positions the iterator on the first visible key that is not before the given key in iteration
+   * order.
+   */
+  @Override
+  public void seek(MemorySegment key) {
+    iterator.seekToFirst();
+    iterator.skipTo(key, SN);
+    settle();
+  }
+
+  @Override
+  public void next() {
+    skipKey(iterator.getCurrent());
+    settle();
+  }
+
+  @Override
+  public boolean isValid() {
+    return iterator.isValid();
+  }
+
+  public int getCurrent() {
+    return iterator.getCurrent();
+  }
+
+  public long getSN() {
+    return SN;
+  }
+
+  @Override
+  public void read(EntryView target) {
+    int node = iterator.getCurrent();
+    skipList.readEntry(node, target);
+    if (target.getType() == RecordType.MERGE) {
+      long deletedAt = rangeTombstones == null ? RangeTombstones.NONE
+          : rangeTombstones.getCoveringSN(target.getKey(), SN);
+      MergeResolver.resolve(skipList, mergeOperator, node, target, deletedAt, now);
+    }
+  }
+
+  /**
+   * Moves forward until the iterator stands on the visible version of a key, skipping versions
+   * newer than the snapshot and, unless they are requested, keys whose visible version is a
+   * tombstone.
+   */
+  private void settle() {
+    while (iterator.isValid()) {
+      int node = iterator.getCurrent();
+      skipList.readEntry(node, view);
+
+      if (view.getSN() > SN) {
+        iterator.skipTo(view.getKey(), SN);
+        continue;
+      }
+
+      if (rangeTombstones != null && !rangeTombstones.isEmpty() && isRangeDeleted(node)) {
+        continue;
+      }
+
+      if (skipList.getExpiry(node) <= now) {
+        skipKey(node);
+        continue;
+      }
+
+      if (!includeTombstones && view.getType() == RecordType.TOMBSTONE) {
+        skipKey(node);
+        continue;
+      }
+
+      return;
+    }
+  }
+
+  /**
+   * Checks the visible version in the view against the range tombstones. If it is deleted, the
+   * iterator is moved past it: past the whole fragment when the fragment is clean, past the key
+   * otherwise.
+   */
+  private boolean isRangeDeleted(int node) {
+    RangeTombstones.Fragment fragment = rangeTombstones.findFragment(view.getKey());
+    if (fragment == null) {
+      return false;
+    }
+    RangeTombstones.Tombstone tombstone = fragment.visible(SN);
+    if (tombstone == null || view.getSN() >= tombstone.getSN()) {
+      return false;
+    }
+
+    if (fragment.isClean(SN)) {
+      // Fragment keys come before every lower key; stop behind the oldest version of the start
+      MemorySegment start = fragment.start;
+      if (iterator.skipTo(start, Long.MIN_VALUE)) {
+        iterator.next();
+      }
+    } else {
+      skipKey(node);
+    }
+    return true;
+  }
+
+  /**
+   * Leaves all versions of the key of the given node behind. The next node is checked first
+   * because most keys have a single version; only when it is another version of the same key the
+   * iterator seeks past the oldest possible version.
+   */
+  private void skipKey(int node) {
+    skipList.readEntry(node, view);
+    MemorySegment key = view.getKey();
+    long prefix = skipList.getPrefix(key);
+
+    iterator.next();
+    if (!iterator.isValid() || skipList.compareKeyOnly(iterator.getCurrent(), prefix, key) != 0) {
+      return;
+    }
+
+    iterator.skipTo(key, Long.MIN_VALUE);
+    if (iterator.isValid() && skipList.compareKeyOnly(iterator.getCurrent(), prefix, key) == 0) {
+      iterator.next();
+    }
+  }
+}
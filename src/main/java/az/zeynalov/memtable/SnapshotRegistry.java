@@ -0,0 +1,47 @@
+package az.zeynalov.memtable;
+
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * SNs of the snapshots readers hold open. A snapshot is registered with the SN it reads at and
+ * released when the reader is done; the same SN may be registered several times. In-memory
+ * compaction keeps, for every key, the version each registered SN sees plus the newest one, and
+ * drops the rest. getOldest fits MemTableOptions.inPlaceUpdates.
+ * <p>
+ * A snapshot should be taken at the latest published SN. One taken at an older SN after a
+ * compaction started may miss versions that compaction dropped.
+ */
+public class SnapshotRegistry {
+
+  private final ConcurrentSkipListMap<Long, Integer> snapshots = new ConcurrentSkipListMap<>();
+
+  /**
+   * Registers a snapshot at SN and returns SN.
+   */
+  public long register(long SN) {
+    snapshots.merge(SN, 1, Integer::sum);
+    return SN;
+  }
+
+  public void release(long SN) {
+    snapshots.computeIfPresent(SN, (key, count) -> count == 1 ? null : count - 1);
+  }
+
+  /**
+   * Lowest registered SN, or Long.MAX_VALUE if there is no snapshot.
+   */
+  public long getOldest() {
+    Map.Entry<Long, Integer> oldest = snapshots.firstEntry();
+    return oldest == null ? Long.MAX_VALUE : oldest.getKey();
+  }
+
+  /**
+   * Distinct registered SNs, highest first.
+   */
+  public long[] getSNs() {
+    NavigableSet<Long> keys = snapshots.descendingKeySet();
+    return keys.stream().mapToLong(Long::longValue).toArray();
+  }
+}
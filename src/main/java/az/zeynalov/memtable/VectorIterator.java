@@ -0,0 +1,79 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Snapshot iterator over a frozen VectorMemTable. Same contract as SnapshotIterator: one entry per
+ * key, the newest version whose SN is less than or equal to the read SN, tombstones only when
+ * requested. Versions newer than the snapshot are jumped over with a binary search on the vector.
+ */
+class VectorIterator implements EntryIterator {
+
+  private final VectorMemTable memTable;
+  private final long SN;
+  private final boolean includeTombstones;
+  private final EntryView view;
+  private int position;
+
+  VectorIterator(VectorMemTable memTable, long SN, boolean includeTombstones) {
+    this.memTable = memTable;
+    this.SN = SN;
+    this.includeTombstones = includeTombstones;
+    this.view = new EntryView();
+    this.position = memTable.getFrozenSize();
+  }
+
+  @Override
+  public void seekToFirst() {
+    position = 0;
+    settle();
+  }
+
+  @Override
+  public void seek(MemorySegment key) {
+    position = memTable.lowerBound(key, SN, 0);
+    settle();
+  }
+
+  @Override
+  public void next() {
+    skipKey();
+    settle();
+  }
+
+  @Override
+  public boolean isValid() {
+    return position < memTable.getFrozenSize();
+  }
+
+  @Override
+  public void read(EntryView target) {
+    memTable.readEntry(memTable.recordAt(position), target);
+  }
+
+  private void settle() {
+    while (isValid()) {
+      memTable.readEntry(memTable.recordAt(position), view);
+
+      if (view.getSN() > SN) {
+        position = memTable.lowerBound(view.getKey(), SN, position);
+        continue;
+      }
+
+      if (!includeTombstones && view.getType() == RecordType.TOMBSTONE) {
+        skipKey();
+        continue;
+      }
+
+      return;
+    }
+  }
+
+  private void skipKey() {
+    int record = memTable.recordAt(position);
+    int size = memTable.getFrozenSize();
+    do {
+      position++;
+    } while (position < size && memTable.isSameKey(memTable.recordAt(position), record));
+  }
+}
@@ -0,0 +1,343 @@
+package az.zeynalov.memtable;
+
+import az.zeynalov.memtable.exception.ErrorMessage;
+import az.zeynalov.memtable.exception.MemTableFrozenException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MemTable layout for bulk ingestion. A write appends its record to the cold arena and its offset
+ * to a vector in the hot arena; nothing is ordered or linked, so a put costs one bump allocation,
+ * one copy and one CAS on the slot counter. The memtable is frozen by freeze() or implicitly by
+ * the first read, at which point the vector is sorted once in parallel into SkipList order (keys
+ * descending, then SN descending) and served through the usual EntryIterator. Writes after the
+ * freeze fail with MemTableFrozenException.
+ * <p>
+ * Cold records use the SkipList layout: [SN (8 bytes)][type (4 bytes)][key size (4 bytes)][value
+ * size (4 bytes)][key bytes][value bytes]
+ */
+public class VectorMemTable {
+
+  private final static int SN_LENGTH = 8;
+  private final static int TYPE_LENGTH = 4;
+  private final static int POINTER_SIZE = 4;
+  private final static int RECORD_HEADER_SIZE =
+      SN_LENGTH + TYPE_LENGTH + SkipList.KEY_LENGTH + SkipList.VALUE_LENGTH;
+  // The smallest record is the header alone, rounded up to the arena alignment
+  private final static int MIN_RECORD_SIZE = (RECORD_HEADER_SIZE + 7) & ~7;
+  private final static long FROZEN = Long.MIN_VALUE;
+  // Ranges up to this many records are sorted by one thread, short runs by insertion
+  private final static int SEQUENTIAL_SORT_THRESHOLD = 1 << 13;
+  private final static int INSERTION_SORT_THRESHOLD = 16;
+
+  private static final VarHandle STATE_HANDLE;
+
+  private final Arena hotArena;
+  private final Arena coldArena;
+  private final int vector;
+  private final AtomicInteger completed;
+
+  // Number of claimed slots, with the FROZEN bit set once the memtable is frozen
+  private long state;
+  private volatile int size = -1;
+
+  static {
+    try {
+      STATE_HANDLE = MethodHandles.lookup().findVarHandle(VectorMemTable.class, "state", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new Error(e);
+    }
+  }
+
+  public VectorMemTable(Arena hotArena, Arena coldArena) {
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    // Every record takes at least MIN_RECORD_SIZE bytes, so the vector can never overflow
+    int maxEntries = (int) (coldArena.getCapacity() / MIN_RECORD_SIZE);
+    this.vector = hotArena.allocate(maxEntries * POINTER_SIZE);
+    this.completed = new AtomicInteger();
+  }
+
+  /**
+   * The record is written before a slot is claimed, so a claimed slot is always filled shortly
+   * after and freeze only has to wait for writers that are already past the claim.
+   */
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
+    if ((long) STATE_HANDLE.getVolatile(this) < 0) {
+      throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+    }
+    int record = writeRecord(key, SN, type, value);
+
+    long current;
+    do {
+      current = (long) STATE_HANDLE.getVolatile(this);
+      if (current < 0) {
+        throw MemTableFrozenException.of(ErrorMessage.MEMTABLE_IS_FROZEN);
+      }
+    } while (!STATE_HANDLE.compareAndSet(this, current, current + 1));
+
+    hotArena.writeInt(slot((int) current), record);
+    completed.incrementAndGet();
+  }
+
+  /**
+   * Stops accepting writes, waits for the writers that already claimed a slot and sorts the
+   * vector. Calling it again is a no-op.
+   */
+  public synchronized void freeze() {
+    if (size != -1) {
+      return;
+    }
+
+    long current;
+    do {
+      current = (long) STATE_HANDLE.getVolatile(this);
+    } while (!STATE_HANDLE.compareAndSet(this, current, current | FROZEN));
+
+    int count = (int) current;
+    while (completed.get() < count) {
+      Thread.onSpinWait();
+    }
+
+    int[] records = new int[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = hotArena.readInt(slot(i));
+    }
+    ForkJoinPool.commonPool().invoke(new SortTask(records, new int[count], 0, count));
+    for (int i = 0; i < count; i++) {
+      hotArena.writeInt(slot(i), records[i]);
+    }
+
+    size = count;
+  }
+
+  public boolean isFrozen() {
+    return size != -1;
+  }
+
+  /**
+   * Number of records, including all versions and tombstones. Before the freeze it counts the
+   * writes that have claimed a slot.
+   */
+  public int getSize() {
+    int frozen = size;
+    return frozen != -1 ? frozen : (int) ((long) STATE_HANDLE.getVolatile(this) & ~FROZEN);
+  }
+
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    return lookup(key, SN, view) != LookupStatus.NOT_FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    int record = find(key, SN);
+    if (record == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    readEntry(record, view);
+    return view.getType() == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN) {
+    int record = find(key, SN);
+    if (record == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    return getType(record) == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+  }
+
+  public EntryIterator newIterator(long SN, boolean includeTombstones) {
+    if (size == -1) {
+      freeze();
+    }
+    return new VectorIterator(this, SN, includeTombstones);
+  }
+
+  public Arena getHotArena() {
+    return hotArena;
+  }
+
+  public Arena getColdArena() {
+    return coldArena;
+  }
+
+  /**
+   * Returns the position of the first record that is not before (key, SN) in the sorted vector,
+   * or size if there is none. Only valid after the freeze.
+   */
+  int lowerBound(MemorySegment key, long SN, int from) {
+    int low = from;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (precedes(recordAt(middle), key, SN)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  int recordAt(int position) {
+    return hotArena.readInt(slot(position));
+  }
+
+  int getFrozenSize() {
+    return size;
+  }
+
+  void readEntry(int record, EntryView view) {
+    int keySize = coldArena.readInt(record + SkipList.KEY_SIZE_OFFSET);
+    int valueSize = coldArena.readInt(record + SkipList.VALUE_SIZE_OFFSET);
+    int keyOffset = record + RECORD_HEADER_SIZE;
+    view.set(coldArena, coldArena.readLong(record), coldArena.readByte(record + SN_LENGTH),
+        keyOffset, keySize, keyOffset + keySize, valueSize);
+  }
+
+  boolean isSameKey(int record, int other) {
+    return compareKeys(record, other) == 0;
+  }
+
+  private byte getType(int record) {
+    return coldArena.readByte(record + SN_LENGTH);
+  }
+
+  private int find(MemorySegment key, long SN) {
+    if (size == -1) {
+      freeze();
+    }
+    int position = lowerBound(key, SN, 0);
+    if (position == size) {
+      return -1;
+    }
+
+    int record = recordAt(position);
+    int keySize = coldArena.readInt(record + SkipList.KEY_SIZE_OFFSET);
+    return SkipList.compareKeyBytes(coldArena, record + RECORD_HEADER_SIZE, keySize, key) == 0
+        ? record : -1;
+  }
+
+  private boolean precedes(int record, MemorySegment key, long SN) {
+    int keySize = coldArena.readInt(record + SkipList.KEY_SIZE_OFFSET);
+    int comparison = SkipList.compareKeyBytes(coldArena, record + RECORD_HEADER_SIZE, keySize, key);
+    if (comparison != 0) {
+      return comparison > 0;
+    }
+    return coldArena.readLong(record) > SN;
+  }
+
+  /**
+   * Stable merge sort of the record offsets in [from, to) by compareRecords, on primitive arrays
+   * so that no offset is boxed. The buffer is scratch space of the same length as the records.
+   */
+  private void mergeSort(int[] records, int[] buffer, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int record = records[i];
+        int j = i - 1;
+        while (j >= from && compareRecords(records[j], record) > 0) {
+          records[j + 1] = records[j];
+          j--;
+        }
+        records[j + 1] = record;
+      }
+      return;
+    }
+
+    int middle = (from + to) >>> 1;
+    mergeSort(records, buffer, from, middle);
+    mergeSort(records, buffer, middle, to);
+    merge(records, buffer, from, middle, to);
+  }
+
+  private void merge(int[] records, int[] buffer, int from, int middle, int to) {
+    if (compareRecords(records[middle - 1], records[middle]) <= 0) {
+      return;
+    }
+
+    System.arraycopy(records, from, buffer, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right == to || (left < middle && compareRecords(buffer[left], buffer[right]) <= 0)) {
+        records[i] = buffer[left++];
+      } else {
+        records[i] = buffer[right++];
+      }
+    }
+  }
+
+  /**
+   * Sorts the halves of a range in parallel and merges them, like Arrays.parallelSort.
+   */
+  @SuppressWarnings("serial")
+  private final class SortTask extends RecursiveAction {
+    private final int[] records;
+    private final int[] buffer;
+    private final int from;
+    private final int to;
+
+    private SortTask(int[] records, int[] buffer, int from, int to) {
+      this.records = records;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_SORT_THRESHOLD) {
+        mergeSort(records, buffer, from, to);
+        return;
+      }
+
+      int middle = (from + to) >>> 1;
+      invokeAll(new SortTask(records, buffer, from, middle),
+          new SortTask(records, buffer, middle, to));
+      merge(records, buffer, from, middle, to);
+    }
+  }
+
+  /**
+   * Sort order of the vector: keys descending, then SN descending.
+   */
+  private int compareRecords(int first, int second) {
+    int comparison = compareKeys(second, first);
+    if (comparison != 0) {
+      return comparison;
+    }
+    return Long.compare(coldArena.readLong(second), coldArena.readLong(first));
+  }
+
+  private int compareKeys(int first, int second) {
+    int firstSize = coldArena.readInt(first + SkipList.KEY_SIZE_OFFSET);
+    int secondSize = coldArena.readInt(second + SkipList.KEY_SIZE_OFFSET);
+    return SkipList.compareKeyBytes(coldArena, first + RECORD_HEADER_SIZE, firstSize,
+        coldArena.readBytes(second + RECORD_HEADER_SIZE, secondSize));
+  }
+
+  private int writeRecord(MemorySegment key, long SN, byte type, MemorySegment value) {
+    int keySize = (int) key.byteSize();
+    int valueSize = (int) value.byteSize();
+
+    int record = coldArena.allocate(RECORD_HEADER_SIZE + keySize + valueSize);
+    coldArena.writeLong(record, SN);
+    coldArena.writeByte(record + SN_LENGTH, type);
+    coldArena.writeInt(record + SkipList.KEY_SIZE_OFFSET, keySize);
+    coldArena.writeInt(record + SkipList.VALUE_SIZE_OFFSET, valueSize);
+    coldArena.writeBytes(record + RECORD_HEADER_SIZE, key);
+    coldArena.writeBytes(record + RECORD_HEADER_SIZE + keySize, value);
+    return record;
+  }
+
+  private int slot(int index) {
+    return vector + index * POINTER_SIZE;
+  }
+}
@@ -0,0 +1,62 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Snapshot iterator over a VersionChainSkipList. Every node is one key, so moving to the next key
+ * is a single step and the visible version is found by walking that key's chain.
+ */
+class VersionChainIterator implements EntryIterator {
+
+  private final VersionChainSkipList skipList;
+  private final long SN;
+  private final boolean includeTombstones;
+  private int current;
+  private int version;
+
+  VersionChainIterator(VersionChainSkipList skipList, long SN, boolean includeTombstones) {
+    this.skipList = skipList;
+    this.SN = SN;
+    this.includeTombstones = includeTombstones;
+    this.current = -1;
+  }
+
+  @Override
+  public void seekToFirst() {
+    current = skipList.readNextValid(skipList.getHead());
+    settle();
+  }
+
+  @Override
+  public void seek(MemorySegment key) {
+    current = skipList.seek(key);
+    settle();
+  }
+
+  @Override
+  public void next() {
+    current = skipList.readNextValid(current);
+    settle();
+  }
+
+  @Override
+  public boolean isValid() {
+    return current != -1;
+  }
+
+  @Override
+  public void read(EntryView view) {
+    skipList.readEntry(current, version, view);
+  }
+
+  private void settle() {
+    while (current != -1) {
+      version = skipList.findVersion(current, SN);
+      if (version != -1
+          && (includeTombstones || skipList.getType(version) != RecordType.TOMBSTONE)) {
+        return;
+      }
+      current = skipList.readNextValid(current);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * MemTable layout for update-heavy workloads, backed by a VersionChainSkipList: every distinct key
+ * has one skip-list node and its versions hang off it in a newest-first chain. It keeps the MVCC
+ * semantics of MemTable, a read at SN sees the newest version whose SN is less than or equal to
+ * SN.
+ */
+public class VersionChainMemTable {
+
+  private final Arena hotArena;
+  private final Arena coldArena;
+  private final VersionChainSkipList skipList;
+
+  public VersionChainMemTable(Arena hotArena, Arena coldArena, VersionChainSkipList skipList) {
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    this.skipList = skipList;
+  }
+
+  public void put(MemorySegment key, long SN, byte type, MemorySegment value) {
+    skipList.insert(key, SN, type, value);
+  }
+
+  public boolean get(MemorySegment key, long SN, EntryView view) {
+    return lookup(key, SN, view) != LookupStatus.NOT_FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN, EntryView view) {
+    int node = skipList.findNode(key);
+    if (node == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    int version = skipList.findVersion(node, SN);
+    if (version == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    skipList.readEntry(node, version, view);
+    return view.getType() == RecordType.TOMBSTONE ? LookupStatus.DELETED : LookupStatus.FOUND;
+  }
+
+  public LookupStatus lookup(MemorySegment key, long SN) {
+    int node = skipList.findNode(key);
+    int version = node == -1 ? -1 : skipList.findVersion(node, SN);
+    if (version == -1) {
+      return LookupStatus.NOT_FOUND;
+    }
+
+    return skipList.getType(version) == RecordType.TOMBSTONE ? LookupStatus.DELETED
+        : LookupStatus.FOUND;
+  }
+
+  public EntryIterator newIterator(long SN, boolean includeTombstones) {
+    return new VersionChainIterator(skipList, SN, includeTombstones);
+  }
+
+  public Arena getHotArena() {
+    return hotArena;
+  }
+
+  public Arena getColdArena() {
+    return coldArena;
+  }
+}
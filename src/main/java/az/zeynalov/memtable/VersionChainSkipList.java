@@ -0,0 +1,321 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Skip list that indexes every distinct user key once. Instead of one node per version, the node
+ * of a key points to a newest-first chain of versions in the cold arena, so a key updated 10K
+ * times still costs a single tower in the hot arena and lookups through an update-heavy region do
+ * not have to step over old versions.
+ * <p>
+ * Layout of the node in hot arena: [prefix (8 bytes)][level count (4 bytes)][offset to key record
+ * (4 bytes)][next pointers...] Layout of the key record in cold arena: [offset to newest version
+ * (4 bytes)][key size (4 bytes)][key bytes] Layout of a version in cold arena: [SN (8 bytes)][type
+ * (4 bytes)][value size (4 bytes)][offset to next older version (4 bytes)][value bytes]
+ */
+public class VersionChainSkipList {
+
+  private final static float PROBABILITY = 0.25F;
+
+  private final static int PREFIX_LENGTH = 8;
+  private final static int LEVEL_COUNT_LENGTH = 4;
+  private final static int POINTER_SIZE = 4;
+  private final static int HOT_PATH_METADATA = PREFIX_LENGTH + LEVEL_COUNT_LENGTH + POINTER_SIZE;
+  private final static int KEY_RECORD_POINTER_OFFSET = PREFIX_LENGTH + LEVEL_COUNT_LENGTH;
+
+  private final static int VERSION_HEAD_OFFSET = 0;
+  private final static int KEY_SIZE_OFFSET = 4;
+  private final static int KEY_OFFSET = 8;
+
+  private final static int SN_LENGTH = 8;
+  private final static int TYPE_LENGTH = 4;
+  private final static int VERSION_TYPE_OFFSET = SN_LENGTH;
+  private final static int VERSION_VALUE_SIZE_OFFSET = SN_LENGTH + TYPE_LENGTH;
+  private final static int VERSION_NEXT_OFFSET = VERSION_VALUE_SIZE_OFFSET + 4;
+  private final static int VERSION_VALUE_OFFSET = VERSION_NEXT_OFFSET + POINTER_SIZE;
+
+  private static final VarHandle LEVEL_HANDLE;
+  private static final VarHandle INT_HANDLE = ValueLayout.JAVA_INT.withOrder(
+      ByteOrder.BIG_ENDIAN).varHandle();
+
+  private final ThreadLocal<int[]> updateCache = ThreadLocal.withInitial(
+      () -> new int[SkipList.MAX_LEVEL + 1]);
+  private final Arena hotArena;
+  private final Arena coldArena;
+
+  private int head;
+  private int currenLevel;
+
+  static {
+    try {
+      LEVEL_HANDLE = MethodHandles.lookup()
+          .findVarHandle(VersionChainSkipList.class, "currenLevel", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new Error(e);
+    }
+  }
+
+  public VersionChainSkipList(Arena hotArena, Arena coldArena) {
+    this.hotArena = hotArena;
+    this.coldArena = coldArena;
+    this.currenLevel = 0;
+  }
+
+  public void init() {
+    int numberOfLevels = SkipList.MAX_LEVEL + 1;
+    this.head = hotArena.allocate(HOT_PATH_METADATA + numberOfLevels * POINTER_SIZE);
+    hotArena.writeInt(head + PREFIX_LENGTH, numberOfLevels);
+    for (int i = 0; i < numberOfLevels; i++) {
+      hotArena.writeInt(head + HOT_PATH_METADATA + (POINTER_SIZE * i), -1);
+    }
+  }
+
+  /**
+   * Adds a version of the key. If the key already has a node, the version is pushed onto its chain
+   * and nothing is allocated in the hot arena. Otherwise a node is created and linked bottom-up as
+   * in SkipList.insert; if another thread links a node for the same key first, the CAS on level 0
+   * sees it and the version goes onto that node's chain instead.
+   */
+  public void insert(MemorySegment key, long SN, byte type, MemorySegment value) {
+    int[] update = updateCache.get();
+    long targetPrefix = SkipList.prefixOf(key);
+    int currentPosition = head;
+
+    for (int i = (int) LEVEL_HANDLE.get(this); i >= 0; i--) {
+      currentPosition = advance(i, currentPosition, targetPrefix, key);
+      update[i] = currentPosition;
+    }
+
+    int version = createVersion(SN, type, value);
+    int candidate = readNext(0, update[0]);
+    if (candidate != -1 && compareKey(candidate, targetPrefix, key) == 0) {
+      pushVersion(candidate, version);
+      return;
+    }
+
+    int newLevel = randomLevel();
+    int oldLevel = (int) LEVEL_HANDLE.get(this);
+    if (newLevel > oldLevel) {
+      for (int i = oldLevel + 1; i <= newLevel; i++) {
+        update[i] = head;
+      }
+
+      int witness;
+      while ((witness = (int) LEVEL_HANDLE.get(this)) < newLevel) {
+        if ((boolean) LEVEL_HANDLE.compareAndSet(this, witness, newLevel)) {
+          break;
+        }
+      }
+    }
+
+    int newNode = createNode(newLevel + 1, key, targetPrefix, version);
+
+    for (int i = 0; i <= newLevel; i++) {
+      while (true) {
+        int expected = readNext(i, update[i]);
+
+        if (expected != -1) {
+          int comparison = compareKey(expected, targetPrefix, key);
+          if (comparison > 0) {
+            update[i] = advance(i, update[i], targetPrefix, key);
+            continue;
+          }
+          if (comparison == 0 && i == 0) {
+            // Lost the race for this key; the new node was never reachable
+            pushVersion(expected, version);
+            return;
+          }
+        }
+
+        writeNext(newNode, i, expected);
+        if (casNext(update[i], i, expected, newNode)) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the node of the key or -1 if the key has never been written.
+   */
+  public int findNode(MemorySegment key) {
+    long targetPrefix = SkipList.prefixOf(key);
+    int currentPosition = head;
+
+    for (int i = (int) LEVEL_HANDLE.get(this); i >= 0; i--) {
+      currentPosition = advance(i, currentPosition, targetPrefix, key);
+    }
+
+    int candidate = readNext(0, currentPosition);
+    if (candidate != -1 && compareKey(candidate, targetPrefix, key) == 0) {
+      return candidate;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the first node whose key is not before the given key in list order, or -1.
+   */
+  public int seek(MemorySegment key) {
+    long targetPrefix = SkipList.prefixOf(key);
+    int currentPosition = head;
+
+    for (int i = (int) LEVEL_HANDLE.get(this); i >= 0; i--) {
+      currentPosition = advance(i, currentPosition, targetPrefix, key);
+    }
+
+    return readNext(0, currentPosition);
+  }
+
+  /**
+   * Walks the chain of the node and returns the newest version whose SN is less than or equal to
+   * the given SN, or -1 if all versions are newer.
+   */
+  public int findVersion(int nodeOffset, long SN) {
+    int keyRecord = hotArena.readInt(nodeOffset + KEY_RECORD_POINTER_OFFSET);
+    int version = readInt(keyRecord + VERSION_HEAD_OFFSET);
+    while (version != -1 && coldArena.readLong(version) > SN) {
+      version = readInt(version + VERSION_NEXT_OFFSET);
+    }
+    return version;
+  }
+
+  public void readEntry(int nodeOffset, int version, EntryView view) {
+    int keyRecord = hotArena.readInt(nodeOffset + KEY_RECORD_POINTER_OFFSET);
+    view.set(coldArena, coldArena.readLong(version), getType(version),
+        keyRecord + KEY_OFFSET, coldArena.readInt(keyRecord + KEY_SIZE_OFFSET),
+        version + VERSION_VALUE_OFFSET, coldArena.readInt(version + VERSION_VALUE_SIZE_OFFSET));
+  }
+
+  public byte getType(int version) {
+    return coldArena.readByte(version + VERSION_TYPE_OFFSET);
+  }
+
+  /**
+   * Returns the offsets of the key nodes in list order
+   */
+  public void forEach(Consumer<Integer> consumer) {
+    int currentNodePointer = readNext(0, head);
+    while (currentNodePointer != -1) {
+      consumer.accept(currentNodePointer);
+      currentNodePointer = readNext(0, currentNodePointer);
+    }
+  }
+
+  public int readNextValid(int offset) {
+    return readNext(0, offset);
+  }
+
+  public int getHead() {
+    return head;
+  }
+
+  private int advance(int level, int currentPosition, long targetPrefix, MemorySegment key) {
+    while (true) {
+      int next = readNext(level, currentPosition);
+      if (next == -1 || compareKey(next, targetPrefix, key) <= 0) {
+        return currentPosition;
+      }
+      currentPosition = next;
+    }
+  }
+
+  private int compareKey(int nodeOffset, long targetPrefix, MemorySegment targetKey) {
+    int comparison = Long.compareUnsigned(hotArena.readLong(nodeOffset), targetPrefix);
+    if (comparison != 0) {
+      return comparison;
+    }
+
+    int keyRecord = hotArena.readInt(nodeOffset + KEY_RECORD_POINTER_OFFSET);
+    return SkipList.compareKeyBytes(coldArena, keyRecord + KEY_OFFSET,
+        coldArena.readInt(keyRecord + KEY_SIZE_OFFSET), targetKey);
+  }
+
+  /**
+   * Links the version into the chain of the node, keeping the chain ordered by SN from newest to
+   * oldest. Writers usually come with the highest SN, so the CAS is on the chain head; an older SN
+   * arriving late is linked behind the newer versions with the same CAS on their next field.
+   */
+  private void pushVersion(int nodeOffset, int version) {
+    int keyRecord = hotArena.readInt(nodeOffset + KEY_RECORD_POINTER_OFFSET);
+    long SN = coldArena.readLong(version);
+
+    while (true) {
+      int link = keyRecord + VERSION_HEAD_OFFSET;
+      int current = readInt(link);
+      while (current != -1 && coldArena.readLong(current) > SN) {
+        link = current + VERSION_NEXT_OFFSET;
+        current = readInt(link);
+      }
+
+      INT_HANDLE.setRelease(coldArena.getMemory(), (long) (version + VERSION_NEXT_OFFSET), current);
+      if ((boolean) INT_HANDLE.compareAndSet(coldArena.getMemory(), (long) link, current,
+          version)) {
+        return;
+      }
+    }
+  }
+
+  private int createVersion(long SN, byte type, MemorySegment value) {
+    int valueSize = (int) value.byteSize();
+    int offset = coldArena.allocate(VERSION_VALUE_OFFSET + valueSize);
+    coldArena.writeLong(offset, SN);
+    coldArena.writeByte(offset + VERSION_TYPE_OFFSET, type);
+    coldArena.writeInt(offset + VERSION_VALUE_SIZE_OFFSET, valueSize);
+    coldArena.writeInt(offset + VERSION_NEXT_OFFSET, -1);
+    coldArena.writeBytes(offset + VERSION_VALUE_OFFSET, value);
+    return offset;
+  }
+
+  private int createNode(int numberOfLevels, MemorySegment key, long prefix, int version) {
+    int keySize = (int) key.byteSize();
+    int keyRecord = coldArena.allocate(KEY_OFFSET + keySize);
+    coldArena.writeInt(keyRecord + VERSION_HEAD_OFFSET, version);
+    coldArena.writeInt(keyRecord + KEY_SIZE_OFFSET, keySize);
+    coldArena.writeBytes(keyRecord + KEY_OFFSET, key);
+
+    int node = hotArena.allocate(HOT_PATH_METADATA + numberOfLevels * POINTER_SIZE);
+    hotArena.writeLong(node, prefix);
+    hotArena.writeInt(node + PREFIX_LENGTH, numberOfLevels);
+    hotArena.writeInt(node + KEY_RECORD_POINTER_OFFSET, keyRecord);
+    for (int i = 0; i < numberOfLevels; i++) {
+      hotArena.writeInt(node + HOT_PATH_METADATA + (POINTER_SIZE * i), -1);
+    }
+    return node;
+  }
+
+  private int readInt(int coldOffset) {
+    return (int) INT_HANDLE.getAcquire(coldArena.getMemory(), (long) coldOffset);
+  }
+
+  private int readNext(int index, int offset) {
+    int nextNodeOffset = offset + HOT_PATH_METADATA + (POINTER_SIZE * index);
+    return (int) INT_HANDLE.getAcquire(hotArena.getMemory(), (long) nextNodeOffset);
+  }
+
+  private void writeNext(int nodeOffset, int level, int value) {
+    int nextNodeOffset = nodeOffset + HOT_PATH_METADATA + (POINTER_SIZE * level);
+    INT_HANDLE.setRelease(hotArena.getMemory(), (long) nextNodeOffset, value);
+  }
+
+  private boolean casNext(int nodeOffset, int level, int expectedValue, int newValue) {
+    int nextNodeOffset = nodeOffset + HOT_PATH_METADATA + (POINTER_SIZE * level);
+    return INT_HANDLE.compareAndSet(hotArena.getMemory(), (long) nextNodeOffset,
+        expectedValue, newValue);
+  }
+
+  private int randomLevel() {
+    int level = 0;
+    while (level < SkipList.MAX_LEVEL
+        && ThreadLocalRandom.current().nextDouble() < PROBABILITY) {
+      level++;
+    }
+    return level;
+  }
+}
@@ -0,0 +1,155 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Records that MemTable.write applies atomically with a contiguous range of SNs. The batch
+ * serializes each record straight into the cold arena layout of the SkipList, with the SN left
+ * blank and every record padded to 8 bytes, so writing it costs one copy into a single cold arena
+ * reservation. The i-th record gets the SN firstSN + i. A batch is not thread safe; it can be
+ * cleared and reused once written.
+ * <p>
+ * An 8-byte value is padded to start on a word boundary, as the SkipList does for memtables with
+ * in-place updates, so that a counter written by a batch can later be updated in place.
+ */
+public class WriteBatch {
+
+  private final static int INITIAL_CAPACITY = 256;
+  private final static int RECORD_HEADER_SIZE = SkipList.VALUE_SIZE_OFFSET + SkipList.VALUE_LENGTH;
+
+  private final static ValueLayout.OfInt UNALIGNED_INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
+  private final static ValueLayout.OfLong UNALIGNED_LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
+
+  private byte[] buffer;
+  private MemorySegment records;
+  private int size;
+  private int[] offsets;
+  private int count;
+
+  public WriteBatch() {
+    this.buffer = new byte[INITIAL_CAPACITY];
+    this.records = MemorySegment.ofArray(buffer);
+    this.offsets = new int[16];
+  }
+
+  public WriteBatch put(MemorySegment key, byte type, MemorySegment value) {
+    return put(key, type, value, SkipList.NO_EXPIRY);
+  }
+
+  public WriteBatch put(MemorySegment key, byte type, MemorySegment value, long expiresAt) {
+    int keySize = (int) key.byteSize();
+    int valueSize = (int) value.byteSize();
+    boolean expires = expiresAt != SkipList.NO_EXPIRY;
+    byte flags = (byte) ((expires ? SkipList.EXPIRY_FLAG : 0)
+        | (valueSize == Long.BYTES ? SkipList.ALIGNED_VALUE_FLAG : 0));
+    int valueOffset = SkipList.getValueOffset(flags, keySize);
+    int recordSize = valueOffset + valueSize + (expires ? Long.BYTES : 0);
+    int offset = size;
+    ensureCapacity(offset + align(recordSize));
+
+    records.set(ValueLayout.JAVA_BYTE, offset + SkipList.TYPE_OFFSET, type);
+    records.set(ValueLayout.JAVA_BYTE, offset + SkipList.FLAGS_OFFSET, flags);
+    records.set(UNALIGNED_INT, offset + SkipList.KEY_SIZE_OFFSET, keySize);
+    records.set(UNALIGNED_INT, offset + SkipList.VALUE_SIZE_OFFSET, valueSize);
+    MemorySegment.copy(key, 0, records, offset + RECORD_HEADER_SIZE, keySize);
+    MemorySegment.copy(value, 0, records, offset + valueOffset, valueSize);
+    if (expires) {
+      records.set(UNALIGNED_LONG, offset + valueOffset + valueSize, expiresAt);
+    }
+
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count * 2);
+    }
+    offsets[count++] = offset;
+    size = offset + align(recordSize);
+    return this;
+  }
+
+  /**
+   * Appends the records of the other batch, which is left unchanged.
+   */
+  public WriteBatch append(WriteBatch other) {
+    ensureCapacity(size + other.size);
+    System.arraycopy(other.buffer, 0, buffer, size, other.size);
+    if (count + other.count > offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(count + other.count, offsets.length * 2));
+    }
+    for (int i = 0; i < other.count; i++) {
+      offsets[count + i] = size + other.offsets[i];
+    }
+    count += other.count;
+    size += other.size;
+    return this;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Number of cold arena bytes the batch takes once written.
+   */
+  public int getByteSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  public void clear() {
+    // Padding is copied into the arena as well, so it must not keep bytes of old records
+    Arrays.fill(buffer, 0, size, (byte) 0);
+    size = 0;
+    count = 0;
+  }
+
+  /**
+   * The serialized records, getByteSize() bytes long.
+   */
+  MemorySegment getRecords() {
+    return records.asSlice(0, size);
+  }
+
+  int getRecordOffset(int index) {
+    return offsets[index];
+  }
+
+  MemorySegment getKey(int index) {
+    int offset = offsets[index];
+    return records.asSlice(offset + RECORD_HEADER_SIZE,
+        records.get(UNALIGNED_INT, offset + SkipList.KEY_SIZE_OFFSET));
+  }
+
+  long getExpiry(int index) {
+    int offset = offsets[index];
+    byte flags = records.get(ValueLayout.JAVA_BYTE, offset + SkipList.FLAGS_OFFSET);
+    if ((flags & SkipList.EXPIRY_FLAG) == 0) {
+      return SkipList.NO_EXPIRY;
+    }
+    int keySize = records.get(UNALIGNED_INT, offset + SkipList.KEY_SIZE_OFFSET);
+    return records.get(UNALIGNED_LONG, offset + SkipList.getValueOffset(flags, keySize)
+        + records.get(UNALIGNED_INT, offset + SkipList.VALUE_SIZE_OFFSET));
+  }
+
+  int getRecordSize(int index) {
+    return (index + 1 < count ? offsets[index + 1] : size) - offsets[index];
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= buffer.length) {
+      return;
+    }
+    buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    records = MemorySegment.ofArray(buffer);
+  }
+
+  private static int align(int size) {
+    return (size + 7) & ~7;
+  }
+}
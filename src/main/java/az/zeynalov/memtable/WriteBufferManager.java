@@ -0,0 +1,161 @@
+package az.zeynalov.memtable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide budget for memtable memory, shared by any number of MemTableManagers. Arenas
+ * created with the manager report every allocation to it and hand their bytes back on close, so
+ * getMemoryUsage covers every live memtable, flushed or not.
+ * <p>
+ * There is no per-table quota: a hot table may take most of the budget. After each write, a
+ * registered MemTableManager asks whether a flush is due. A flush is due when the memory of the
+ * active memtables reaches the high watermark of the budget, or when the total usage reaches the
+ * budget while at least half of it is still in active memtables. Memory of frozen memtables is
+ * already on its way out, so it alone never triggers another flush. The flush rotates the largest
+ * active memtable of all registered managers, which frees the most memory.
+ * <p>
+ * An arena commits its full capacity when it is created, because the segment is zero-filled, and
+ * charges it to the manager until it is closed; getCommittedMemory reports the total. The flush
+ * decisions above work on the allocated bytes, so the committed memory only stays within the
+ * budget if the arenas are sized from it: getArenaCapacity gives the capacity at which a number
+ * of memtables, each with a hot and a cold arena, commit no more than the budget. A
+ * MemTableManager holds its active memtable, a prepared spare and its frozen memtables at once,
+ * and with in-memory compaction one more as the compaction target.
+ */
+public class WriteBufferManager {
+
+  private final static double DEFAULT_HIGH_WATERMARK = 0.9;
+
+  private final long bufferSize;
+  private final long mutableLimit;
+  private final LongAdder usage;
+  private final LongAdder committed;
+  private final CopyOnWriteArrayList<MemTableManager> managers;
+  private final AtomicBoolean flushing;
+
+  public WriteBufferManager(long bufferSize) {
+    this(bufferSize, DEFAULT_HIGH_WATERMARK);
+  }
+
+  public WriteBufferManager(long bufferSize, double highWatermark) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive");
+    }
+    if (highWatermark <= 0 || highWatermark > 1) {
+      throw new IllegalArgumentException("High watermark must be in (0, 1]");
+    }
+    this.bufferSize = bufferSize;
+    this.mutableLimit = (long) (bufferSize * highWatermark);
+    this.usage = new LongAdder();
+    this.committed = new LongAdder();
+    this.managers = new CopyOnWriteArrayList<>();
+    this.flushing = new AtomicBoolean();
+  }
+
+  /**
+   * Bytes allocated in the arenas that report to this manager and are not closed yet. The flush
+   * decisions work on this; the memory the arenas hold is getCommittedMemory.
+   */
+  public long getMemoryUsage() {
+    return usage.sum();
+  }
+
+  /**
+   * Capacity of the arenas that report to this manager and are not closed yet: the off-heap memory
+   * they hold.
+   */
+  public long getCommittedMemory() {
+    return committed.sum();
+  }
+
+  /**
+   * Arena capacity at which the given number of memtables, with two arenas each, commit at most
+   * the budget. Rounded down to a multiple of 8 and capped at the default capacity.
+   */
+  public long getArenaCapacity(int memTables) {
+    if (memTables <= 0) {
+      throw new IllegalArgumentException("memTables must be positive: " + memTables);
+    }
+    long capacity = Math.min(Arena.DEFAULT_CAPACITY, bufferSize / (2L * memTables)) & ~7L;
+    if (capacity == 0) {
+      throw new IllegalArgumentException("Budget is too small for " + memTables + " memtables");
+    }
+    return capacity;
+  }
+
+  /**
+   * Bytes of the active memtables of the registered managers.
+   */
+  public long getMutableMemoryUsage() {
+    long mutable = 0;
+    for (MemTableManager manager : managers) {
+      mutable += manager.getActive().getMemoryUsage();
+    }
+    return mutable;
+  }
+
+  public long getBufferSize() {
+    return bufferSize;
+  }
+
+  public boolean shouldFlush() {
+    long total = usage.sum();
+    if (total < Math.min(mutableLimit, bufferSize / 2)) {
+      return false;
+    }
+    long mutable = getMutableMemoryUsage();
+    return mutable >= mutableLimit || (total >= bufferSize && mutable >= bufferSize / 2);
+  }
+
+  void reserve(long bytes) {
+    usage.add(bytes);
+  }
+
+  void free(long bytes) {
+    usage.add(-bytes);
+  }
+
+  void commit(long bytes) {
+    committed.add(bytes);
+  }
+
+  void uncommit(long bytes) {
+    committed.add(-bytes);
+  }
+
+  void register(MemTableManager manager) {
+    managers.add(manager);
+  }
+
+  void unregister(MemTableManager manager) {
+    managers.remove(manager);
+  }
+
+  /**
+   * Rotates the largest active memtable if a flush is due. Only one thread decides at a time; the
+   * others return at once.
+   */
+  void maybeFlush() {
+    if (!shouldFlush() || !flushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      MemTableManager largest = null;
+      long largestUsage = 0;
+      for (MemTableManager manager : managers) {
+        long active = manager.getActive().getMemoryUsage();
+        if (active > largestUsage) {
+          largest = manager;
+          largestUsage = active;
+        }
+      }
+      if (largest != null) {
+        largest.rotate();
+      }
+    } finally {
+      flushing.set(false);
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package az.zeynalov.memtable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Back-pressure for writers of a MemTableManager whose flushes fall behind. The state follows the
+ * backlog of frozen memtables, by count and by bytes:
+ * <ul>
+ *   <li>NORMAL: writes go through untouched.</li>
+ *   <li>SLOWDOWN: the backlog reached the slowdown limit, or one more rotation would reach the
+ *   stop limit and the active memtable is already half full. Writes go through a token bucket
+ *   that admits delayedWriteRate bytes per second, so writers slow down smoothly instead of
+ *   running into the stop.</li>
+ *   <li>STOP: the backlog reached the stop limit. Writers wait until a flush completes.</li>
+ * </ul>
+ * The bucket keeps its state in a single virtual clock, the time at which the bytes admitted so
+ * far are paid off. A writer moves it forward by the cost of its write and sleeps until it
+ * catches up, so there is no refill thread. Up to MAX_BURST worth of unused rate is kept.
+ * <p>
+ * The setters return this, like MemTableOptions. The four limits are set and validated together
+ * and published as one volatile snapshot, so the next write of every manager sees either all of
+ * the old limits or all of the new ones. One controller may be shared by several managers; the
+ * metrics then add up.
+ */
+public class WriteController {
+
+  public enum State {
+    NORMAL, SLOWDOWN, STOP
+  }
+
+  private final static long MAX_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  // Fill of the active memtable at which the last rotation before the stop is close
+  private final static double LAST_MEMTABLE_FILL = 0.5;
+  // Stalled writers check the state again at least this often
+  private final static long STALL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private volatile Limits limits = new Limits(3, Long.MAX_VALUE, 5, Long.MAX_VALUE);
+  private volatile long delayedWriteRate = 16L << 20;
+
+  private final AtomicLong paidUntil;
+  private final ReentrantLock lock;
+  private final Condition flushed;
+  private final LongAdder delayedNanos;
+  private final LongAdder delayedWrites;
+  private final LongAdder stalledNanos;
+  private final LongAdder stalledWrites;
+
+  public WriteController() {
+    this.paidUntil = new AtomicLong(System.nanoTime());
+    this.lock = new ReentrantLock();
+    this.flushed = lock.newCondition();
+    this.delayedNanos = new LongAdder();
+    this.delayedWrites = new LongAdder();
+    this.stalledNanos = new LongAdder();
+    this.stalledWrites = new LongAdder();
+  }
+
+  /**
+   * Frozen memtables, or bytes in them, from which writes are slowed down, and from which they wait
+   * for a flush. All four must be positive and the slowdown limits must not exceed the stop limits.
+   * Defaults to slowing down at 3 and stopping at 5 memtables, with no limit on bytes.
+   */
+  public WriteController limits(int slowdownMemTables, long slowdownBytes, int stopMemTables,
+      long stopBytes) {
+    if (slowdownMemTables < 1 || slowdownBytes < 1 || stopMemTables < 1 || stopBytes < 1) {
+      throw new IllegalArgumentException("Limits must be positive");
+    }
+    if (slowdownMemTables > stopMemTables || slowdownBytes > stopBytes) {
+      throw new IllegalArgumentException("Slowdown limits must not exceed the stop limits");
+    }
+    this.limits = new Limits(slowdownMemTables, slowdownBytes, stopMemTables, stopBytes);
+    return this;
+  }
+
+  /**
+   * Bytes per second admitted while slowed down. Defaults to 16 MB.
+   */
+  public WriteController delayedWriteRate(long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      throw new IllegalArgumentException("Delayed write rate must be positive");
+    }
+    this.delayedWriteRate = bytesPerSecond;
+    return this;
+  }
+
+  public State getState(MemTableManager manager) {
+    if (manager.isClosed() || manager.getFlushFailure() != null) {
+      return State.NORMAL;
+    }
+    Limits current = limits;
+    int frozen = manager.getImmutableCount();
+    long frozenBytes = manager.getImmutableMemoryUsage();
+    if (frozen >= current.stopMemTables() || frozenBytes >= current.stopBytes()) {
+      return State.STOP;
+    }
+    if (frozen >= current.slowdownMemTables() || frozenBytes >= current.slowdownBytes()) {
+      return State.SLOWDOWN;
+    }
+    if (frozen == current.stopMemTables() - 1
+        && manager.getActive().getFillRatio() >= LAST_MEMTABLE_FILL) {
+      return State.SLOWDOWN;
+    }
+    return State.NORMAL;
+  }
+
+  /**
+   * Time writers spent waiting in SLOWDOWN.
+   */
+  public long getDelayedNanos() {
+    return delayedNanos.sum();
+  }
+
+  public long getDelayedWrites() {
+    return delayedWrites.sum();
+  }
+
+  /**
+   * Time writers spent waiting in STOP.
+   */
+  public long getStalledNanos() {
+    return stalledNanos.sum();
+  }
+
+  public long getStalledWrites() {
+    return stalledWrites.sum();
+  }
+
+  /**
+   * Holds the writer back as the state of the manager asks for, before it writes the given number
+   * of bytes. Returns at once when the manager is closed or its flush failed.
+   */
+  void throttle(MemTableManager manager, long bytes) {
+    State state = getState(manager);
+    if (state == State.STOP) {
+      stall(manager);
+      state = getState(manager);
+    }
+    if (state == State.SLOWDOWN) {
+      delay(bytes);
+    }
+  }
+
+  /**
+   * Wakes the stalled writers, called whenever a flush task ends, whether it succeeded or not.
+   */
+  void signal() {
+    lock.lock();
+    try {
+      flushed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void stall(MemTableManager manager) {
+    long start = System.nanoTime();
+    lock.lock();
+    try {
+      while (!manager.isClosed() && getState(manager) == State.STOP) {
+        flushed.awaitNanos(STALL_CHECK_NANOS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+    stalledNanos.add(System.nanoTime() - start);
+    stalledWrites.increment();
+  }
+
+  private void delay(long bytes) {
+    long cost = bytes * TimeUnit.SECONDS.toNanos(1) / delayedWriteRate;
+    long now;
+    long next;
+    while (true) {
+      now = System.nanoTime();
+      long current = paidUntil.get();
+      next = Math.max(current, now - MAX_BURST_NANOS) + cost;
+      if (paidUntil.compareAndSet(current, next)) {
+        break;
+      }
+    }
+    if (next <= now) {
+      return;
+    }
+
+    long start = now;
+    while (now < next) {
+      LockSupport.parkNanos(next - now);
+      now = System.nanoTime();
+    }
+    delayedNanos.add(now - start);
+    delayedWrites.increment();
+  }
+
+  private record Limits(int slowdownMemTables, long slowdownBytes, int stopMemTables,
+      long stopBytes) {
+  }
+}
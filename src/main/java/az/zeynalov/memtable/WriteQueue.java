@@ -0,0 +1,161 @@
+package az.zeynalov.memtable;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional write pipeline in front of a MemTable for many concurrent writers. Writers enqueue
+ * their records in a lock-free queue; whoever finds no leader becomes one, drains a group of up to
+ * maxGroupSize requests into one WriteBatch and writes it with MemTable.write, which reserves arena
+ * space once and links the records in key order. The other writers park until the group holding
+ * their write is published. Contention on the arena bump pointers and on the links near the head
+ * is paid once per group instead of once per record, at the cost of some latency per write.
+ * <p>
+ * The queue assigns the SNs: consecutive numbers from firstSN, in queue order. Only one leader
+ * runs at a time, so groups are published in SN order and a reader at MemTable.getPublishedSN()
+ * sees every write of the queue whole or not at all. Writes that bypass the queue break that
+ * guarantee.
+ */
+public class WriteQueue {
+
+  private final static int DEFAULT_MAX_GROUP_SIZE = 256;
+
+  private final MemTable memTable;
+  private final int maxGroupSize;
+  private final ConcurrentLinkedQueue<Request> queue;
+  private final AtomicBoolean leader;
+  // Only touched by the current leader
+  private final WriteBatch group;
+  private final List<Request> requests;
+  private long nextSN;
+  private volatile long lastSN;
+
+  public WriteQueue(MemTable memTable, long firstSN) {
+    this(memTable, firstSN, DEFAULT_MAX_GROUP_SIZE);
+  }
+
+  public WriteQueue(MemTable memTable, long firstSN, int maxGroupSize) {
+    if (maxGroupSize <= 0) {
+      throw new IllegalArgumentException("Group size must be positive");
+    }
+    this.memTable = memTable;
+    this.maxGroupSize = maxGroupSize;
+    this.queue = new ConcurrentLinkedQueue<>();
+    this.leader = new AtomicBoolean();
+    this.group = new WriteBatch();
+    this.requests = new ArrayList<>();
+    this.nextSN = firstSN;
+    this.lastSN = firstSN - 1;
+  }
+
+  /**
+   * Writes the record and returns its SN once it is visible.
+   */
+  public long put(MemorySegment key, byte type, MemorySegment value) {
+    return put(key, type, value, SkipList.NO_EXPIRY);
+  }
+
+  public long put(MemorySegment key, byte type, MemorySegment value, long expiresAt) {
+    return submit(new Request(key, type, value, expiresAt, null));
+  }
+
+  /**
+   * Writes the batch atomically and returns the SN of its last record once it is visible. The
+   * batch must not be changed until the method returns.
+   */
+  public long write(WriteBatch batch) {
+    return submit(new Request(null, (byte) 0, null, SkipList.NO_EXPIRY, batch));
+  }
+
+  /**
+   * SN of the last record written through the queue.
+   */
+  public long getLastSN() {
+    return lastSN;
+  }
+
+  private long submit(Request request) {
+    queue.offer(request);
+    while (!request.done) {
+      if (leader.compareAndSet(false, true)) {
+        try {
+          while (!request.done) {
+            writeGroup();
+          }
+        } finally {
+          leader.set(false);
+        }
+        // A writer that enqueued after the last drain may have parked while we were leading
+        Request next = queue.peek();
+        if (next != null) {
+          LockSupport.unpark(next.thread);
+        }
+      } else {
+        LockSupport.park(this);
+      }
+    }
+
+    if (request.failure != null) {
+      throw request.failure;
+    }
+    return request.lastSN;
+  }
+
+  private void writeGroup() {
+    requests.clear();
+    group.clear();
+    Request request;
+    while (requests.size() < maxGroupSize && (request = queue.poll()) != null) {
+      if (request.batch != null) {
+        group.append(request.batch);
+      } else {
+        group.put(request.key, request.type, request.value, request.expiresAt);
+      }
+      request.lastSN = nextSN + group.getCount() - 1;
+      requests.add(request);
+    }
+
+    RuntimeException failure = null;
+    try {
+      memTable.write(group, nextSN);
+      nextSN += group.getCount();
+      lastSN = nextSN - 1;
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+
+    for (Request completed : requests) {
+      completed.failure = failure;
+      completed.done = true;
+      if (completed.thread != Thread.currentThread()) {
+        LockSupport.unpark(completed.thread);
+      }
+    }
+  }
+
+  private static final class Request {
+    private final MemorySegment key;
+    private final byte type;
+    private final MemorySegment value;
+    private final long expiresAt;
+    private final WriteBatch batch;
+    private final Thread thread;
+    private long lastSN;
+    private RuntimeException failure;
+    private volatile boolean done;
+
+    private Request(MemorySegment key, byte type, MemorySegment value, long expiresAt,
+        WriteBatch batch) {
+      this.key = key;
+      this.type = type;
+      this.value = value;
+      this.expiresAt = expiresAt;
+      this.batch = batch;
+      this.thread = Thread.currentThread();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.BloomFilter;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.SkipList;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 7, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms512m",
+        "-Xmx512m"
+    }
+)
+public class BloomFilterBenchmark {
+
+  private static byte[] makeKey(int i) {
+    return String.format("key-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] makeMissKey(int i) {
+    return String.format("miss-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  Same contents twice: one memtable with a whole-key
+  //  filter, one without. bitsPerKey = 0 means no filter.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class LookupState {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"0", "6", "10", "16"})
+    public int bitsPerKey;
+
+    public Arena hotArena;
+    public Arena coldArena;
+    public BloomFilter filter;
+    public MemTable memTable;
+    public MemorySegment[] hitKeys;
+    public MemorySegment[] missKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      hotArena  = new Arena();
+      coldArena = new Arena();
+      SkipList skipList = new SkipList(hotArena, coldArena);
+      skipList.init();
+      filter = bitsPerKey == 0 ? null : new BloomFilter((long) size * bitsPerKey, true, 0);
+      memTable = new MemTable(hotArena, coldArena, skipList,
+          new MemTableOptions().bloomFilter(filter));
+
+      hitKeys  = new MemorySegment[size];
+      missKeys = new MemorySegment[size];
+      for (int i = 0; i < size; i++) {
+        hitKeys[i]  = MemorySegment.ofArray(makeKey(i));
+        missKeys[i] = MemorySegment.ofArray(makeMissKey(i));
+        memTable.put(hitKeys[i], i, (byte) 1, hitKeys[i]);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      if (filter != null) {
+        filter.close();
+      }
+      hotArena.close();
+      coldArena.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    public int next(int size) {
+      if (++next >= size) next = 0;
+      return next;
+    }
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  False positive rate, reported as JMH secondary counters:
+  //  falsePositive / (falsePositive + trueNegative).
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class FalsePositives {
+    public long falsePositive;
+    public long trueNegative;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      falsePositive = 0;
+      trueNegative = 0;
+    }
+  }
+
+  @Benchmark
+  public LookupStatus lookupHit(LookupState s, Cursor c) {
+    return s.memTable.lookup(s.hitKeys[c.next(s.size)], Long.MAX_VALUE);
+  }
+
+  @Benchmark
+  public LookupStatus lookupMiss(LookupState s, Cursor c) {
+    return s.memTable.lookup(s.missKeys[c.next(s.size)], Long.MAX_VALUE);
+  }
+
+  @Benchmark
+  public boolean falsePositiveRate(LookupState s, Cursor c, FalsePositives fp) {
+    if (s.filter == null) {
+      return true;
+    }
+    boolean positive = s.filter.mayContain(s.missKeys[c.next(s.size)]);
+    if (positive) {
+      fp.falsePositive++;
+    } else {
+      fp.trueNegative++;
+    }
+    return positive;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(BloomFilterBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,122 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.SkipList;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms1g",
+        "-Xmx1g"
+    }
+)
+public class FrozenLookupBenchmark {
+
+  private final static int SCAN_LENGTH = 100;
+
+  private static byte[] makeKey(int i) {
+    return String.format("key-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] makeValue(int i) {
+    return String.format("val-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  Full memtable, read through the skip list (frozen =
+  //  false) or through the flat sorted array that freeze()
+  //  builds. Point lookups hit random keys; the scan seeks to
+  //  a random key and reads the next SCAN_LENGTH entries.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class FrozenState {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean frozen;
+
+    public MemTable memTable;
+    public MemorySegment[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      Arena hotArena = new Arena();
+      Arena coldArena = new Arena();
+      SkipList skipList = new SkipList(hotArena, coldArena);
+      skipList.init();
+      memTable = new MemTable(hotArena, coldArena, skipList);
+
+      keys = new MemorySegment[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = MemorySegment.ofArray(makeKey(i));
+        memTable.put(keys[i], i, (byte) 1, MemorySegment.ofArray(makeValue(i)));
+      }
+      if (frozen) {
+        memTable.freeze();
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      memTable.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    public EntryView view = new EntryView();
+  }
+
+  @Benchmark
+  public LookupStatus lookup(FrozenState s, ThreadState t) {
+    MemorySegment key = s.keys[ThreadLocalRandom.current().nextInt(s.size)];
+    return s.memTable.lookup(key, Long.MAX_VALUE, t.view);
+  }
+
+  @Benchmark
+  public long seekAndScan(FrozenState s, ThreadState t) {
+    MemorySegment key = s.keys[ThreadLocalRandom.current().nextInt(s.size)];
+    long sum = 0;
+    try (EntryIterator iterator = s.memTable.newIterator(Long.MAX_VALUE, false)) {
+      iterator.seek(key);
+      for (int i = 0; i < SCAN_LENGTH && iterator.isValid(); i++) {
+        iterator.read(t.view);
+        sum += t.view.getSN();
+        iterator.next();
+      }
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(FrozenLookupBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,126 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.VectorMemTable;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 7, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms512m",
+        "-Xmx512m"
+    }
+)
+public class IngestBenchmark {
+
+  private final static int BATCH = 100_000;
+
+  // ─────────────────────────────────────────────────────────
+  //  Every invocation loads BATCH random keys into fresh
+  //  arenas. rawArena is the floor: bump allocation and copy
+  //  of the same bytes with no index at all.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Thread)
+  public static class IngestState {
+
+    public MemorySegment[] keys;
+    public MemorySegment value;
+    public Arena hotArena;
+    public Arena coldArena;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+      keys = new MemorySegment[BATCH];
+      Random random = new Random(42);
+      for (int i = 0; i < BATCH; i++) {
+        keys[i] = MemorySegment.ofArray(
+            String.format("key-%010d", random.nextInt(Integer.MAX_VALUE))
+                .getBytes(StandardCharsets.UTF_8));
+      }
+      value = MemorySegment.ofArray(new byte[32]);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupArenas() {
+      hotArena = new Arena();
+      coldArena = new Arena();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      hotArena.close();
+      coldArena.close();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public MemTable skipList(IngestState s) {
+    SkipList skipList = new SkipList(s.hotArena, s.coldArena);
+    skipList.init();
+    MemTable memTable = new MemTable(s.hotArena, s.coldArena, skipList);
+    for (int i = 0; i < BATCH; i++) {
+      memTable.put(s.keys[i], i, (byte) 1, s.value);
+    }
+    return memTable;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public VectorMemTable vector(IngestState s) {
+    VectorMemTable memTable = new VectorMemTable(s.hotArena, s.coldArena);
+    for (int i = 0; i < BATCH; i++) {
+      memTable.put(s.keys[i], i, (byte) 1, s.value);
+    }
+    return memTable;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public VectorMemTable vectorWithFreeze(IngestState s) {
+    VectorMemTable memTable = vector(s);
+    memTable.freeze();
+    return memTable;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int rawArena(IngestState s) {
+    int last = 0;
+    for (int i = 0; i < BATCH; i++) {
+      MemorySegment key = s.keys[i];
+      int size = 20 + (int) key.byteSize() + (int) s.value.byteSize();
+      last = s.coldArena.allocate(size);
+      s.coldArena.writeLong(last, i);
+      s.coldArena.writeBytes(last + 20, key);
+      s.coldArena.writeBytes(last + 20 + (int) key.byteSize(), s.value);
+    }
+    return last;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(IngestBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
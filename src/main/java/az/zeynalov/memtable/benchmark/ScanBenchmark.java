@@ -0,0 +1,116 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.SkipList;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 7, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms512m",
+        "-Xmx512m"
+    }
+)
+public class ScanBenchmark {
+
+  private static byte[] makeKey(int i) {
+    return String.format("key-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] makeValue(int i) {
+    return String.format("val-%010d", i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  Full memtable, scanned with a pool of the given size.
+  //  parallelism = 1 is the single-threaded baseline.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class ScanState {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    public Arena hotArena;
+    public Arena coldArena;
+    public MemTable memTable;
+    public ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      hotArena  = new Arena();
+      coldArena = new Arena();
+      SkipList skipList = new SkipList(hotArena, coldArena);
+      skipList.init();
+      memTable = new MemTable(hotArena, coldArena, skipList);
+      pool = new ForkJoinPool(parallelism);
+
+      for (int i = 0; i < size; i++) {
+        memTable.put(MemorySegment.ofArray(makeKey(i)), i, (byte) 1,
+            MemorySegment.ofArray(makeValue(i)));
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      pool.shutdown();
+      hotArena.close();
+      coldArena.close();
+    }
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  Each visited entry reads its SN from the cold arena, so
+  //  the scan pays the same hot → cold hop as a flush would.
+  // ─────────────────────────────────────────────────────────
+
+  @Benchmark
+  public long scan_sequential(ScanState s) {
+    return StreamSupport.intStream(s.memTable.spliterator(Long.MAX_VALUE), false)
+        .mapToLong(offset -> readSN(s, offset))
+        .sum();
+  }
+
+  @Benchmark
+  public long scan_parallel(ScanState s) {
+    return s.pool.submit(() ->
+        StreamSupport.intStream(s.memTable.spliterator(Long.MAX_VALUE), true)
+            .mapToLong(offset -> readSN(s, offset))
+            .sum()
+    ).join();
+  }
+
+  private static long readSN(ScanState s, int offset) {
+    int coldOffset = s.hotArena.readInt(offset + SkipList.COLD_ARENA_POINTER_OFFSET);
+    return s.coldArena.readLong(coldOffset);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ScanBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
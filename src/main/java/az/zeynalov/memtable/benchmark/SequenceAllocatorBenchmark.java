@@ -0,0 +1,84 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.SequenceAllocator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(8)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms1g",
+        "-Xmx1g"
+    }
+)
+public class SequenceAllocatorBenchmark {
+
+  // ─────────────────────────────────────────────────────────
+  //  8 threads take SNs as fast as they can: one shared
+  //  AtomicLong against leased ranges. The withReader group
+  //  adds one thread reading the published SN, which revokes
+  //  idle leases, to show what readers cost the writers.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class SharedState {
+
+    public AtomicLong sequence;
+    public SequenceAllocator allocator;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      sequence = new AtomicLong();
+      allocator = new SequenceAllocator();
+    }
+  }
+
+  @Benchmark
+  public long sharedCounter(SharedState s) {
+    return s.sequence.incrementAndGet();
+  }
+
+  @Benchmark
+  public long leasedRange(SharedState s) {
+    long SN = s.allocator.acquire();
+    s.allocator.release();
+    return SN;
+  }
+
+  @Benchmark
+  @Group("withReader")
+  @GroupThreads(7)
+  public long leasedRangeWriter(SharedState s) {
+    long SN = s.allocator.acquire();
+    s.allocator.release();
+    return SN;
+  }
+
+  @Benchmark
+  @Group("withReader")
+  @GroupThreads(1)
+  public long leasedRangeReader(SharedState s) {
+    return s.allocator.getPublishedSN();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(SequenceAllocatorBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
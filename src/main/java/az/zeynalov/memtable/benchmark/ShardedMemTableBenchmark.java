@@ -0,0 +1,164 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.ShardedMemTable;
+import az.zeynalov.memtable.SkipList;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Threads(8)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms1g",
+        "-Xmx1g"
+    }
+)
+public class ShardedMemTableBenchmark {
+
+  private final static int PER_THREAD = 20_000;
+  private final static int SAMPLE_SIZE = 10_000;
+  private final static int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+  private static MemorySegment randomKey(Random random) {
+    return MemorySegment.ofArray(
+        String.format("key-%010d", random.nextInt(Integer.MAX_VALUE))
+            .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static MemTable newMemTable() {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    return new MemTable(hotArena, coldArena, skipList);
+  }
+
+  // ─────────────────────────────────────────────────────────
+  //  Writers load PER_THREAD random keys each into one fresh
+  //  memtable per iteration: a single skip list against a
+  //  ShardedMemTable whose split keys are sampled from the
+  //  same key distribution. main() runs every thread count
+  //  in THREAD_COUNTS; with -t N only that one is measured.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class SingleState {
+
+    public MemTable memTable;
+    public MemorySegment value;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      memTable = newMemTable();
+      value = MemorySegment.ofArray(new byte[32]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      memTable.close();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ShardedState {
+
+    @Param({"2", "4", "8"})
+    public int shards;
+
+    public MemorySegment[] splitKeys;
+    public ShardedMemTable memTable;
+    public MemorySegment value;
+
+    @Setup(Level.Trial)
+    public void sample() {
+      Random random = new Random(42);
+      List<MemorySegment> sample = new ArrayList<>(SAMPLE_SIZE);
+      for (int i = 0; i < SAMPLE_SIZE; i++) {
+        sample.add(randomKey(random));
+      }
+      splitKeys = ShardedMemTable.sampleSplitKeys(sample, shards);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      memTable = new ShardedMemTable(splitKeys, ShardedMemTableBenchmark::newMemTable);
+      value = MemorySegment.ofArray(new byte[32]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      memTable.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    // SNs come from a range of each thread, so no shared counter limits the scaling
+    private final static AtomicLong NEXT_RANGE = new AtomicLong();
+
+    public MemorySegment[] keys;
+    public long firstSN;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      firstSN = NEXT_RANGE.getAndIncrement() * PER_THREAD + 1;
+      keys = new MemorySegment[PER_THREAD];
+      Random random = new Random(Thread.currentThread().threadId());
+      for (int i = 0; i < PER_THREAD; i++) {
+        keys[i] = randomKey(random);
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PER_THREAD)
+  public long singleList(SingleState s, Keys k) {
+    long SN = 0;
+    for (int i = 0; i < PER_THREAD; i++) {
+      SN = k.firstSN + i;
+      s.memTable.put(k.keys[i], SN, (byte) 1, s.value);
+    }
+    return SN;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PER_THREAD)
+  public long sharded(ShardedState s, Keys k) {
+    long SN = 0;
+    for (int i = 0; i < PER_THREAD; i++) {
+      SN = k.firstSN + i;
+      s.memTable.put(k.keys[i], SN, (byte) 1, s.value);
+    }
+    return SN;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : THREAD_COUNTS) {
+      Options opt = new OptionsBuilder()
+          .include(ShardedMemTableBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(opt).run();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBatch;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 7, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms512m",
+        "-Xmx512m"
+    }
+)
+public class WriteBatchBenchmark {
+
+  private final static int COMMITS = 10_000;
+
+  // ─────────────────────────────────────────────────────────
+  //  Every invocation commits COMMITS small transactions of
+  //  commitSize keys into fresh arenas, once as a loop of
+  //  puts and once as one WriteBatch per transaction.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Thread)
+  public static class CommitState {
+
+    @Param({"2", "8", "32"})
+    public int commitSize;
+
+    public MemorySegment[] keys;
+    public MemorySegment value;
+    public WriteBatch batch;
+    public Arena hotArena;
+    public Arena coldArena;
+    public MemTable memTable;
+
+    @Setup(Level.Trial)
+    public void setupKeys() {
+      keys = new MemorySegment[COMMITS * commitSize];
+      Random random = new Random(42);
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = MemorySegment.ofArray(
+            String.format("key-%010d", random.nextInt(Integer.MAX_VALUE))
+                .getBytes(StandardCharsets.UTF_8));
+      }
+      value = MemorySegment.ofArray(new byte[32]);
+      batch = new WriteBatch();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupArenas() {
+      hotArena = new Arena();
+      coldArena = new Arena();
+      SkipList skipList = new SkipList(hotArena, coldArena);
+      skipList.init();
+      memTable = new MemTable(hotArena, coldArena, skipList);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      hotArena.close();
+      coldArena.close();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COMMITS)
+  public MemTable putLoop(CommitState s) {
+    int next = 0;
+    for (int c = 0; c < COMMITS; c++) {
+      for (int i = 0; i < s.commitSize; i++, next++) {
+        s.memTable.put(s.keys[next], next, (byte) 1, s.value);
+      }
+    }
+    return s.memTable;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COMMITS)
+  public MemTable writeBatch(CommitState s) {
+    int next = 0;
+    for (int c = 0; c < COMMITS; c++) {
+      s.batch.clear();
+      for (int i = 0; i < s.commitSize; i++) {
+        s.batch.put(s.keys[next + i], (byte) 1, s.value);
+      }
+      s.memTable.write(s.batch, next);
+      next += s.commitSize;
+    }
+    return s.memTable;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(WriteBatchBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
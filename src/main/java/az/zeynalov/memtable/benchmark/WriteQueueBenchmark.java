@@ -0,0 +1,117 @@
+package az.zeynalov.memtable.benchmark;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteQueue;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Threads(8)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+        "-XX:+UseG1GC",
+        "-Xms1g",
+        "-Xmx1g"
+    }
+)
+public class WriteQueueBenchmark {
+
+  private final static int PER_THREAD = 20_000;
+
+  // ─────────────────────────────────────────────────────────
+  //  8 writers share one memtable, fresh per iteration. Each
+  //  invocation is one writer loading PER_THREAD keys, either
+  //  with direct puts or through the write queue. Run with
+  //  -t 1 / -t 4 / -t 16 to see where the queue pays off.
+  // ─────────────────────────────────────────────────────────
+
+  @State(Scope.Benchmark)
+  public static class SharedState {
+
+    public Arena hotArena;
+    public Arena coldArena;
+    public MemTable memTable;
+    public WriteQueue queue;
+    public AtomicLong sequence;
+    public MemorySegment value;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      hotArena = new Arena();
+      coldArena = new Arena();
+      SkipList skipList = new SkipList(hotArena, coldArena);
+      skipList.init();
+      memTable = new MemTable(hotArena, coldArena, skipList);
+      queue = new WriteQueue(memTable, 1);
+      sequence = new AtomicLong();
+      value = MemorySegment.ofArray(new byte[32]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      hotArena.close();
+      coldArena.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    public MemorySegment[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      keys = new MemorySegment[PER_THREAD];
+      Random random = new Random(Thread.currentThread().threadId());
+      for (int i = 0; i < PER_THREAD; i++) {
+        keys[i] = MemorySegment.ofArray(
+            String.format("key-%010d", random.nextInt(Integer.MAX_VALUE))
+                .getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PER_THREAD)
+  public long directPut(SharedState s, Keys k) {
+    long SN = 0;
+    for (int i = 0; i < PER_THREAD; i++) {
+      SN = s.sequence.incrementAndGet();
+      s.memTable.put(k.keys[i], SN, (byte) 1, s.value);
+    }
+    return SN;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PER_THREAD)
+  public long queuedPut(SharedState s, Keys k) {
+    long SN = 0;
+    for (int i = 0; i < PER_THREAD; i++) {
+      SN = s.queue.put(k.keys[i], (byte) 1, s.value);
+    }
+    return SN;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(WriteQueueBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -5,5 +5,8 @@ public class ErrorMessage {
   public final static String ARENA_IS_FULL = "No memory left in arena!";
   public final static String ARENA_LARGE_VARINT = "Varint is too large to be read from arena!";
   public final static String ARENA_SIZE_MISMATCH = "Size of payload does not match the expected size!";
+  public final static String MEMTABLE_IS_FROZEN = "Memtable is frozen and does not accept writes!";
+  public final static String MEMTABLE_IS_CLOSED = "Memtable is closed!";
+  public final static String FLUSH_FAILED = "Memtable flush failed, no more writes are accepted!";
 
 }
@@ -0,0 +1,13 @@
+package az.zeynalov.memtable.exception;
+
+
+public class MemTableClosedException extends RuntimeException {
+
+  private MemTableClosedException(String message) {
+    super(message);
+  }
+
+  public static MemTableClosedException of(String message) {
+    return new MemTableClosedException(message);
+  }
+}
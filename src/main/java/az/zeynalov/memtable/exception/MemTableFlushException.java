@@ -0,0 +1,13 @@
+package az.zeynalov.memtable.exception;
+
+
+public class MemTableFlushException extends RuntimeException {
+
+  private MemTableFlushException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public static MemTableFlushException of(String message, Throwable cause) {
+    return new MemTableFlushException(message, cause);
+  }
+}
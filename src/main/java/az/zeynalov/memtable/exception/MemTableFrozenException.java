@@ -0,0 +1,13 @@
+package az.zeynalov.memtable.exception;
+
+
+public class MemTableFrozenException extends RuntimeException {
+
+  private MemTableFrozenException(String message) {
+    super(message);
+  }
+
+  public static MemTableFrozenException of(String message) {
+    return new MemTableFrozenException(message);
+  }
+}
@@ -0,0 +1,100 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+  @Test
+  void addedKeysAreNeverReportedMissing() {
+    try (BloomFilter filter = new BloomFilter(100_000 * 10L, true, 0)) {
+      for (int i = 0; i < 100_000; i++) {
+        filter.add(segment("key-" + i));
+      }
+      for (int i = 0; i < 100_000; i++) {
+        assertTrue(filter.mayContain(segment("key-" + i)));
+      }
+    }
+  }
+
+  @Test
+  void falsePositiveRateStaysLowAtTenBitsPerKey() {
+    try (BloomFilter filter = new BloomFilter(100_000 * 10L, true, 0)) {
+      for (int i = 0; i < 100_000; i++) {
+        filter.add(segment("key-" + i));
+      }
+      int falsePositives = 0;
+      for (int i = 0; i < 100_000; i++) {
+        if (filter.mayContain(segment("miss-" + i))) {
+          falsePositives++;
+        }
+      }
+      assertTrue(falsePositives < 2_500, "false positive rate too high: " + falsePositives);
+    }
+  }
+
+  @Test
+  void prefixesAreTrackedSeparatelyFromKeys() {
+    try (BloomFilter filter = new BloomFilter(1 << 16, false, 4)) {
+      filter.add(segment("t042|order|1"));
+
+      assertTrue(filter.mayContainPrefix(segment("t042")));
+      assertFalse(filter.mayContainPrefix(segment("t043")));
+      assertTrue(filter.mayContainPrefix(segment("t04")), "other lengths cannot be answered");
+      assertTrue(filter.mayContain(segment("t042|order|2")), "prefix decides for whole keys");
+      assertFalse(filter.mayContain(segment("t043|order|1")));
+    }
+  }
+
+  @Test
+  void concurrentAddsDoNotLoseBits() throws Exception {
+    try (BloomFilter filter = new BloomFilter(1 << 20, true, 0)) {
+      ExecutorService pool = Executors.newFixedThreadPool(8);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int thread = t;
+        futures.add(pool.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            filter.add(segment(thread + "-" + i));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      pool.shutdown();
+
+      for (int t = 0; t < 8; t++) {
+        for (int i = 0; i < 10_000; i++) {
+          assertTrue(filter.mayContain(segment(t + "-" + i)));
+        }
+      }
+    }
+  }
+
+  @Test
+  void sizedFromArenaCapacity() {
+    Arena arena = new Arena();
+    try (BloomFilter filter = BloomFilter.forArena(arena, 10, true, 0)) {
+      assertEquals(arena.getCapacity() / 64 * 10 / 8, filter.getSizeInBytes());
+    } finally {
+      arena.close();
+    }
+  }
+
+  private MemorySegment segment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
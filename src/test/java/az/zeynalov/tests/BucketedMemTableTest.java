@@ -0,0 +1,188 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.BucketedMemTable;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.RecordType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BucketedMemTableTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private BucketedMemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    // Prefix "tNN|" is 4 bytes
+    memTable = new BucketedMemTable(hotArena, coldArena, 16, 4);
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void bucketCountIsRoundedToAPowerOfTwo() {
+    BucketedMemTable table = new BucketedMemTable(hotArena, coldArena, 10, 4);
+    assertEquals(16, table.getBucketCount());
+    assertThrows(IllegalArgumentException.class,
+        () -> new BucketedMemTable(hotArena, coldArena, 0, 4));
+    assertThrows(IllegalArgumentException.class,
+        () -> new BucketedMemTable(hotArena, coldArena, 4, 0));
+  }
+
+  @Test
+  void keysWithTheSamePrefixShareABucket() {
+    int bucket = memTable.bucketOf(createSegment("t01|"));
+    assertEquals(bucket, memTable.bucketOf(createSegment("t01|order:1")));
+    assertEquals(bucket, memTable.bucketOf(createSegment("t01|user:99")));
+  }
+
+  @Test
+  void lookupsFollowMvccSemantics() {
+    MemorySegment key = createSegment("t01|user:42");
+    memTable.put(key, 120, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(key, 130, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(createSegment("t"), 1, RecordType.VALUE, createSegment("short"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 125, view));
+    assertEquals("Alicia", toString(view.getValue()));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key, 100));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("t02|user:42"), 200));
+    assertTrue(memTable.get(createSegment("t"), 1, view));
+    assertEquals("short", toString(view.getValue()));
+  }
+
+  @Test
+  void fullScanMergesBucketsInKeyOrder() {
+    List<String> expected = new ArrayList<>();
+    for (int tenant = 0; tenant < 20; tenant++) {
+      for (int entity = 0; entity < 10; entity++) {
+        String key = String.format("t%02d|e%02d", tenant, entity);
+        memTable.put(createSegment(key), 1, RecordType.VALUE, createSegment("v"));
+        expected.add(key);
+      }
+    }
+    expected.sort(Comparator.reverseOrder());
+
+    assertEquals(expected, scanAll(memTable.newIterator(Long.MAX_VALUE, false)));
+
+    EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false);
+    iterator.seek(createSegment("t05|e05"));
+    List<String> keys = scan(iterator);
+    assertEquals(expected.subList(expected.indexOf("t05|e05"), expected.size()), keys);
+  }
+
+  @Test
+  void prefixIteratorScansOneTenant() {
+    for (int tenant = 0; tenant < 20; tenant++) {
+      for (int entity = 0; entity < 10; entity++) {
+        memTable.put(createSegment(String.format("t%02d|e%02d", tenant, entity)), 1,
+            RecordType.VALUE, createSegment("v"));
+      }
+    }
+    memTable.put(createSegment("t07|e03"), 2, RecordType.TOMBSTONE, createSegment(""));
+
+    List<String> keys = scanAll(memTable.newPrefixIterator(createSegment("t07|"), 5, false));
+    assertEquals(9, keys.size());
+    assertEquals("t07|e09", keys.get(0));
+    assertEquals("t07|e00", keys.get(8));
+    assertFalse(keys.contains("t07|e03"));
+
+    assertEquals(List.of("t07|e05"),
+        scanAll(memTable.newPrefixIterator(createSegment("t07|e05"), 5, false)));
+
+    // Shorter than the hashed prefix: all buckets are merged
+    List<String> tens = scanAll(memTable.newPrefixIterator(createSegment("t1"), 5, false));
+    assertEquals(100, tens.size());
+    assertEquals("t19|e09", tens.get(0));
+    assertEquals("t10|e00", tens.get(99));
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentWritersToDifferentTenants() throws Exception {
+    int threads = 8;
+    int perThread = 2_000;
+    AtomicLong sequence = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int tenant = t;
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          memTable.put(createSegment(String.format("t%02d|e%05d", tenant, i)),
+              sequence.incrementAndGet(), RecordType.VALUE, createSegment("v"));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    assertEquals(threads * perThread, scanAll(memTable.newIterator(Long.MAX_VALUE, false)).size());
+    for (int t = 0; t < threads; t++) {
+      MemorySegment prefix = createSegment(String.format("t%02d|", t));
+      assertEquals(perThread,
+          scanAll(memTable.newPrefixIterator(prefix, Long.MAX_VALUE, false)).size());
+    }
+  }
+
+  private List<String> scanAll(EntryIterator iterator) {
+    iterator.seekToFirst();
+    return scan(iterator);
+  }
+
+  private List<String> scan(EntryIterator iterator) {
+    List<String> keys = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (; iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      keys.add(toString(view.getKey()));
+    }
+    return keys;
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,157 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.ColumnFamilyMemTable;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.exception.MemTableClosedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnFamilyMemTableTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private ColumnFamilyMemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    memTable = new ColumnFamilyMemTable(hotArena, coldArena);
+  }
+
+  @AfterEach
+  void tearDown() {
+    memTable.close();
+  }
+
+  @Test
+  void familiesAreCreatedWithDenseIds() {
+    assertEquals(0, memTable.createFamily("users"));
+    assertEquals(1, memTable.createFamily("orders"));
+    assertEquals(1, memTable.getFamilyId("orders"));
+    assertEquals(-1, memTable.getFamilyId("missing"));
+    assertEquals(2, memTable.getFamilyCount());
+
+    assertThrows(IllegalArgumentException.class, () -> memTable.createFamily("users"));
+    assertThrows(IllegalArgumentException.class,
+        () -> memTable.lookup(2, createSegment("k"), Long.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class,
+        () -> memTable.put(-1, createSegment("k"), 1, RecordType.VALUE, createSegment("v")));
+  }
+
+  @Test
+  void familiesAreIsolated() {
+    int users = memTable.createFamily("users");
+    int orders = memTable.createFamily("orders");
+    MemorySegment key = createSegment("id:42");
+    memTable.put(users, key, 10, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(orders, key, 11, RecordType.VALUE, createSegment("book"));
+    memTable.put(orders, key, 12, RecordType.TOMBSTONE, createSegment(""));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(users, key, Long.MAX_VALUE, view));
+    assertEquals("Alicia", toString(view.getValue()));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(orders, key, Long.MAX_VALUE));
+    assertTrue(memTable.get(orders, key, 11, view));
+    assertEquals("book", toString(view.getValue()));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(users, key, 9));
+
+    for (int i = 0; i < 100; i++) {
+      memTable.put(users, createSegment("user:" + i), 100 + i, RecordType.VALUE,
+          createSegment("u" + i));
+      memTable.put(orders, createSegment("user:" + i), 200 + i, RecordType.VALUE,
+          createSegment("o" + i));
+    }
+    List<String> values = new ArrayList<>();
+    try (EntryIterator iterator = memTable.newPrefixIterator(orders, createSegment("user:"),
+        Long.MAX_VALUE, false)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        iterator.read(view);
+        values.add(toString(view.getValue()));
+      }
+    }
+    assertEquals(100, values.size());
+    assertTrue(values.stream().allMatch(value -> value.startsWith("o")));
+  }
+
+  @Test
+  void flushSplitsTheOutputPerFamily() {
+    int users = memTable.createFamily("users");
+    memTable.createFamily("empty");
+    int orders = memTable.createFamily("orders");
+    memTable.put(users, createSegment("a"), 1, RecordType.VALUE, createSegment("1"));
+    memTable.put(users, createSegment("b"), 2, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(orders, createSegment("c"), 3, RecordType.VALUE, createSegment("3"));
+    memTable.put(orders, createSegment("d"), 9, RecordType.VALUE, createSegment("9"));
+
+    List<String> output = new ArrayList<>();
+    EntryView view = new EntryView();
+    memTable.flush((familyId, entries) -> {
+      for (; entries.isValid(); entries.next()) {
+        entries.read(view);
+        output.add(familyId + ":" + toString(view.getKey()) + "@" + view.getSN());
+      }
+    }, 5);
+
+    assertEquals(List.of(users + ":b@2", users + ":a@1", orders + ":c@3"), output);
+  }
+
+  @Test
+  void familiesCostOnlyAHeadNode() {
+    int before = hotArena.getArenaSize();
+    for (int i = 0; i < 200; i++) {
+      memTable.createFamily("family-" + i);
+    }
+    int perFamily = (hotArena.getArenaSize() - before) / 200;
+    assertTrue(perFamily <= 16 + (SkipList.MAX_LEVEL + 1) * 4 + 8, "bytes: " + perFamily);
+    assertEquals(0, coldArena.getArenaSize());
+  }
+
+  @Test
+  void closeReleasesTheArenasAfterTheLastIterator() {
+    int users = memTable.createFamily("users");
+    memTable.put(users, createSegment("a"), 1, RecordType.VALUE, createSegment("1"));
+
+    EntryIterator iterator = memTable.newIterator(users, Long.MAX_VALUE, false);
+    memTable.close();
+    assertTrue(memTable.isClosed());
+    assertTrue(coldArena.getMemory().scope().isAlive());
+    assertThrows(MemTableClosedException.class,
+        () -> memTable.newIterator(users, Long.MAX_VALUE, false));
+
+    EntryView view = new EntryView();
+    iterator.seekToFirst();
+    iterator.read(view);
+    assertEquals("1", toString(view.getValue()));
+    iterator.close();
+
+    assertFalse(hotArena.getMemory().scope().isAlive());
+    assertFalse(coldArena.getMemory().scope().isAlive());
+    assertThrows(MemTableClosedException.class,
+        () -> memTable.lookup(users, createSegment("a"), Long.MAX_VALUE));
+    assertThrows(MemTableClosedException.class,
+        () -> memTable.put(users, createSegment("b"), 2, RecordType.VALUE, createSegment("2")));
+  }
+
+  private static String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private static MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
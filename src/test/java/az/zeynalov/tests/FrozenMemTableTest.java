@@ -0,0 +1,172 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.HashIndex;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableManager;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.exception.MemTableFrozenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenMemTableTest {
+
+  private final static int KEYS = 500;
+  private final static long[] READ_POINTS = {0, 1, 700, 1_499, 1_500, 1_501, Long.MAX_VALUE};
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private Arena hotArena;
+  private Arena coldArena;
+  private MemTable memTable;
+
+  @AfterEach
+  void tearDown() {
+    if (memTable != null) {
+      memTable.close();
+    }
+  }
+
+  @Test
+  void frozenMemTableReadsLikeTheSkipList() {
+    newMemTable();
+    // Three versions per key, every seventh key deleted in its newest version
+    for (int i = 0; i < KEYS; i++) {
+      for (int version = 0; version < 3; version++) {
+        long SN = i * 3L + version;
+        byte type = version == 2 && i % 7 == 0 ? RecordType.TOMBSTONE : RecordType.VALUE;
+        memTable.put(key(i), SN, type, createSegment("value-" + SN));
+      }
+    }
+    memTable.deleteRange(key(100), key(120), 1_500);
+
+    List<String> before = readAll();
+    long memoryBefore = memTable.getMemoryUsage();
+    memTable.freeze();
+    memTable.freeze();
+
+    assertTrue(memTable.isFrozen());
+    assertFalse(hotArena.getMemory().scope().isAlive());
+    assertTrue(memTable.getMemoryUsage() < memoryBefore);
+    assertEquals(before, readAll());
+
+    try (EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false)) {
+      iterator.seek(key(250));
+      EntryView view = new EntryView();
+      iterator.read(view);
+      assertEquals("value-752", toString(view.getValue()));
+      iterator.next();
+      iterator.read(view);
+      assertEquals("value-749", toString(view.getValue()));
+    }
+
+    assertThrows(MemTableFrozenException.class,
+        () -> memTable.put(key(1), 2_000, RecordType.VALUE, createSegment("late")));
+    assertThrows(MemTableFrozenException.class,
+        () -> memTable.deleteRange(key(1), key(2), 2_000));
+  }
+
+  @Test
+  void iteratorOpenedBeforeTheFreezeKeepsTheHotArena() {
+    newMemTable();
+    for (int i = 0; i < KEYS; i++) {
+      memTable.put(key(i), i, RecordType.VALUE, createSegment("value-" + i));
+    }
+
+    EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false);
+    iterator.seekToFirst();
+    memTable.freeze();
+    assertTrue(hotArena.getMemory().scope().isAlive());
+
+    int count = 0;
+    for (; iterator.isValid(); iterator.next()) {
+      count++;
+    }
+    assertEquals(KEYS, count);
+    iterator.close();
+    assertFalse(hotArena.getMemory().scope().isAlive());
+    assertTrue(coldArena.getMemory().scope().isAlive());
+  }
+
+  @Test
+  void managerFreezesMemTablesBeforeTheFlush() {
+    List<Boolean> frozen = new ArrayList<>();
+    MemTableManager manager = MemTableManager.create(this::newMemTable,
+        table -> frozen.add(table.isFrozen()), tasks::add);
+    try {
+      manager.put(key(1), 1, RecordType.VALUE, createSegment("value-1"));
+      manager.rotate();
+      runTasks();
+      assertEquals(List.of(true), frozen);
+    } finally {
+      manager.close();
+      memTable = null;
+    }
+  }
+
+  /**
+   * Every key at every read point, with the status and the value that a lookup returns, followed
+   * by what a full scan at the newest read point returns.
+   */
+  private List<String> readAll() {
+    List<String> result = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (int i = 0; i < KEYS; i++) {
+      for (long SN : READ_POINTS) {
+        LookupStatus status = memTable.lookup(key(i), SN, view);
+        result.add(i + "@" + SN + "=" + status
+            + (status == LookupStatus.FOUND ? toString(view.getValue()) : ""));
+      }
+    }
+    try (EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, true)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        iterator.read(view);
+        result.add(view.getSN() + ":" + view.getType());
+      }
+    }
+    return result;
+  }
+
+  private MemTable newMemTable() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().hashIndex(new HashIndex(skipList, 4096)));
+    return memTable;
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static MemorySegment key(int i) {
+    return MemorySegment.ofArray(String.format("key-%05d", i).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,130 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.HashIndex;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashIndexTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private HashIndex hashIndex;
+  private MemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    hashIndex = new HashIndex(skipList, 1 << 16);
+    memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().hashIndex(hashIndex));
+  }
+
+  @AfterEach
+  void tearDown() {
+    hashIndex.close();
+    hotArena.close();
+    coldArena.close();
+  }
+
+  @Test
+  void indexPointsAtTheNewestVersion() {
+    MemorySegment key = createSegment("user:42");
+    memTable.put(key, 120, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(key, 130, RecordType.VALUE, createSegment("Ally"));
+    memTable.put(key, 125, RecordType.VALUE, createSegment("Al"));
+
+    int newest = hashIndex.find(key);
+    assertNotEquals(-1, newest);
+    assertEquals(130, readSN(newest));
+    assertEquals(-1, hashIndex.find(createSegment("user:43")));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("Ally", toString(view.getValue()));
+    // Older snapshots fall back to the skip list
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 126, view));
+    assertEquals("Al", toString(view.getValue()));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key, 100, view));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("user:43"), Long.MAX_VALUE));
+  }
+
+  @Test
+  void overflowMakesMissesFallBackToTheSkipList() {
+    try (HashIndex tiny = new HashIndex(skipList, 4)) {
+      MemTable small = new MemTable(hotArena, coldArena, skipList,
+          new MemTableOptions().hashIndex(tiny));
+      for (int i = 0; i < 10; i++) {
+        small.put(createSegment("key-" + i), 1, RecordType.VALUE, createSegment("v" + i));
+      }
+
+      for (int i = 0; i < 10; i++) {
+        assertEquals(LookupStatus.FOUND, small.lookup(createSegment("key-" + i), Long.MAX_VALUE));
+      }
+      assertEquals(-1, tiny.find(createSegment("key-missing")));
+    }
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentUpdatesKeepTheHighestSN() throws Exception {
+    AtomicLong sequence = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < 5_000; i++) {
+          memTable.put(createSegment("key-" + (i % 500)), sequence.incrementAndGet(), RecordType.VALUE,
+              createSegment("x"));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    for (int k = 0; k < 500; k++) {
+      MemorySegment key = createSegment("key-" + k);
+      int newest = hashIndex.find(key);
+      assertEquals(skipList.get(key, Long.MAX_VALUE), newest);
+    }
+  }
+
+  private long readSN(int nodeOffset) {
+    return coldArena.readLong(hotArena.readInt(nodeOffset + SkipList.COLD_ARENA_POINTER_OFFSET));
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,236 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableManager;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.SnapshotRegistry;
+import az.zeynalov.memtable.WriteController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCompactionTest {
+
+  private final static int VALUE_SIZE = 256 << 10;
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<MemTable> memTables = new ArrayList<>();
+  private final List<SkipList> skipLists = new ArrayList<>();
+  private MemTableManager manager;
+
+  @AfterEach
+  void tearDown() {
+    if (manager != null) {
+      manager.close();
+    }
+    for (MemTable memTable : memTables) {
+      memTable.close();
+    }
+  }
+
+  @Test
+  void versionsNoSnapshotSeesAreDropped() {
+    MemTable source = newMemTable();
+    source.put(createSegment("a"), 1, RecordType.VALUE, createSegment("a1"));
+    source.put(createSegment("a"), 2, RecordType.VALUE, createSegment("a2"));
+    source.put(createSegment("a"), 3, RecordType.VALUE, createSegment("a3"));
+    source.put(createSegment("b"), 4, RecordType.VALUE, createSegment("b4"));
+    source.put(createSegment("b"), 5, RecordType.TOMBSTONE, createSegment(""));
+
+    MemTable target = newMemTable();
+    assertEquals(3, source.compactInto(target, new long[]{2}));
+    assertEquals(List.of(5L, 3L, 2L), readSNs(skipLists.get(1)));
+    assertEquals(5, target.getPublishedSN());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, target.lookup(createSegment("a"), 2, view));
+    assertEquals("a2", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, target.lookup(createSegment("a"), Long.MAX_VALUE, view));
+    assertEquals("a3", toString(view.getValue()));
+    assertEquals(LookupStatus.DELETED, target.lookup(createSegment("b"), Long.MAX_VALUE, view));
+    assertThrows(IllegalArgumentException.class,
+        () -> source.compactInto(target, new long[0]));
+  }
+
+  @Test
+  void mergeOperandsKeepTheVersionsBelowThemUpToTheBase() {
+    MemTable source = newMemTable();
+    source.put(createSegment("k"), 1, RecordType.VALUE, createSegment("old"));
+    source.put(createSegment("k"), 2, RecordType.VALUE, createSegment("base"));
+    source.put(createSegment("k"), 3, RecordType.MERGE, createSegment("+1"));
+    source.put(createSegment("k"), 4, RecordType.MERGE, createSegment("+2"));
+
+    MemTable target = newMemTable();
+    assertEquals(3, source.compactInto(target, new long[0]));
+    assertEquals(List.of(4L, 3L, 2L), readSNs(skipLists.get(1)));
+  }
+
+  @Test
+  void rangeTombstonesAreCarriedOver() {
+    MemTable source = newMemTable();
+    source.put(createSegment("b"), 1, RecordType.VALUE, createSegment("b1"));
+    source.deleteRange(createSegment("a"), createSegment("c"), 2);
+
+    MemTable target = newMemTable();
+    source.compactInto(target, new long[0]);
+    assertEquals(1, target.getRangeTombstones().size());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.DELETED, target.lookup(createSegment("b"), Long.MAX_VALUE, view));
+    assertEquals(LookupStatus.FOUND, target.lookup(createSegment("b"), 1, view));
+  }
+
+  @Test
+  void managerMergesSmallCompactedMemTablesInsteadOfFlushing() {
+    List<MemTable> flushed = new ArrayList<>();
+    SnapshotRegistry snapshots = new SnapshotRegistry();
+    manager = MemTableManager.create(this::newMemTable, flushed::add, tasks::add, 0.1);
+    manager.enableInMemoryCompaction(snapshots);
+    runTasks();
+
+    long SN = putUntilRotation("hot", false, 0);
+    long snapshot = snapshots.register(SN - 1);
+    runTasks();
+    assertTrue(flushed.isEmpty());
+    assertEquals(1, manager.getImmutableMemTables().size());
+
+    SN = putUntilRotation("hot", false, SN);
+    runTasks();
+    // Both frozen memtables became one with the newest version and the one of the snapshot
+    assertTrue(flushed.isEmpty());
+    assertEquals(1, manager.getImmutableMemTables().size());
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("hot"), snapshot, view));
+    assertEquals(snapshot, readSN(view));
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("hot"), Long.MAX_VALUE, view));
+    assertEquals(SN - 1, readSN(view));
+
+    // Distinct keys fill more than half of the threshold, so the result is flushed
+    putUntilRotation("key-", true, SN);
+    runTasks();
+    assertEquals(1, flushed.size());
+    assertTrue(manager.getImmutableMemTables().isEmpty());
+    assertEquals(LookupStatus.NOT_FOUND,
+        manager.lookup(createSegment("hot"), Long.MAX_VALUE, view));
+  }
+
+  @Test
+  void deferredMemTablesAreMergedWhereverTheyAre() {
+    List<MemTable> flushed = new ArrayList<>();
+    manager = MemTableManager.create(this::newMemTable, flushed::add, tasks::add, 0.1);
+    manager.enableInMemoryCompaction(new SnapshotRegistry());
+    runTasks();
+
+    long SN = putUntilRotation("hot", false, 0);
+    putUntilRotation("hot", false, SN);
+    assertEquals(2, manager.getImmutableMemTables().size());
+
+    // The newer memtable is compacted first, as it may be on a second flush thread, and the
+    // deferred result ends up in front of the older frozen one
+    List<Runnable> pending = new ArrayList<>(tasks);
+    tasks.clear();
+    pending.get(2).run();
+    pending.remove(2);
+    pending.forEach(Runnable::run);
+
+    assertTrue(flushed.isEmpty());
+    assertEquals(1, manager.getImmutableMemTables().size());
+  }
+
+  @Test
+  void explicitRotationAndCloseFlushDeferredMemTables() {
+    List<MemTable> flushed = new ArrayList<>();
+    WriteController controller = new WriteController()
+        .limits(1, Long.MAX_VALUE, 1, Long.MAX_VALUE);
+    manager = MemTableManager.create(this::newMemTable, flushed::add, tasks::add, 0.1, null,
+        controller);
+    manager.enableInMemoryCompaction(new SnapshotRegistry());
+    runTasks();
+
+    long SN = putUntilRotation("hot", false, 0);
+    runTasks();
+    assertTrue(flushed.isEmpty());
+    // Waiting for the next frozen memtable is not a flush backlog
+    assertEquals(WriteController.State.NORMAL, controller.getState(manager));
+
+    manager.put(createSegment("cold"), SN++, RecordType.VALUE, createSegment("c"));
+    manager.rotate();
+    runTasks();
+    assertEquals(1, flushed.size());
+    assertTrue(manager.getImmutableMemTables().isEmpty());
+
+    putUntilRotation("hot", false, SN);
+    runTasks();
+    assertEquals(1, flushed.size());
+    manager.close();
+    assertEquals(2, flushed.size());
+  }
+
+  /**
+   * Writes 256 KB values, to one key or to distinct keys starting with the name, until the active
+   * memtable rotates, and returns the next SN.
+   */
+  private long putUntilRotation(String name, boolean distinct, long SN) {
+    int pending = tasks.size();
+    while (tasks.size() == pending) {
+      MemorySegment value = MemorySegment.ofArray(new byte[VALUE_SIZE]);
+      value.set(ValueLayout.JAVA_LONG_UNALIGNED, 0, SN);
+      manager.put(createSegment(distinct ? name + SN : name), SN, RecordType.VALUE, value);
+      SN++;
+    }
+    return SN;
+  }
+
+  private static long readSN(EntryView view) {
+    return view.getValue().get(ValueLayout.JAVA_LONG_UNALIGNED, 0);
+  }
+
+  private List<Long> readSNs(SkipList skipList) {
+    List<Long> SNs = new ArrayList<>();
+    EntryView view = new EntryView();
+    skipList.forEach(node -> {
+      skipList.readEntry(node, view);
+      SNs.add(view.getSN());
+    });
+    return SNs;
+  }
+
+  private MemTable newMemTable() {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    MemTable memTable = new MemTable(hotArena, coldArena, skipList);
+    skipLists.add(skipList);
+    memTables.add(memTable);
+    return memTable;
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,269 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.MergeOperator;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InPlaceUpdateTest {
+
+  private static final ValueLayout.OfLong BE_LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private MemTable memTable;
+  private AtomicLong oldestSnapshot;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    oldestSnapshot = new AtomicLong(Long.MAX_VALUE);
+    memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().inPlaceUpdates(oldestSnapshot::get));
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void overwritesDoNotGrowTheArenas() {
+    MemorySegment key = createSegment("status:00042");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("running!"));
+    int hotSize = hotArena.getArenaSize();
+    int coldSize = coldArena.getArenaSize();
+
+    for (int sn = 2; sn <= 10_000; sn++) {
+      memTable.put(key, sn, RecordType.VALUE,
+          createSegment(sn % 2 == 0 ? "stopped!" : "running!"));
+    }
+    memTable.put(key, 10_001, RecordType.VALUE, createSegment("finished"));
+
+    assertEquals(hotSize, hotArena.getArenaSize());
+    assertEquals(coldSize, coldArena.getArenaSize());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("finished", toString(view.getValue()));
+    assertEquals(10_001, view.getSN());
+  }
+
+  @Test
+  void valuesOtherThanWordsAppend() {
+    MemorySegment key = createSegment("status:00042");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("running!"));
+
+    int coldSize = coldArena.getArenaSize();
+    memTable.put(key, 2, RecordType.VALUE, createSegment("idle"));
+    assertTrue(coldArena.getArenaSize() > coldSize, "a smaller value needs a new version");
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("idle", toString(view.getValue()));
+  }
+
+  @Test
+  void wordValuesAreAlignedForEveryKeyLength() {
+    EntryView view = new EntryView();
+    for (int keySize = 1; keySize <= 16; keySize++) {
+      MemorySegment key = createSegment("k".repeat(keySize));
+      memTable.put(key, 1, RecordType.VALUE, createSegment("running!"));
+      int coldSize = coldArena.getArenaSize();
+      memTable.put(key, 2, RecordType.VALUE, createSegment("stopped!"));
+      assertEquals(coldSize, coldArena.getArenaSize(), "key size " + keySize);
+
+      assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+      assertEquals("stopped!", toString(view.getValue()));
+      assertEquals(keySize, view.getKey().byteSize());
+      assertEquals(0, (view.getValue().address() & 7), "key size " + keySize);
+    }
+  }
+
+  @Test
+  void putOverATombstoneAppends() {
+    MemorySegment key = createSegment("status:00042");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("running!"));
+    memTable.put(key, 2, RecordType.TOMBSTONE, createSegment("stopped!"));
+    memTable.put(key, 3, RecordType.VALUE, createSegment("restart!"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals(RecordType.VALUE, view.getType());
+    assertEquals("restart!", toString(view.getValue()));
+  }
+
+  @Test
+  void putOverAMergeOperandAppends() {
+    MergeOperator concat = (key, older, newer) -> {
+      byte[] left = older.toArray(ValueLayout.JAVA_BYTE);
+      byte[] right = newer.toArray(ValueLayout.JAVA_BYTE);
+      byte[] result = new byte[left.length + right.length];
+      System.arraycopy(left, 0, result, 0, left.length);
+      System.arraycopy(right, 0, result, left.length, right.length);
+      return MemorySegment.ofArray(result);
+    };
+    MemTable merging = new MemTable(hotArena, coldArena, skipList, new MemTableOptions()
+        .inPlaceUpdates(oldestSnapshot::get).mergeOperator(concat));
+
+    MemorySegment key = createSegment("status:00042");
+    merging.put(key, 1, RecordType.VALUE, createSegment("base"));
+    merging.put(key, 2, RecordType.MERGE, createSegment("operand"));
+    merging.put(key, 3, RecordType.VALUE, createSegment("replaced"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, merging.lookup(key, Long.MAX_VALUE, view));
+    assertEquals(RecordType.VALUE, view.getType());
+    assertEquals("replaced", toString(view.getValue()));
+  }
+
+  @Test
+  void largerValuesSnapshotsAndTombstonesAppend() {
+    MemorySegment key = createSegment("status:42");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("idle"));
+
+    int coldSize = coldArena.getArenaSize();
+    memTable.put(key, 2, RecordType.VALUE, createSegment("running"));
+    assertTrue(coldArena.getArenaSize() > coldSize, "a larger value needs a new version");
+
+    oldestSnapshot.set(2);
+    memTable.put(key, 3, RecordType.VALUE, createSegment("done"));
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 2, view));
+    assertEquals("running", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 3, view));
+    assertEquals("done", toString(view.getValue()));
+
+    oldestSnapshot.set(Long.MAX_VALUE);
+    memTable.put(key, 4, RecordType.TOMBSTONE, createSegment(""));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, 4));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 3));
+  }
+
+  @Test
+  void addAndGetUpdatesTheCounterInPlace() {
+    MemorySegment key = createSegment("counter");
+    assertEquals(5, memTable.addAndGet(key, 5, 1));
+    int coldSize = coldArena.getArenaSize();
+
+    for (int sn = 2; sn <= 1_000; sn++) {
+      memTable.addAndGet(key, 1, sn);
+    }
+    assertEquals(coldSize, coldArena.getArenaSize());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals(1_004, view.getValue().get(BE_LONG, 0));
+
+    // A snapshot that sees the current value forces a new version
+    oldestSnapshot.set(1_000);
+    assertEquals(1_014, memTable.addAndGet(key, 10, 1_001));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 1_000, view));
+    assertEquals(1_004, view.getValue().get(BE_LONG, 0));
+
+    memTable.put(createSegment("name"), 1, RecordType.VALUE, createSegment("abc"));
+    assertThrows(IllegalArgumentException.class,
+        () -> memTable.addAndGet(createSegment("name"), 1, 2));
+  }
+
+  @Test
+  void countersWrittenByABatchAreUpdatedInPlace() {
+    MemorySegment zero = MemorySegment.ofArray(new byte[Long.BYTES]);
+    memTable.write(new WriteBatch()
+        .put(createSegment("hits"), RecordType.VALUE, zero)
+        .put(createSegment("views"), RecordType.VALUE, zero), 1);
+    int coldSize = coldArena.getArenaSize();
+
+    assertEquals(3, memTable.addAndGet(createSegment("hits"), 3, 3));
+    assertEquals(4, memTable.addAndGet(createSegment("views"), 4, 4));
+    assertEquals(coldSize, coldArena.getArenaSize());
+  }
+
+  @Test
+  void addAndGetRequiresInPlaceUpdates() {
+    MemTable plain = new MemTable(hotArena, coldArena, skipList);
+    assertThrows(IllegalStateException.class, () -> plain.addAndGet(createSegment("c"), 1, 1));
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentIncrementsAreNotLost() throws Exception {
+    int threads = 8;
+    int increments = 10_000;
+    // Keys of every length modulo 8, so that the values need every amount of padding
+    List<MemorySegment> keys = List.of(createSegment("a"), createSegment("ct"),
+        createSegment("ctr"), createSegment("ctr1"), createSegment("ctr12"), createSegment("ctr123"),
+        createSegment("ctr1234"), createSegment("ctr12345"));
+    AtomicLong sequence = new AtomicLong();
+    CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(pool.submit(() -> {
+        barrier.await();
+        for (int i = 0; i < increments; i++) {
+          memTable.addAndGet(keys.get(i % keys.size()), 1, sequence.incrementAndGet());
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    EntryView view = new EntryView();
+    long total = 0;
+    for (MemorySegment key : keys) {
+      assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+      total += view.getValue().get(BE_LONG, 0);
+    }
+    assertEquals((long) threads * increments, total);
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,202 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.EpochReclaimer;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.exception.MemTableClosedException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemTableCloseTest {
+
+  private final static int KEYS = 2_000;
+
+  @Test
+  @SuppressWarnings("try")
+  void pinnedReaderKeepsTheArenasAlive() {
+    Table table = newTable(0);
+    EntryView view = new EntryView();
+
+    try (EpochReclaimer.Pin pin = table.memTable.pin()) {
+      table.memTable.close();
+      assertTrue(table.memTable.isClosed());
+      assertTrue(table.isAlive());
+      // Pinned before the close, so the memtable is still readable
+      assertEquals(LookupStatus.FOUND,
+          table.memTable.lookup(createSegment("key-7"), Long.MAX_VALUE, view));
+      assertEquals("round-0-7", toString(view.getValue()));
+    }
+
+    assertFalse(table.isAlive());
+    assertThrows(MemTableClosedException.class,
+        () -> table.memTable.lookup(createSegment("key-7"), Long.MAX_VALUE, view));
+    assertThrows(MemTableClosedException.class,
+        () -> table.memTable.put(createSegment("k"), 1, RecordType.VALUE, createSegment("v")));
+  }
+
+  @Test
+  void openIteratorDefersTheRelease() {
+    Table table = newTable(0);
+    EntryIterator iterator = table.memTable.newIterator(Long.MAX_VALUE, false);
+
+    table.memTable.close();
+    assertTrue(table.isAlive());
+    assertThrows(MemTableClosedException.class,
+        () -> table.memTable.newIterator(Long.MAX_VALUE, false));
+    assertEquals(KEYS, scan(iterator, 0));
+
+    iterator.close();
+    assertFalse(table.isAlive());
+    // Closing twice neither releases nor counts twice
+    iterator.close();
+    table.memTable.close();
+  }
+
+  @Test
+  void closeWithoutReadersReleasesAtOnce() {
+    Table table = newTable(0);
+    table.memTable.close();
+    assertFalse(table.isAlive());
+  }
+
+  @Test
+  @SuppressWarnings("try")
+  @Tag("concurrency")
+  void memTablesClosedUnderConcurrentScansAreReleasedSafely() throws Exception {
+    final int rounds = 24;
+    final int readers = 4;
+    AtomicReference<Table> current = new AtomicReference<>(newTable(0));
+    List<Table> retired = new CopyOnWriteArrayList<>();
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicLong pinnedLookups = new AtomicLong();
+    AtomicLong iteratorScans = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+
+    Future<?> closer = pool.submit(() -> {
+      try {
+        for (int round = 1; round <= rounds; round++) {
+          Table old = current.getAndSet(newTable(round));
+          retired.add(old);
+          old.memTable.close();
+        }
+      } finally {
+        done.set(true);
+      }
+    });
+
+    Future<?>[] scanners = new Future<?>[readers];
+    for (int r = 0; r < readers; r++) {
+      scanners[r] = pool.submit(() -> {
+        EntryView view = new EntryView();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!done.get()) {
+          if (random.nextBoolean()) {
+            // Pinned before the table is read, so the lookups never hit a closed memtable
+            try (EpochReclaimer.Pin pin = EpochReclaimer.shared().enter()) {
+              Table table = current.get();
+              for (int i = 0; i < 64; i++) {
+                int k = random.nextInt(KEYS);
+                assertEquals(LookupStatus.FOUND,
+                    table.memTable.lookup(createSegment("key-" + k), Long.MAX_VALUE, view));
+                assertEquals("round-" + table.round + "-" + k, toString(view.getValue()));
+              }
+              pinnedLookups.incrementAndGet();
+            }
+          } else {
+            Table table = current.get();
+            EntryIterator iterator;
+            try {
+              iterator = table.memTable.newIterator(Long.MAX_VALUE, false);
+            } catch (MemTableClosedException e) {
+              continue;
+            }
+            // The memtable may be closed at any point of the scan
+            try (iterator) {
+              assertEquals(KEYS, scan(iterator, table.round));
+            }
+            iteratorScans.incrementAndGet();
+          }
+        }
+      });
+    }
+
+    closer.get(120, TimeUnit.SECONDS);
+    for (Future<?> scanner : scanners) {
+      scanner.get(120, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    assertTrue(pinnedLookups.get() > 0);
+    assertTrue(iteratorScans.get() > 0);
+    EpochReclaimer.shared().reclaim();
+    for (Table table : retired) {
+      assertFalse(table.isAlive());
+    }
+    Table last = current.get();
+    assertTrue(last.isAlive());
+    last.memTable.close();
+    assertFalse(last.isAlive());
+  }
+
+  private int scan(EntryIterator iterator, int round) {
+    EntryView view = new EntryView();
+    int count = 0;
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      String key = toString(view.getKey());
+      assertEquals("round-" + round + "-" + key.substring("key-".length()),
+          toString(view.getValue()));
+      count++;
+    }
+    return count;
+  }
+
+  private Table newTable(int round) {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    MemTable memTable = new MemTable(hotArena, coldArena, skipList);
+    for (int i = 0; i < KEYS; i++) {
+      memTable.put(createSegment("key-" + i), i, RecordType.VALUE,
+          createSegment("round-" + round + "-" + i));
+    }
+    return new Table(round, memTable, hotArena, coldArena);
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private record Table(int round, MemTable memTable, Arena hotArena, Arena coldArena) {
+
+    boolean isAlive() {
+      return hotArena.getMemory().scope().isAlive() || coldArena.getMemory().scope().isAlive();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTableIterator;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+import static az.zeynalov.memtable.SkipList.COLD_ARENA_POINTER_OFFSET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemTableIteratorTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private java.lang.foreign.Arena testScope;
+
+  private final static int KEY_OFFSET = 8 + 4 + 4 + 4;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void skipToVisitsSortedTargetsInOrder() {
+    int total = 20_000;
+    for (int i = 0; i < total; i += 2) {
+      skipList.insert(createKey(i), i, (byte) 1, createKey(i));
+    }
+
+    // Iteration order is descending, so targets go from the largest key down
+    MemTableIterator iterator = new MemTableIterator(skipList);
+    for (int i = total - 1; i >= 0; i -= 7) {
+      boolean found = iterator.skipTo(createKey(i));
+      assertEquals(i % 2 == 0, found, "key " + i);
+      assertTrue(iterator.isValid() || i == 0);
+      if (iterator.isValid()) {
+        int expected = i % 2 == 0 ? i : i - 1;
+        assertEquals(format(expected), readKey(iterator.getCurrent()));
+      }
+    }
+  }
+
+  @Test
+  void skipToMatchesSeekForEveryKey() {
+    for (int i = 0; i < 5_000; i++) {
+      skipList.insert(createKey(i), 1, (byte) 1, createKey(i));
+    }
+
+    MemTableIterator forward = new MemTableIterator(skipList);
+    MemTableIterator seeking = new MemTableIterator(skipList);
+    for (int i = 4_999; i >= 0; i--) {
+      assertTrue(forward.skipTo(createKey(i)));
+      seeking.seek(createKey(i));
+      assertEquals(seeking.getCurrent(), forward.getCurrent());
+    }
+  }
+
+  @Test
+  void skipToRespectsSnapshotAndNeverMovesBackwards() {
+    MemorySegment key = createKey(5);
+    skipList.insert(key, 10, (byte) 1, createKey(10));
+    skipList.insert(key, 20, (byte) 1, createKey(20));
+    skipList.insert(createKey(4), 1, (byte) 1, createKey(1));
+
+    MemTableIterator iterator = new MemTableIterator(skipList);
+    assertTrue(iterator.skipTo(key, 15));
+    assertEquals(10, readSN(iterator.getCurrent()));
+
+    int current = iterator.getCurrent();
+    assertTrue(iterator.skipTo(key, 25));
+    assertEquals(current, iterator.getCurrent());
+
+    assertFalse(iterator.skipTo(key, 5));
+    assertEquals(format(4), readKey(iterator.getCurrent()));
+  }
+
+  @Test
+  void skipToAfterFailedSeekContinuesFromThePath() {
+    for (int i = 0; i < 100; i += 10) {
+      skipList.insert(createKey(i), 1, (byte) 1, createKey(i));
+    }
+
+    MemTableIterator iterator = new MemTableIterator(skipList);
+    iterator.seek(createKey(55));
+    assertFalse(iterator.isValid());
+
+    assertTrue(iterator.skipTo(createKey(30)));
+    assertEquals(format(30), readKey(iterator.getCurrent()));
+
+    assertFalse(iterator.skipTo(createKey(-1)));
+    assertFalse(iterator.isValid());
+  }
+
+  private String format(int i) {
+    return "key-" + String.format("%06d", i);
+  }
+
+  private MemorySegment createKey(int i) {
+    byte[] keyBytes = format(i).getBytes(StandardCharsets.UTF_8);
+    MemorySegment keySegment = testScope.allocate(keyBytes.length);
+    keySegment.copyFrom(MemorySegment.ofArray(keyBytes));
+    return keySegment;
+  }
+
+  private String readKey(int nodeOffset) {
+    int coldOffset = hotArena.readInt(nodeOffset + COLD_ARENA_POINTER_OFFSET);
+    int keyLength = coldArena.readInt(coldOffset + SkipList.KEY_SIZE_OFFSET);
+    MemorySegment key = coldArena.readBytes(coldOffset + KEY_OFFSET, keyLength);
+    return new String(key.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private long readSN(int nodeOffset) {
+    return coldArena.readLong(hotArena.readInt(nodeOffset + COLD_ARENA_POINTER_OFFSET));
+  }
+}
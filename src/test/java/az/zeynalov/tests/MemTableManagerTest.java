@@ -0,0 +1,287 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableManager;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.MergeOperator;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteController;
+import az.zeynalov.memtable.exception.ArenaCapacityException;
+import az.zeynalov.memtable.exception.MemTableFlushException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemTableManagerTest {
+
+  // Appends the newer operand to the older value, separated by a comma
+  private static final MergeOperator LIST_APPEND = (key, older, newer) -> {
+    byte[] left = older.toArray(ValueLayout.JAVA_BYTE);
+    byte[] right = newer.toArray(ValueLayout.JAVA_BYTE);
+    byte[] result = new byte[left.length + 1 + right.length];
+    System.arraycopy(left, 0, result, 0, left.length);
+    result[left.length] = ',';
+    System.arraycopy(right, 0, result, left.length + 1, right.length);
+    return MemorySegment.ofArray(result);
+  };
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private MemTableManager manager;
+
+  @AfterEach
+  void tearDown() {
+    if (manager != null) {
+      manager.close();
+    }
+  }
+
+  @Test
+  void rotatesBeforeTheArenaIsFull() {
+    List<MemTable> flushed = new ArrayList<>();
+    manager = MemTableManager.create(this::newMemTable, flushed::add, tasks::add, 0.05);
+    MemTable first = manager.getActive();
+
+    MemorySegment value = MemorySegment.ofArray(new byte[512 << 10]);
+    for (int i = 0; i < 10; i++) {
+      manager.put(createSegment("key-" + i), i, RecordType.VALUE, value);
+    }
+
+    assertNotSame(first, manager.getActive());
+    assertEquals(first, manager.getImmutableMemTables().getLast());
+    // Frozen memtables stay readable until they are flushed
+    EntryView view = new EntryView();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("key-" + i), 100, view));
+      assertEquals(i, view.getSN());
+    }
+
+    runTasks();
+    assertTrue(flushed.contains(first));
+    assertTrue(manager.getImmutableMemTables().isEmpty());
+    assertEquals(LookupStatus.NOT_FOUND, manager.lookup(createSegment("key-0"), 100, view));
+  }
+
+  @Test
+  void writeThatDoesNotFitGoesToTheNextMemTable() {
+    manager = MemTableManager.create(this::newMemTable, memTable -> { }, tasks::add, 1.0);
+    MemorySegment value = MemorySegment.ofArray(new byte[40 << 20]);
+
+    manager.put(createSegment("a"), 1, RecordType.VALUE, value);
+    manager.put(createSegment("b"), 2, RecordType.VALUE, value);
+
+    assertEquals(1, manager.getImmutableMemTables().size());
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("a"), 2, new EntryView()));
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("b"), 2, new EntryView()));
+
+    MemorySegment tooLarge = MemorySegment.ofArray(new byte[65 << 20]);
+    assertThrows(ArenaCapacityException.class,
+        () -> manager.put(createSegment("c"), 3, RecordType.VALUE, tooLarge));
+  }
+
+  @Test
+  void newerVersionInAnOlderMemTableWins() {
+    manager = MemTableManager.create(this::newMemTable, memTable -> { }, tasks::add);
+    manager.put(createSegment("k"), 10, RecordType.VALUE, createSegment("v10"));
+    MemTable old = manager.getActive();
+    manager.rotate();
+    manager.put(createSegment("k"), 15, RecordType.VALUE, createSegment("v15"));
+    // A writer that raced the rotation lands in the old memtable with a higher SN
+    old.put(createSegment("k"), 20, RecordType.VALUE, createSegment("v20"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 100, view));
+    assertEquals("v20", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 16, view));
+    assertEquals("v15", toString(view.getValue()));
+
+    manager.deleteRange(createSegment("a"), createSegment("z"), 30);
+    assertEquals(LookupStatus.DELETED, manager.lookup(createSegment("k"), 100, view));
+  }
+
+  @Test
+  void mergeChainsAreFoldedAcrossRotations() {
+    manager = MemTableManager.create(
+        () -> newMemTable(new MemTableOptions().mergeOperator(LIST_APPEND)), memTable -> { },
+        tasks::add);
+    manager.put(createSegment("k"), 1, RecordType.VALUE, createSegment("a"));
+    manager.put(createSegment("k"), 2, RecordType.MERGE, createSegment("b"));
+    manager.put(createSegment("deleted"), 3, RecordType.TOMBSTONE, createSegment(""));
+    manager.put(createSegment("operands"), 4, RecordType.MERGE, createSegment("p"));
+    manager.rotate();
+    manager.put(createSegment("k"), 5, RecordType.MERGE, createSegment("c"));
+    manager.put(createSegment("deleted"), 6, RecordType.MERGE, createSegment("x"));
+    manager.rotate();
+    manager.put(createSegment("k"), 7, RecordType.MERGE, createSegment("d"));
+    manager.put(createSegment("operands"), 8, RecordType.MERGE, createSegment("q"));
+    assertEquals(2, manager.getImmutableMemTables().size());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 100, view));
+    assertEquals("a,b,c,d", toString(view.getValue()));
+    assertEquals(7, view.getSN());
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 6, view));
+    assertEquals("a,b,c", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 2, view));
+    assertEquals("a,b", toString(view.getValue()));
+    // The chain stops at a tombstone in an older memtable
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("deleted"), 100, view));
+    assertEquals("x", toString(view.getValue()));
+    // and at the oldest memtable when there is no base value
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("operands"), 100, view));
+    assertEquals("p,q", toString(view.getValue()));
+
+    // A range tombstone in between cuts the chain off
+    manager.deleteRange(createSegment("k"), createSegment("l"), 9);
+    manager.put(createSegment("k"), 10, RecordType.MERGE, createSegment("e"));
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 100, view));
+    assertEquals("e", toString(view.getValue()));
+  }
+
+  @Test
+  void failedFlushFailsTheManager() {
+    IllegalStateException failure = new IllegalStateException("disk full");
+    WriteController controller = new WriteController()
+        .limits(1, Long.MAX_VALUE, 1, Long.MAX_VALUE);
+    manager = MemTableManager.create(this::newMemTable, memTable -> {
+      throw failure;
+    }, tasks::add, 0.9, null, controller);
+
+    manager.put(createSegment("a"), 1, RecordType.VALUE, createSegment("value-a"));
+    manager.rotate();
+    assertEquals(WriteController.State.STOP, controller.getState(manager));
+    runTasks();
+
+    assertSame(failure, manager.getFlushFailure());
+    // Stalled writers are released and get the failure instead of waiting for a flush
+    assertEquals(WriteController.State.NORMAL, controller.getState(manager));
+    MemTableFlushException thrown = assertThrows(MemTableFlushException.class,
+        () -> manager.put(createSegment("b"), 2, RecordType.VALUE, createSegment("value-b")));
+    assertSame(failure, thrown.getCause());
+
+    // The memtable that failed to flush stays readable
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("a"), 1, view));
+    assertEquals("value-a", toString(view.getValue()));
+    assertEquals(1, manager.getImmutableMemTables().size());
+  }
+
+  @Test
+  void flushedMemTablesAreDroppedOldestFirst() {
+    List<MemTable> flushed = new ArrayList<>();
+    manager = MemTableManager.create(this::newMemTable, flushed::add, tasks::add);
+    manager.put(createSegment("k"), 1, RecordType.VALUE, createSegment("v1"));
+    manager.rotate();
+    manager.put(createSegment("k"), 2, RecordType.VALUE, createSegment("v2"));
+    manager.rotate();
+    assertEquals(2, manager.getImmutableMemTables().size());
+
+    // Run the flush of the newer frozen memtable first
+    List<Runnable> pending = new ArrayList<>(tasks);
+    tasks.clear();
+    Runnable olderFlush = pending.get(1);
+    Runnable newerFlush = pending.get(3);
+    newerFlush.run();
+    assertEquals(2, manager.getImmutableMemTables().size());
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, manager.lookup(createSegment("k"), 10, view));
+    assertEquals("v2", toString(view.getValue()));
+
+    olderFlush.run();
+    assertEquals(2, flushed.size());
+    assertTrue(manager.getImmutableMemTables().isEmpty());
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentWritersNeverSeeTheCapacityException() throws Exception {
+    ExecutorService flushPool = Executors.newFixedThreadPool(2);
+    AtomicLong flushedEntries = new AtomicLong();
+    manager = MemTableManager.create(this::newMemTable, memTable -> {
+      EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, true);
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        flushedEntries.incrementAndGet();
+      }
+    }, flushPool, 0.9);
+
+    final int threads = 8;
+    final int perThread = 20_000;
+    AtomicLong sequence = new AtomicLong();
+    MemorySegment value = MemorySegment.ofArray(new byte[1024]);
+    ExecutorService writers = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(writers.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          manager.put(createSegment("t" + thread + "-" + i), sequence.incrementAndGet(),
+              RecordType.VALUE, value);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    writers.shutdown();
+    flushPool.shutdown();
+    assertTrue(flushPool.awaitTermination(60, TimeUnit.SECONDS));
+
+    long resident = 0;
+    List<MemTable> memTables = new ArrayList<>(manager.getImmutableMemTables());
+    memTables.add(manager.getActive());
+    for (MemTable memTable : memTables) {
+      EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, true);
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        resident++;
+      }
+    }
+    assertTrue(flushedEntries.get() > 0);
+    assertEquals((long) threads * perThread, flushedEntries.get() + resident);
+  }
+
+  private MemTable newMemTable() {
+    return newMemTable(new MemTableOptions());
+  }
+
+  private MemTable newMemTable(MemTableOptions options) {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    return new MemTable(hotArena, coldArena, skipList, options);
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,175 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.BloomFilter;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableIterator;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemTableTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private MemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList);
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void viewPointsAtTheVisibleVersionWithoutCopying() {
+    memTable.put(createSegment("user:42"), 120, (byte) 1, createSegment("Alicia"));
+    memTable.put(createSegment("user:42"), 122, (byte) 1, createSegment("Al"));
+
+    EntryView view = new EntryView();
+    assertTrue(memTable.get(createSegment("user:42"), 121, view));
+    assertEquals(120, view.getSN());
+    assertEquals(1, view.getType());
+    assertEquals("user:42", toString(view.getKey()));
+    assertEquals("Alicia", toString(view.getValue()));
+    long valueAddress = view.getValue().address() - coldArena.getMemory().address();
+    assertTrue(valueAddress >= 0 && valueAddress < coldArena.getArenaSize(),
+        "value must be a slice of the cold arena");
+
+    assertTrue(memTable.get(createSegment("user:42"), Long.MAX_VALUE, view));
+    assertEquals("Al", toString(view.getValue()));
+
+    assertFalse(memTable.get(createSegment("user:42"), 100, view));
+    assertFalse(memTable.get(createSegment("user:7"), Long.MAX_VALUE, view));
+  }
+
+  @Test
+  void viewCopiesIntoCallerBuffers() {
+    byte[] large = new byte[64 * 1024];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+    memTable.put(createSegment("blob"), 1, (byte) 1, MemorySegment.ofArray(large));
+
+    MemTableIterator iterator = new MemTableIterator(skipList);
+    iterator.seek(createSegment("blob"));
+    EntryView view = new EntryView();
+    assertTrue(memTable.get(iterator, view));
+
+    byte[] buffer = new byte[large.length + 16];
+    assertEquals(large.length, view.copyValue(buffer, 16));
+    for (int i = 0; i < large.length; i++) {
+      assertEquals(large[i], buffer[i + 16]);
+    }
+
+    MemorySegment keyBuffer = testScope.allocate(4);
+    view.copyKey(keyBuffer, 0);
+    assertEquals("blob", toString(keyBuffer));
+
+    iterator.seek(createSegment("missing"));
+    assertFalse(memTable.get(iterator, view));
+  }
+
+  @Test
+  void lookupTellsTombstonesFromValuesAndMisses() {
+    MemorySegment key = createSegment("user:42");
+    memTable.put(key, 120, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(key, 130, RecordType.TOMBSTONE, createSegment(""));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 125, view));
+    assertEquals("Alicia", toString(view.getValue()));
+
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals(130, view.getSN());
+
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key, 119, view));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("user:7"), 200, view));
+
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, 130));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 129));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("user:420"), 200));
+  }
+
+  @Test
+  void prefixIteratorStaysInsideThePrefix() {
+    for (String key : new String[]{"t1|a", "t2|a", "t2|b", "t2|c", "t2", "t3|a", "t2|zz"}) {
+      memTable.put(createSegment(key), 1, RecordType.VALUE, createSegment(key));
+    }
+    memTable.put(createSegment("t2|b"), 2, RecordType.TOMBSTONE, createSegment(""));
+
+    assertEquals(List.of("t2|zz", "t2|c", "t2|a"),
+        keys(memTable.newPrefixIterator(createSegment("t2|"), 10, false)));
+    assertEquals(List.of("t2|zz", "t2|c", "t2|b", "t2|a"),
+        keys(memTable.newPrefixIterator(createSegment("t2|"), 1, false)));
+    assertEquals(List.of(), keys(memTable.newPrefixIterator(createSegment("t4"), 10, false)));
+  }
+
+  @Test
+  void bloomFilterShortCircuitsMisses() {
+    try (BloomFilter filter = new BloomFilter(1 << 16, true, 3)) {
+      MemTable filtered = new MemTable(hotArena, coldArena, skipList,
+          new MemTableOptions().bloomFilter(filter));
+      filtered.put(createSegment("t1|a"), 1, RecordType.VALUE, createSegment("v"));
+      // Written behind the filter's back: only a lookup that skips the filter can find it
+      skipList.insert(createSegment("t9|z"), 1, RecordType.VALUE, createSegment("v"));
+
+      assertEquals(LookupStatus.FOUND, filtered.lookup(createSegment("t1|a"), 1));
+      assertEquals(LookupStatus.NOT_FOUND, filtered.lookup(createSegment("t9|z"), 1));
+      assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("t9|z"), 1));
+
+      assertEquals(List.of("t1|a"),
+          keys(filtered.newPrefixIterator(createSegment("t1|"), 1, false)));
+      assertEquals(List.of(), keys(filtered.newPrefixIterator(createSegment("t9|"), 1, false)));
+    }
+  }
+
+  private List<String> keys(EntryIterator iterator) {
+    List<String> keys = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      keys.add(toString(view.getKey()));
+    }
+    return keys;
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
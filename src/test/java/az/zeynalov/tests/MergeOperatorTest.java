@@ -0,0 +1,163 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.HashIndex;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.MergeOperator;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergeOperatorTest {
+
+  // Appends the newer operand to the older value, separated by a comma
+  private static final MergeOperator LIST_APPEND = (key, older, newer) -> {
+    byte[] left = older.toArray(ValueLayout.JAVA_BYTE);
+    byte[] right = newer.toArray(ValueLayout.JAVA_BYTE);
+    byte[] result = new byte[left.length + 1 + right.length];
+    System.arraycopy(left, 0, result, 0, left.length);
+    result[left.length] = ',';
+    System.arraycopy(right, 0, result, left.length + 1, right.length);
+    return MemorySegment.ofArray(result);
+  };
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private MemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().mergeOperator(LIST_APPEND));
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void operandsAreFoldedOntoTheBaseValue() {
+    MemorySegment key = createSegment("list:1");
+    memTable.put(key, 10, RecordType.VALUE, createSegment("a"));
+    memTable.put(key, 11, RecordType.MERGE, createSegment("b"));
+    memTable.put(key, 12, RecordType.MERGE, createSegment("c"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("a,b,c", toString(view.getValue()));
+    assertEquals(RecordType.VALUE, view.getType());
+    assertEquals(12, view.getSN());
+
+    assertTrue(memTable.get(key, 11, view));
+    assertEquals("a,b", toString(view.getValue()));
+    byte[] copy = new byte[view.getValueSize()];
+    view.copyValue(copy, 0);
+    assertEquals("a,b", new String(copy, StandardCharsets.UTF_8));
+
+    assertTrue(memTable.get(key, 10, view));
+    assertEquals("a", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 12));
+  }
+
+  @Test
+  void chainsWithoutBaseStartAtTheOldestOperand() {
+    MemorySegment key = createSegment("list:2");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("old"));
+    memTable.put(key, 2, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(key, 3, RecordType.MERGE, createSegment("x"));
+    memTable.put(key, 4, RecordType.MERGE, createSegment("y"));
+    memTable.put(createSegment("list:3"), 5, RecordType.MERGE, createSegment("z"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 4, view));
+    assertEquals("x,y", toString(view.getValue()));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, 2));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("list:3"), 5, view));
+    assertEquals("z", toString(view.getValue()));
+  }
+
+  @Test
+  void snapshotIteratorYieldsMergedValues() {
+    memTable.put(createSegment("c"), 1, RecordType.VALUE, createSegment("c1"));
+    memTable.put(createSegment("c"), 2, RecordType.MERGE, createSegment("c2"));
+    memTable.put(createSegment("b"), 3, RecordType.MERGE, createSegment("b3"));
+    memTable.put(createSegment("a"), 1, RecordType.VALUE, createSegment("a1"));
+    memTable.put(createSegment("c"), 6, RecordType.MERGE, createSegment("c6"));
+
+    assertEquals(List.of("c=c1,c2", "b=b3", "a=a1"), scanAll(memTable.newIterator(5, false)));
+    assertEquals(List.of("c=c1,c2,c6", "b=b3", "a=a1"),
+        scanAll(memTable.newIterator(Long.MAX_VALUE, false)));
+  }
+
+  @Test
+  void worksWithTheHashIndex() {
+    try (HashIndex hashIndex = new HashIndex(skipList, 1 << 10)) {
+      MemTable indexed = new MemTable(hotArena, coldArena, skipList,
+          new MemTableOptions().hashIndex(hashIndex).mergeOperator(LIST_APPEND));
+      MemorySegment key = createSegment("list:4");
+      indexed.put(key, 1, RecordType.VALUE, createSegment("p"));
+      indexed.put(key, 2, RecordType.MERGE, createSegment("q"));
+
+      EntryView view = new EntryView();
+      assertTrue(indexed.get(key, Long.MAX_VALUE, view));
+      assertEquals("p,q", toString(view.getValue()));
+    }
+  }
+
+  @Test
+  void readingOperandsWithoutOperatorFails() {
+    MemTable plain = new MemTable(hotArena, coldArena, skipList);
+    plain.put(createSegment("k"), 1, RecordType.MERGE, createSegment("v"));
+
+    assertEquals(LookupStatus.FOUND, plain.lookup(createSegment("k"), 1));
+    assertThrows(IllegalStateException.class,
+        () -> plain.lookup(createSegment("k"), 1, new EntryView()));
+  }
+
+  private List<String> scanAll(EntryIterator iterator) {
+    List<String> entries = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      entries.add(toString(view.getKey()) + "=" + toString(view.getValue()));
+    }
+    return entries;
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
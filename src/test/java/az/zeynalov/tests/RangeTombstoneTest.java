@@ -0,0 +1,206 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RangeTombstones;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeTombstoneTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private MemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList);
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void pointLookupsHonourTheRange() {
+    memTable.put(createSegment("t1|a"), 1, RecordType.VALUE, createSegment("a1"));
+    memTable.put(createSegment("t1|b"), 2, RecordType.VALUE, createSegment("b2"));
+    memTable.put(createSegment("t2|a"), 3, RecordType.VALUE, createSegment("x3"));
+    int hotSize = hotArena.getArenaSize();
+
+    memTable.deleteRange(createSegment("t1|"), createSegment("t2|"), 10);
+    assertEquals(hotSize, hotArena.getArenaSize(), "no node per deleted key");
+
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("t1|a"), 10));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("t1|zzz"), 10));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("t1|"), 10));
+    assertFalse(memTable.get(createSegment("t1|b"), 10, new EntryView()));
+    // The end is exclusive
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("t2|a"), 10));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("t2|"), 10));
+    // Older snapshots do not see the tombstone
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("t1|b"), 9));
+
+    memTable.put(createSegment("t1|b"), 11, RecordType.VALUE, createSegment("b11"));
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("t1|b"), 11, view));
+    assertEquals("b11", toString(view.getValue()));
+  }
+
+  @Test
+  void overlappingRangesAreFragmented() {
+    memTable.deleteRange(createSegment("b"), createSegment("f"), 5);
+    memTable.deleteRange(createSegment("d"), createSegment("h"), 8);
+    memTable.put(createSegment("c"), 6, RecordType.VALUE, createSegment("c6"));
+    memTable.put(createSegment("e"), 6, RecordType.VALUE, createSegment("e6"));
+    memTable.put(createSegment("g"), 4, RecordType.VALUE, createSegment("g4"));
+
+    assertEquals(2, memTable.getRangeTombstones().size());
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("c"), 10));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("e"), 10));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("e"), 7));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("g"), 8));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("g"), 7));
+    assertEquals(8, memTable.getRangeTombstones().getCoveringSN(createSegment("e"), 100));
+    assertEquals(5, memTable.getRangeTombstones().getCoveringSN(createSegment("e"), 7));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> memTable.deleteRange(createSegment("x"), createSegment("x"), 9));
+  }
+
+  @Test
+  void incrementalFragmentsMatchEveryTombstone() {
+    Random random = new Random(42);
+    List<long[]> ranges = new ArrayList<>();
+    for (int SN = 1; SN <= 200; SN++) {
+      int start = random.nextInt(26);
+      int end = start + 1 + random.nextInt(26 - start);
+      memTable.deleteRange(letter(start), letter(end), SN);
+      ranges.add(new long[]{start, end, SN});
+    }
+    assertEquals(200, memTable.getPublishedSN());
+
+    for (int key = 0; key < 26; key++) {
+      for (long readSN : new long[]{0, 50, 150, Long.MAX_VALUE}) {
+        long expected = RangeTombstones.NONE;
+        for (long[] range : ranges) {
+          if (range[0] <= key && key < range[1] && range[2] <= readSN) {
+            expected = Math.max(expected, range[2]);
+          }
+        }
+        assertEquals(expected, memTable.getRangeTombstones().getCoveringSN(letter(key), readSN),
+            "key " + key + " at " + readSN);
+      }
+    }
+  }
+
+  @Test
+  void scansSkipDeletedTenants() {
+    for (int tenant = 0; tenant < 5; tenant++) {
+      for (int i = 0; i < 2_000; i++) {
+        memTable.put(createSegment(String.format("t%d|%05d", tenant, i)), 1, RecordType.VALUE,
+            createSegment("v"));
+      }
+    }
+    memTable.deleteRange(createSegment("t1|"), createSegment("t4|"), 2);
+    // Written after the drop, so it must survive the scan
+    memTable.put(createSegment("t2|00007"), 3, RecordType.VALUE, createSegment("back"));
+
+    List<String> keys = scanKeys(memTable.newIterator(Long.MAX_VALUE, true));
+    assertEquals(4_001, keys.size());
+    assertEquals("t4|01999", keys.get(0));
+    assertTrue(keys.contains("t2|00007"));
+    assertFalse(keys.contains("t1|00000"));
+    assertFalse(keys.contains("t3|01999"));
+    assertEquals("t0|00000", keys.get(keys.size() - 1));
+
+    // At SN 2 the write at SN 3 is invisible; t3..t1 are skipped
+    assertEquals(List.of("t4|00000", "t0|01999"),
+        scanKeys(memTable.newIterator(2, false)).subList(1_999, 2_001));
+    assertEquals(4_000, scanKeys(memTable.newIterator(2, false)).size());
+    assertEquals(10_000, scanKeys(memTable.newIterator(1, false)).size());
+
+    // No write lands in t0 after this drop, so the scan seeks past it in one step
+    memTable.deleteRange(createSegment("t0|"), createSegment("t1|"), 4);
+    keys = scanKeys(memTable.newIterator(Long.MAX_VALUE, false));
+    assertEquals(2_001, keys.size());
+    assertEquals("t2|00007", keys.get(keys.size() - 1));
+  }
+
+  @Test
+  void mergeChainsStopAtTheRange() {
+    MemTable merging = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().mergeOperator((key, older, newer) -> {
+          byte[] left = older.toArray(ValueLayout.JAVA_BYTE);
+          byte[] right = newer.toArray(ValueLayout.JAVA_BYTE);
+          byte[] result = new byte[left.length + right.length];
+          System.arraycopy(left, 0, result, 0, left.length);
+          System.arraycopy(right, 0, result, left.length, right.length);
+          return MemorySegment.ofArray(result);
+        }));
+    MemorySegment key = createSegment("k");
+    merging.put(key, 1, RecordType.VALUE, createSegment("a"));
+    merging.put(key, 2, RecordType.MERGE, createSegment("b"));
+    merging.deleteRange(createSegment("j"), createSegment("l"), 3);
+    merging.put(key, 4, RecordType.MERGE, createSegment("c"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, merging.lookup(key, 4, view));
+    assertEquals("c", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, merging.lookup(key, 2, view));
+    assertEquals("ab", toString(view.getValue()));
+  }
+
+  private List<String> scanKeys(EntryIterator iterator) {
+    List<String> keys = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      keys.add(toString(view.getKey()));
+    }
+    return keys;
+  }
+
+  private MemorySegment letter(int i) {
+    return createSegment(String.valueOf((char) ('a' + i)));
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,193 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SequenceAllocator;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceAllocatorTest {
+
+  private final static ValueLayout.OfLong BE_LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.BIG_ENDIAN);
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+  }
+
+  @Test
+  void threadsTakeSNsFromTheirOwnLease() throws Exception {
+    SequenceAllocator allocator = new SequenceAllocator(1, 16);
+    assertEquals(1, take(allocator));
+    assertEquals(2, take(allocator));
+
+    long other = CompletableFuture.supplyAsync(() -> take(allocator)).get();
+    assertEquals(17, other);
+    assertEquals(3, take(allocator));
+
+    // A batch that does not fit into the rest of the lease gets a lease of its own
+    long first = allocator.acquire(20);
+    allocator.release();
+    assertEquals(33, first);
+    assertEquals(53, allocator.getNextSN());
+  }
+
+  @Test
+  void publishedSNStopsBelowTheOldestWriteInFlight() throws Exception {
+    SequenceAllocator allocator = new SequenceAllocator(1, 16);
+    long held = allocator.acquire();
+    assertEquals(1, held);
+
+    CompletableFuture.runAsync(() -> {
+      take(allocator);
+      take(allocator);
+    }).get();
+    assertEquals(0, allocator.getPublishedSN());
+
+    allocator.release();
+    // Both leases are idle now, so they are revoked and everything handed out is published
+    assertEquals(32, allocator.getPublishedSN());
+    // The revoked rest of the lease is never used
+    assertEquals(33, take(allocator));
+  }
+
+  @Test
+  void memTableTakesSNsFromTheAllocator() {
+    SequenceAllocator allocator = new SequenceAllocator();
+    MemTable memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().sequenceAllocator(allocator));
+
+    long SN = memTable.put(createSegment("a"), RecordType.VALUE, createSegment("1"));
+    long last = memTable.write(new WriteBatch()
+        .put(createSegment("b"), RecordType.VALUE, createSegment("2"))
+        .put(createSegment("c"), RecordType.VALUE, createSegment("3")));
+    assertEquals(SN + 2, last);
+    assertTrue(memTable.getSnapshotSN() >= last);
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("c"), last, view));
+    assertEquals(last, view.getSN());
+    assertThrows(IllegalStateException.class,
+        () -> new MemTable(hotArena, coldArena, skipList)
+            .put(createSegment("d"), RecordType.VALUE, createSegment("4")));
+  }
+
+  @Test
+  @Tag("concurrency")
+  void readsAtThePublishedSNNeverSeeGapsFillIn() throws Exception {
+    final int writers = 4;
+    final int perWriter = 5_000;
+    SequenceAllocator allocator = new SequenceAllocator(1, 8);
+    MemTable memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().sequenceAllocator(allocator));
+    long[][] SNs = new long[writers][perWriter];
+    List<long[]> observations = new ArrayList<>();
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService pool = Executors.newFixedThreadPool(writers);
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      int writer = w;
+      futures.add(pool.submit(() -> {
+        MemorySegment key = createSegment("writer-" + writer);
+        MemorySegment value = MemorySegment.ofArray(new byte[Long.BYTES]);
+        for (int i = 0; i < perWriter; i++) {
+          value.set(BE_LONG, 0, i);
+          SNs[writer][i] = memTable.put(key, RecordType.VALUE, value);
+        }
+      }));
+    }
+
+    // Each observation is the published SN followed by the last write of every writer seen there
+    CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+      EntryView view = new EntryView();
+      while (!done.get()) {
+        long[] observation = new long[writers + 1];
+        observation[0] = memTable.getSnapshotSN();
+        for (int w = 0; w < writers; w++) {
+          observation[w + 1] = memTable.lookup(createSegment("writer-" + w), observation[0], view)
+              == LookupStatus.FOUND ? view.getValue().get(BE_LONG, 0) : -1;
+        }
+        observations.add(observation);
+      }
+    });
+
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    done.set(true);
+    reader.get(60, TimeUnit.SECONDS);
+    pool.shutdown();
+
+    assertFalse(observations.isEmpty());
+    for (long[] observation : observations) {
+      for (int w = 0; w < writers; w++) {
+        int next = (int) observation[w + 1] + 1;
+        // A write at or below the published SN that the read missed would be a gap
+        if (next < perWriter) {
+          assertTrue(SNs[w][next] > observation[0]);
+        }
+      }
+    }
+    long[] last = new long[writers];
+    for (int w = 0; w < writers; w++) {
+      last[w] = SNs[w][perWriter - 1];
+    }
+    assertTrue(allocator.getPublishedSN() >= max(last));
+  }
+
+  private static long take(SequenceAllocator allocator) {
+    long SN = allocator.acquire();
+    allocator.release();
+    return SN;
+  }
+
+  private static long max(long[] values) {
+    long max = Long.MIN_VALUE;
+    for (long value : values) {
+      max = Math.max(max, value);
+    }
+    return max;
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,246 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SequenceAllocator;
+import az.zeynalov.memtable.ShardedMemTable;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedMemTableTest {
+
+  private ShardedMemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    // Shards: [, key-00100), [key-00100, key-00200), [key-00200, key-00300), [key-00300, )
+    memTable = new ShardedMemTable(
+        new MemorySegment[]{key(100), key(200), key(300)}, ShardedMemTableTest::newMemTable);
+  }
+
+  @AfterEach
+  void tearDown() {
+    memTable.close();
+  }
+
+  @Test
+  void keysAreRoutedByTheSplitKeys() {
+    assertEquals(4, memTable.getShardCount());
+    assertEquals(0, memTable.shardOf(key(0)));
+    assertEquals(0, memTable.shardOf(key(99)));
+    assertEquals(1, memTable.shardOf(key(100)));
+    assertEquals(2, memTable.shardOf(key(299)));
+    assertEquals(3, memTable.shardOf(key(300)));
+    assertEquals(3, memTable.shardOf(createSegment("z")));
+    assertEquals(0, memTable.shardOf(createSegment("")));
+
+    assertThrows(IllegalArgumentException.class, () -> new ShardedMemTable(
+        new MemorySegment[]{key(2), key(1)}, ShardedMemTableTest::newMemTable));
+    assertThrows(IllegalArgumentException.class, () -> new ShardedMemTable(
+        new MemorySegment[]{key(1), key(1)}, ShardedMemTableTest::newMemTable));
+  }
+
+  @Test
+  void splitKeysAreSampledAtTheQuantiles() {
+    List<MemorySegment> sample = new ArrayList<>();
+    for (int i = 399; i >= 0; i--) {
+      sample.add(key(i));
+    }
+    MemorySegment[] splits = ShardedMemTable.sampleSplitKeys(sample, 4);
+    assertEquals(3, splits.length);
+    assertEquals("key-00100", toString(splits[0]));
+    assertEquals("key-00200", toString(splits[1]));
+    assertEquals("key-00300", toString(splits[2]));
+
+    // Too few distinct keys for the shard count
+    List<MemorySegment> narrow = List.of(key(7), key(7), key(7), key(8));
+    MemorySegment[] deduped = ShardedMemTable.sampleSplitKeys(narrow, 4);
+    assertEquals(2, deduped.length);
+    assertEquals("key-00007", toString(deduped[0]));
+    assertEquals("key-00008", toString(deduped[1]));
+    assertEquals(0, ShardedMemTable.sampleSplitKeys(List.of(), 4).length);
+    assertThrows(IllegalArgumentException.class,
+        () -> ShardedMemTable.sampleSplitKeys(sample, 0));
+  }
+
+  @Test
+  void lookupsFollowMvccSemantics() {
+    memTable.put(key(150), 10, RecordType.VALUE, createSegment("old"));
+    memTable.put(key(150), 20, RecordType.VALUE, createSegment("new"));
+    memTable.put(key(350), 30, RecordType.VALUE, createSegment("other"));
+    memTable.put(key(350), 40, RecordType.TOMBSTONE, createSegment(""));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key(150), 15, view));
+    assertEquals("old", toString(view.getValue()));
+    assertTrue(memTable.get(key(150), Long.MAX_VALUE, view));
+    assertEquals("new", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key(350), 35));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key(350), Long.MAX_VALUE));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key(50), Long.MAX_VALUE));
+
+    assertEquals(LookupStatus.FOUND, memTable.getShard(1).lookup(key(150), Long.MAX_VALUE));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.getShard(0).lookup(key(150), Long.MAX_VALUE));
+    assertEquals(40, memTable.getShard(3).getPublishedSN());
+    // Shards 0 and 2 have no writes, which does not hold the watermark back
+    assertEquals(40, memTable.getPublishedSN());
+    assertEquals(40, memTable.getSnapshotSN());
+    memTable.deleteRange(key(50), key(60), 41);
+    assertEquals(41, memTable.getPublishedSN());
+  }
+
+  @Test
+  void sharedSequenceAllocatorGivesTheSnapshotSN() {
+    SequenceAllocator allocator = new SequenceAllocator();
+    try (ShardedMemTable shared = new ShardedMemTable(new MemorySegment[]{key(100)},
+        () -> newMemTable(new MemTableOptions().sequenceAllocator(allocator)))) {
+      long SN = shared.getShard(1).put(key(150), RecordType.VALUE, createSegment("value"));
+      assertEquals(-1, shared.getPublishedSN());
+      assertTrue(shared.getSnapshotSN() >= SN);
+    }
+  }
+
+  @Test
+  void iterationConcatenatesTheShardsInOrder() {
+    for (int i = 0; i < 400; i += 3) {
+      memTable.put(key(i), i, RecordType.VALUE, createSegment("value-" + i));
+    }
+
+    List<String> keys = new ArrayList<>();
+    EntryView view = new EntryView();
+    try (EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        iterator.read(view);
+        keys.add(toString(view.getKey()));
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 399; i >= 0; i--) {
+      if (i % 3 == 0) {
+        expected.add(toString(key(i)));
+      }
+    }
+    assertEquals(expected, keys);
+
+    try (EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false)) {
+      // key-00200 is the lowest key of shard 2 and not present, so the seek falls into shard 1
+      iterator.seek(key(200));
+      iterator.read(view);
+      assertEquals("key-00198", toString(view.getKey()));
+      iterator.seek(key(302));
+      iterator.read(view);
+      assertEquals("key-00300", toString(view.getKey()));
+      iterator.next();
+      iterator.read(view);
+      assertEquals("key-00297", toString(view.getKey()));
+      iterator.seek(createSegment("key-"));
+      assertFalse(iterator.isValid());
+    }
+  }
+
+  @Test
+  void rangeDeletesSpanShards() {
+    for (int i = 0; i < 400; i++) {
+      memTable.put(key(i), i, RecordType.VALUE, createSegment("value-" + i));
+    }
+    memTable.deleteRange(key(150), key(320), 1_000);
+    // The range ends where shard 2 starts
+    memTable.deleteRange(key(0), key(200), 2_000);
+    assertEquals(1, memTable.getShard(2).getRangeTombstones().size());
+
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key(149), 1_999));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key(149), Long.MAX_VALUE));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key(150), 1_999));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key(250), Long.MAX_VALUE));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key(319), Long.MAX_VALUE));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key(320), Long.MAX_VALUE));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key(250), 999));
+
+    int count = 0;
+    try (EntryIterator iterator = memTable.newIterator(1_999, false)) {
+      for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+        count++;
+      }
+    }
+    assertEquals(400 - 170, count);
+  }
+
+  @Test
+  void concurrentWritersLandInTheirShards() throws Exception {
+    int threads = 8;
+    int perThread = 2_000;
+    AtomicLong sequence = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < perThread; i++) {
+            int id = (i * threads + thread) % 400;
+            memTable.put(key(id), sequence.incrementAndGet(), RecordType.VALUE,
+                createSegment("value-" + id));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    EntryView view = new EntryView();
+    for (int i = 0; i < 400; i++) {
+      assertEquals(LookupStatus.FOUND, memTable.lookup(key(i), Long.MAX_VALUE, view));
+      assertEquals("value-" + i, toString(view.getValue()));
+      assertEquals(LookupStatus.FOUND,
+          memTable.getShard(memTable.shardOf(key(i))).lookup(key(i), Long.MAX_VALUE));
+    }
+    assertEquals(threads * perThread, memTable.getPublishedSN());
+  }
+
+  private static MemTable newMemTable() {
+    return newMemTable(new MemTableOptions());
+  }
+
+  private static MemTable newMemTable(MemTableOptions options) {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    return new MemTable(hotArena, coldArena, skipList, options);
+  }
+
+  private static MemorySegment key(int i) {
+    return createSegment(String.format("key-%05d", i));
+  }
+
+  private static String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+
+  private static MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
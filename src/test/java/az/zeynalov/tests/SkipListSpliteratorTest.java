@@ -0,0 +1,150 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static az.zeynalov.memtable.SkipList.COLD_ARENA_POINTER_OFFSET;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkipListSpliteratorTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void splitsIntoDisjointPartsCoveringTheWholeList() {
+    for (int i = 0; i < 50_000; i++) {
+      skipList.insert(createKey(i), 1, (byte) 1, createKey(i));
+    }
+
+    List<Integer> expected = new ArrayList<>();
+    skipList.forEach(expected::add);
+
+    List<Spliterator.OfInt> parts = new ArrayList<>();
+    parts.add(skipList.spliterator(Long.MAX_VALUE));
+    for (int round = 0; round < 4; round++) {
+      List<Spliterator.OfInt> next = new ArrayList<>();
+      for (Spliterator.OfInt part : parts) {
+        Spliterator.OfInt prefix = part.trySplit();
+        if (prefix != null) {
+          next.add(prefix);
+        }
+        next.add(part);
+      }
+      parts = next;
+    }
+    assertTrue(parts.size() > 8, "upper levels should give split points");
+
+    List<Integer> scanned = new ArrayList<>();
+    for (Spliterator.OfInt part : parts) {
+      part.forEachRemaining((int offset) -> scanned.add(offset));
+    }
+    assertEquals(expected, scanned);
+  }
+
+  @Test
+  void nodesInsertedBeforeTheFirstNodeAreScannedOnce() {
+    for (int i = 0; i < 10_000; i++) {
+      skipList.insert(createKey(i), 1, (byte) 1, createKey(i));
+    }
+    Spliterator.OfInt spliterator = skipList.spliterator(Long.MAX_VALUE);
+    // Keys are descending, so every one of these goes in front of the first node
+    for (int i = 10_000; i < 20_000; i++) {
+      skipList.insert(createKey(i), 1, (byte) 1, createKey(i));
+    }
+
+    List<Integer> expected = new ArrayList<>();
+    skipList.forEach(expected::add);
+
+    List<Spliterator.OfInt> parts = new ArrayList<>();
+    parts.add(spliterator);
+    for (int round = 0; round < 4; round++) {
+      List<Spliterator.OfInt> next = new ArrayList<>();
+      for (Spliterator.OfInt part : parts) {
+        Spliterator.OfInt prefix = part.trySplit();
+        if (prefix != null) {
+          next.add(prefix);
+        }
+        next.add(part);
+      }
+      parts = next;
+    }
+
+    List<Integer> scanned = new ArrayList<>();
+    for (Spliterator.OfInt part : parts) {
+      part.forEachRemaining((int offset) -> scanned.add(offset));
+    }
+    assertEquals(expected, scanned);
+  }
+
+  @Test
+  void parallelStreamSeesOnlyTheSnapshot() {
+    for (int i = 0; i < 20_000; i++) {
+      skipList.insert(createKey(i), i, (byte) 1, createKey(i));
+    }
+
+    List<Integer> visible = StreamSupport.intStream(skipList.spliterator(9_999), true)
+        .boxed()
+        .collect(Collectors.toList());
+
+    assertEquals(10_000, visible.size());
+    assertTrue(visible.stream().allMatch(offset -> readSN(offset) <= 9_999));
+
+    List<Integer> sequential = new ArrayList<>();
+    skipList.forEach(offset -> {
+      if (readSN(offset) <= 9_999) {
+        sequential.add(offset);
+      }
+    });
+    assertEquals(sequential, visible);
+  }
+
+  @Test
+  void emptyListHasNothingToSplit() {
+    Spliterator.OfInt spliterator = skipList.spliterator(Long.MAX_VALUE);
+    assertNull(spliterator.trySplit());
+    assertFalse(spliterator.tryAdvance((int offset) -> fail()));
+  }
+
+  private MemorySegment createKey(int i) {
+    byte[] keyBytes = ("key-" + String.format("%06d", i)).getBytes(StandardCharsets.UTF_8);
+    MemorySegment keySegment = testScope.allocate(keyBytes.length);
+    keySegment.copyFrom(MemorySegment.ofArray(keyBytes));
+    return keySegment;
+  }
+
+  private long readSN(int nodeOffset) {
+    return coldArena.readLong(hotArena.readInt(nodeOffset + COLD_ARENA_POINTER_OFFSET));
+  }
+}
@@ -0,0 +1,144 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.SnapshotIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotIteratorTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void yieldsOnlyTheNewestVisibleVersionPerKey() {
+    for (int sn = 1; sn <= 300; sn++) {
+      skipList.insert(createSegment("counter"), sn, RecordType.VALUE, createSegment("v" + sn));
+    }
+    skipList.insert(createSegment("alpha"), 5, RecordType.VALUE, createSegment("a5"));
+    skipList.insert(createSegment("zeta"), 200, RecordType.VALUE, createSegment("z200"));
+
+    assertEquals(List.of("counter=v150", "alpha=a5"), scan(150, false));
+    assertEquals(List.of("zeta=z200", "counter=v300", "alpha=a5"), scan(Long.MAX_VALUE, false));
+    assertEquals(List.of(), scan(0, false));
+  }
+
+  @Test
+  void hidesTombstonesUnlessAsked() {
+    skipList.insert(createSegment("b"), 1, RecordType.VALUE, createSegment("b1"));
+    skipList.insert(createSegment("b"), 2, RecordType.TOMBSTONE, createSegment(""));
+    skipList.insert(createSegment("a"), 1, RecordType.VALUE, createSegment("a1"));
+    skipList.insert(createSegment("c"), 3, RecordType.TOMBSTONE, createSegment(""));
+
+    assertEquals(List.of("a=a1"), scan(10, false));
+    assertEquals(List.of("c=", "b=", "a=a1"), scan(10, true));
+    assertEquals(List.of("b=b1", "a=a1"), scan(1, false));
+  }
+
+  @Test
+  void seekLandsOnTheFirstVisibleKeyAtOrAfterTheTarget() {
+    skipList.insert(createSegment("k3"), 1, RecordType.VALUE, createSegment("old"));
+    skipList.insert(createSegment("k3"), 9, RecordType.VALUE, createSegment("new"));
+    skipList.insert(createSegment("k1"), 1, RecordType.VALUE, createSegment("one"));
+
+    SnapshotIterator iterator = new SnapshotIterator(skipList, 5, false);
+    iterator.seek(createSegment("k4"));
+    assertEquals("k3=old", current(iterator));
+
+    iterator.seek(createSegment("k2"));
+    assertEquals("k1=one", current(iterator));
+
+    iterator.next();
+    assertFalse(iterator.isValid());
+  }
+
+  @Test
+  void concurrentWritesAboveTheSnapshotAreInvisible() throws Exception {
+    for (int i = 0; i < 2_000; i++) {
+      skipList.insert(createSegment(key(i)), 1, RecordType.VALUE, createSegment("base"));
+    }
+
+    AtomicBoolean stop = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      long sn = 2;
+      while (!stop.get() && sn < 200_000) {
+        int i = (int) (sn % 2_500);
+        skipList.insert(createSegment(key(i)), sn++, RecordType.VALUE, createSegment("late"));
+      }
+    });
+    writer.start();
+    try {
+      for (int round = 0; round < 20; round++) {
+        List<String> entries = scan(1, false);
+        assertEquals(2_000, entries.size());
+        assertTrue(entries.stream().allMatch(entry -> entry.endsWith("=base")));
+      }
+    } finally {
+      stop.set(true);
+      writer.join();
+    }
+  }
+
+  private List<String> scan(long SN, boolean includeTombstones) {
+    SnapshotIterator iterator = new SnapshotIterator(skipList, SN, includeTombstones);
+    List<String> entries = new ArrayList<>();
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      entries.add(current(iterator));
+    }
+    return entries;
+  }
+
+  private String current(SnapshotIterator iterator) {
+    EntryView view = new EntryView();
+    iterator.read(view);
+    return toString(view.getKey()) + "=" + toString(view.getValue());
+  }
+
+  private String key(int i) {
+    return "key-" + String.format("%06d", i);
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
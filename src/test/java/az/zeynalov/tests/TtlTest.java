@@ -0,0 +1,182 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.MergeOperator;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TtlTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private AtomicLong clock;
+  private MemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    clock = new AtomicLong(10_000);
+    memTable = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().clock(clock::get));
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+  }
+
+  @Test
+  void expiryIsStoredOnlyForEntriesWithATtl() {
+    memTable.put(createSegment("session:1"), 1, RecordType.VALUE, createSegment("token"), 12_000);
+    memTable.put(createSegment("user:1"), 2, RecordType.VALUE, createSegment("Alice"));
+
+    int session = skipList.get(createSegment("session:1"), Long.MAX_VALUE);
+    int user = skipList.get(createSegment("user:1"), Long.MAX_VALUE);
+    assertEquals(12_000, skipList.getExpiry(session));
+    assertEquals(SkipList.NO_EXPIRY, skipList.getExpiry(user));
+
+    // The suffix does not change the value or the type
+    EntryView view = new EntryView();
+    skipList.readEntry(session, view);
+    assertEquals("token", toString(view.getValue()));
+    assertEquals(RecordType.VALUE, view.getType());
+  }
+
+  @Test
+  void expiredEntriesReadAsDeleted() {
+    MemorySegment key = createSegment("session:1");
+    memTable.put(key, 1, RecordType.VALUE, createSegment("old"));
+    memTable.put(key, 2, RecordType.VALUE, createSegment("token"), 12_000);
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("token", toString(view.getValue()));
+
+    clock.set(12_000);
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE, view));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE));
+    assertFalse(memTable.get(key, Long.MAX_VALUE, view));
+    // The expired version hides the older one, but a snapshot below it still sees that one
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 1, view));
+    assertEquals("old", toString(view.getValue()));
+  }
+
+  @Test
+  void iteratorsSkipExpiredKeys() {
+    memTable.put(createSegment("k1"), 1, RecordType.VALUE, createSegment("a"), 11_000);
+    memTable.put(createSegment("k2"), 2, RecordType.VALUE, createSegment("b"));
+    memTable.put(createSegment("k3"), 3, RecordType.VALUE, createSegment("c"), 20_000);
+    memTable.put(createSegment("k4"), 4, RecordType.VALUE, createSegment("d"), 10_500);
+
+    assertEquals(List.of("k4", "k3", "k2", "k1"), keys(memTable.newIterator(Long.MAX_VALUE, true)));
+
+    clock.set(11_000);
+    EntryIterator flush = memTable.newIterator(Long.MAX_VALUE, true);
+    assertEquals(List.of("k3", "k2"), keys(flush));
+    assertEquals(List.of("k3"),
+        keys(memTable.newPrefixIterator(createSegment("k3"), Long.MAX_VALUE, false)));
+  }
+
+  @Test
+  void iteratorReadsAtItsCreationTime() {
+    memTable.put(createSegment("k1"), 1, RecordType.VALUE, createSegment("a"), 11_000);
+    EntryIterator iterator = memTable.newIterator(Long.MAX_VALUE, false);
+
+    clock.set(11_000);
+    assertEquals(List.of("k1"), keys(iterator));
+  }
+
+  @Test
+  void mergeChainStopsAtExpiredBase() {
+    MergeOperator concat = (key, older, newer) -> createSegment(
+        toString(older) + "," + toString(newer));
+    MemTable merging = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().clock(clock::get).mergeOperator(concat));
+    MemorySegment key = createSegment("list");
+    merging.put(key, 1, RecordType.VALUE, createSegment("a"), 11_000);
+    merging.put(key, 2, RecordType.MERGE, createSegment("b"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, merging.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("a,b", toString(view.getValue()));
+
+    clock.set(11_000);
+    assertEquals(LookupStatus.FOUND, merging.lookup(key, Long.MAX_VALUE, view));
+    assertEquals("b", toString(view.getValue()));
+  }
+
+  @Test
+  void inPlaceUpdatesNeverReuseEntriesWithATtl() {
+    MemTable inPlace = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().clock(clock::get).inPlaceUpdates(() -> Long.MAX_VALUE));
+    MemorySegment key = createSegment("cache");
+    inPlace.put(key, 1, RecordType.VALUE, createSegment("value1"), 11_000);
+    int first = skipList.get(key, Long.MAX_VALUE);
+    inPlace.put(key, 2, RecordType.VALUE, createSegment("value2"));
+
+    int second = skipList.get(key, Long.MAX_VALUE);
+    assertNotEquals(first, second);
+    assertEquals(SkipList.NO_EXPIRY, skipList.getExpiry(second));
+    assertEquals(11_000, skipList.getExpiry(first));
+  }
+
+  @Test
+  void expiredBytesAreCountedPerSecond() {
+    memTable.put(createSegment("k1"), 1, RecordType.VALUE, createSegment("aaaa"), 11_200);
+    memTable.put(createSegment("k2"), 2, RecordType.VALUE, createSegment("bb"), 12_500);
+    memTable.put(createSegment("k3"), 3, RecordType.VALUE, createSegment("c"));
+
+    long first = 20 + 2 + 4 + 8;
+    long second = 20 + 2 + 2 + 8;
+    assertEquals(first + second, memTable.getExpiringBytes());
+    assertEquals(0, memTable.getExpiredBytes());
+
+    // k1 has expired, but the rest of its second has not passed yet
+    clock.set(11_500);
+    assertEquals(0, memTable.getExpiredBytes());
+    clock.set(11_999);
+    assertEquals(first, memTable.getExpiredBytes());
+    clock.set(13_000);
+    assertEquals(first + second, memTable.getExpiredBytes());
+  }
+
+  private List<String> keys(EntryIterator iterator) {
+    List<String> keys = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      keys.add(toString(view.getKey()));
+    }
+    return keys;
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
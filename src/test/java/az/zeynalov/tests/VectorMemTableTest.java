@@ -0,0 +1,188 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.VectorMemTable;
+import az.zeynalov.memtable.exception.MemTableFrozenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorMemTableTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private VectorMemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    memTable = new VectorMemTable(hotArena, coldArena);
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void firstReadFreezesTheMemTable() {
+    memTable.put(createSegment("b"), 1, RecordType.VALUE, createSegment("b1"));
+    memTable.put(createSegment("a"), 2, RecordType.VALUE, createSegment("a2"));
+    assertFalse(memTable.isFrozen());
+    assertEquals(2, memTable.getSize());
+
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("a"), 5));
+    assertTrue(memTable.isFrozen());
+    assertThrows(MemTableFrozenException.class,
+        () -> memTable.put(createSegment("c"), 3, RecordType.VALUE, createSegment("c3")));
+    assertEquals(2, memTable.getSize());
+  }
+
+  @Test
+  void lookupsFollowMvccSemantics() {
+    MemorySegment key = createSegment("user:42");
+    memTable.put(key, 130, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(createSegment("user:4"), 1, RecordType.VALUE, createSegment("other"));
+    memTable.put(key, 120, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(key, 122, RecordType.VALUE, createSegment("Al"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 125, view));
+    assertEquals("Al", toString(view.getValue()));
+    assertEquals(122, view.getSN());
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 121, view));
+    assertEquals("Alicia", toString(view.getValue()));
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key, 100));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("user:43"), 200));
+    assertTrue(memTable.get(createSegment("user:4"), 1, view));
+    assertEquals("other", toString(view.getValue()));
+  }
+
+  @Test
+  void iteratorYieldsOneVisibleEntryPerKeyInOrder() {
+    memTable.put(createSegment("c"), 2, RecordType.VALUE, createSegment("c2"));
+    memTable.put(createSegment("a"), 1, RecordType.VALUE, createSegment("a1"));
+    memTable.put(createSegment("b"), 3, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(createSegment("c"), 5, RecordType.VALUE, createSegment("c5"));
+    memTable.put(createSegment("b"), 1, RecordType.VALUE, createSegment("b1"));
+
+    assertEquals(List.of("c=c2", "a=a1"), scanAll(memTable.newIterator(4, false)));
+    assertEquals(List.of("c=c5", "b=", "a=a1"), scanAll(memTable.newIterator(10, true)));
+    assertEquals(List.of("c=c2", "b=b1", "a=a1"), scanAll(memTable.newIterator(2, false)));
+
+    EntryIterator iterator = memTable.newIterator(10, false);
+    iterator.seek(createSegment("bb"));
+    assertEquals(List.of("a=a1"), scan(iterator));
+  }
+
+  @Test
+  void versionsInShuffledOrderAreSortedBySN() {
+    int keys = 500;
+    int versions = 40;
+    List<Integer> SNs = new ArrayList<>();
+    for (int SN = 1; SN <= keys * versions; SN++) {
+      SNs.add(SN);
+    }
+    Collections.shuffle(SNs, new Random(7));
+    for (int SN : SNs) {
+      memTable.put(createSegment("key-" + SN % keys), SN, RecordType.VALUE,
+          createSegment(Integer.toString(SN)));
+    }
+
+    EntryView view = new EntryView();
+    for (int key = 0; key < keys; key++) {
+      // The newest version of the key is the largest SN with that remainder
+      int newest = keys * (versions - 1) + key + (key == 0 ? keys : 0);
+      assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("key-" + key),
+          Long.MAX_VALUE, view));
+      assertEquals(newest, view.getSN());
+      assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("key-" + key),
+          newest - 1, view));
+      assertEquals(newest - keys, view.getSN());
+    }
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentAppendsAreAllSortedOnFreeze() throws Exception {
+    int threads = 8;
+    int perThread = 10_000;
+    AtomicLong sequence = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          memTable.put(createSegment(String.format("key-%02d-%05d", thread, i)),
+              sequence.incrementAndGet(), RecordType.VALUE, createSegment("v"));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    List<String> entries = scanAll(memTable.newIterator(Long.MAX_VALUE, false));
+    assertEquals(threads * perThread, entries.size());
+    List<String> sorted = new ArrayList<>(entries);
+    sorted.sort(Comparator.reverseOrder());
+    assertEquals(sorted, entries);
+  }
+
+  private List<String> scanAll(EntryIterator iterator) {
+    iterator.seekToFirst();
+    return scan(iterator);
+  }
+
+  private List<String> scan(EntryIterator iterator) {
+    List<String> entries = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (; iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      entries.add(toString(view.getKey()) + "=" + toString(view.getValue()));
+    }
+    return entries;
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
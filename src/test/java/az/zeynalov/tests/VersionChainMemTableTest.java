@@ -0,0 +1,198 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryIterator;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.VersionChainMemTable;
+import az.zeynalov.memtable.VersionChainSkipList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionChainMemTableTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private VersionChainSkipList skipList;
+  private VersionChainMemTable memTable;
+  private java.lang.foreign.Arena testScope;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new VersionChainSkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new VersionChainMemTable(hotArena, coldArena, skipList);
+    testScope = java.lang.foreign.Arena.ofShared();
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+    if (testScope.scope().isAlive()) {
+      testScope.close();
+    }
+  }
+
+  @Test
+  void readsFollowMvccSemantics() {
+    MemorySegment key = createSegment("user:42");
+    memTable.put(key, 120, RecordType.VALUE, createSegment("Alicia"));
+    memTable.put(key, 130, RecordType.TOMBSTONE, createSegment(""));
+    // Older SN arriving late lands in the middle of the chain
+    memTable.put(key, 122, RecordType.VALUE, createSegment("Al"));
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 125, view));
+    assertEquals("Al", toString(view.getValue()));
+    assertEquals("user:42", toString(view.getKey()));
+    assertEquals(122, view.getSN());
+
+    assertEquals(LookupStatus.FOUND, memTable.lookup(key, 121, view));
+    assertEquals("Alicia", toString(view.getValue()));
+
+    assertEquals(LookupStatus.DELETED, memTable.lookup(key, Long.MAX_VALUE));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(key, 100));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("user:4"), 200));
+  }
+
+  @Test
+  void overwritesDoNotGrowTheHotArena() {
+    Arena plainHot = new Arena();
+    Arena plainCold = new Arena();
+    try {
+      SkipList plain = new SkipList(plainHot, plainCold);
+      plain.init();
+
+      MemorySegment key = createSegment("counter");
+      for (int sn = 1; sn <= 10_000; sn++) {
+        MemorySegment value = createSegment("v" + sn);
+        memTable.put(key, sn, RecordType.VALUE, value);
+        plain.insert(key, sn, RecordType.VALUE, value);
+      }
+
+      assertTrue(hotArena.getArenaSize() < 256, "one node for one key");
+      assertTrue(plainHot.getArenaSize() > 10_000 * 16);
+
+      EntryView view = new EntryView();
+      assertTrue(memTable.get(key, 5_000, view));
+      assertEquals("v5000", toString(view.getValue()));
+    } finally {
+      plainHot.close();
+      plainCold.close();
+    }
+  }
+
+  @Test
+  void iteratorYieldsOneVisibleEntryPerKey() {
+    memTable.put(createSegment("a"), 1, RecordType.VALUE, createSegment("a1"));
+    memTable.put(createSegment("b"), 1, RecordType.VALUE, createSegment("b1"));
+    memTable.put(createSegment("b"), 3, RecordType.TOMBSTONE, createSegment(""));
+    memTable.put(createSegment("c"), 5, RecordType.VALUE, createSegment("c5"));
+    memTable.put(createSegment("c"), 2, RecordType.VALUE, createSegment("c2"));
+
+    assertEquals(List.of("c=c2", "a=a1"), scanAll(memTable.newIterator(4, false)));
+    assertEquals(List.of("c=c5", "b=", "a=a1"), scanAll(memTable.newIterator(10, true)));
+    assertEquals(List.of("c=c2", "b=b1", "a=a1"), scanAll(memTable.newIterator(2, false)));
+
+    EntryIterator iterator = memTable.newIterator(10, false);
+    iterator.seek(createSegment("bb"));
+    assertEquals(List.of("a=a1"), scan(iterator));
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentWritersOnTheSameNewKeysKeepEveryVersion() throws Exception {
+    int threads = 8;
+    int keys = 200;
+    int rounds = 50;
+    AtomicLong sequence = new AtomicLong();
+    CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(pool.submit(() -> {
+        barrier.await();
+        for (int r = 0; r < rounds; r++) {
+          for (int k = 0; k < keys; k++) {
+            memTable.put(createSegment("key-" + k), sequence.incrementAndGet(), RecordType.VALUE,
+                createSegment("x"));
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    List<Integer> nodes = new ArrayList<>();
+    skipList.forEach(nodes::add);
+    assertEquals(keys, nodes.size(), "every key must be indexed exactly once");
+
+    for (int node : nodes) {
+      int count = 0;
+      long previous = Long.MAX_VALUE;
+      for (long sn = Long.MAX_VALUE; ; ) {
+        int version = skipList.findVersion(node, sn);
+        if (version == -1) {
+          break;
+        }
+        EntryView view = new EntryView();
+        skipList.readEntry(node, version, view);
+        assertTrue(view.getSN() < previous, "chain must be newest first");
+        previous = view.getSN();
+        sn = view.getSN() - 1;
+        count++;
+      }
+      assertEquals(threads * rounds, count);
+    }
+  }
+
+  private List<String> scanAll(EntryIterator iterator) {
+    iterator.seekToFirst();
+    return scan(iterator);
+  }
+
+  private List<String> scan(EntryIterator iterator) {
+    List<String> entries = new ArrayList<>();
+    EntryView view = new EntryView();
+    for (; iterator.isValid(); iterator.next()) {
+      iterator.read(view);
+      entries.add(toString(view.getKey()) + "=" + toString(view.getValue()));
+    }
+    return entries;
+  }
+
+  private MemorySegment createSegment(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    MemorySegment segment = testScope.allocate(bytes.length);
+    segment.copyFrom(MemorySegment.ofArray(bytes));
+    return segment;
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,194 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.HashIndex;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableOptions;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBatchTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private SkipList skipList;
+  private MemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList);
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+  }
+
+  @Test
+  void recordsGetContiguousSNs() {
+    memTable.put(createSegment("a"), 1, RecordType.VALUE, createSegment("old"));
+    WriteBatch batch = new WriteBatch()
+        .put(createSegment("a"), RecordType.TOMBSTONE, createSegment(""))
+        .put(createSegment("b"), RecordType.VALUE, createSegment("bee"))
+        .put(createSegment("c"), RecordType.VALUE, createSegment("sea"), 5_000);
+    assertEquals(3, batch.getCount());
+
+    assertEquals(12, memTable.write(batch, 10));
+    assertEquals(12, memTable.getPublishedSN());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("a"), 12, view));
+    assertEquals(10, view.getSN());
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("b"), 12, view));
+    assertEquals(11, view.getSN());
+    assertEquals("bee", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("a"), 9, view));
+    assertEquals("old", toString(view.getValue()));
+
+    int c = skipList.get(createSegment("c"), 12);
+    assertEquals(5_000, skipList.getExpiry(c));
+    assertEquals(SkipList.NO_EXPIRY, skipList.getExpiry(skipList.get(createSegment("b"), 12)));
+  }
+
+  @Test
+  void batchIsReusableAfterClear() {
+    WriteBatch batch = new WriteBatch();
+    batch.put(createSegment("key-long"), RecordType.VALUE, createSegment("x".repeat(1000)));
+    memTable.write(batch, 1);
+
+    batch.clear();
+    assertTrue(batch.isEmpty());
+    batch.put(createSegment("k"), RecordType.VALUE, createSegment("v"));
+    assertEquals(24, batch.getByteSize());
+    memTable.write(batch, 2);
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("k"), 2, view));
+    assertEquals("v", toString(view.getValue()));
+    assertEquals(SkipList.NO_EXPIRY, skipList.getExpiry(skipList.get(createSegment("k"), 2)));
+    assertEquals(1000,
+        memTable.lookup(createSegment("key-long"), 2, view) == LookupStatus.FOUND
+            ? view.getValueSize() : -1);
+  }
+
+  @Test
+  void largeBatchesGrowTheBuffer() {
+    HashIndex hashIndex = new HashIndex(skipList, 1 << 12);
+    MemTable indexed = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().hashIndex(hashIndex));
+    WriteBatch batch = new WriteBatch();
+    for (int i = 0; i < 1_000; i++) {
+      batch.put(createSegment("key-" + i), RecordType.VALUE, createSegment("value-" + i));
+    }
+    indexed.write(batch, 100);
+
+    EntryView view = new EntryView();
+    for (int i = 0; i < 1_000; i++) {
+      assertEquals(LookupStatus.FOUND, indexed.lookup(createSegment("key-" + i), 1_099, view));
+      assertEquals("value-" + i, toString(view.getValue()));
+      assertEquals(100 + i, view.getSN());
+      assertEquals(skipList.get(createSegment("key-" + i), Long.MAX_VALUE),
+          hashIndex.find(createSegment("key-" + i)));
+    }
+    hashIndex.close();
+  }
+
+  @Test
+  void batchesAreNeverUpdatedInPlace() {
+    MemTable inPlace = new MemTable(hotArena, coldArena, skipList,
+        new MemTableOptions().inPlaceUpdates(() -> Long.MAX_VALUE));
+    inPlace.put(createSegment("k"), 1, RecordType.VALUE, createSegment("v1"));
+    int first = skipList.get(createSegment("k"), Long.MAX_VALUE);
+
+    inPlace.write(new WriteBatch()
+        .put(createSegment("k"), RecordType.VALUE, createSegment("v2"))
+        .put(createSegment("k"), RecordType.VALUE, createSegment("v3")), 2);
+
+    assertNotEquals(first, skipList.get(createSegment("k"), Long.MAX_VALUE));
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, inPlace.lookup(createSegment("k"), Long.MAX_VALUE, view));
+    assertEquals("v3", toString(view.getValue()));
+    assertEquals(3, view.getSN());
+  }
+
+  @Test
+  @Tag("concurrency")
+  void readersAtThePublishedSNNeverSeeHalfABatch() throws Exception {
+    final int keys = 16;
+    final int batches = 2_000;
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    Future<?> writer = pool.submit(() -> {
+      WriteBatch batch = new WriteBatch();
+      for (int t = 0; t < batches; t++) {
+        batch.clear();
+        for (int k = 0; k < keys; k++) {
+          batch.put(createSegment("key-" + k), RecordType.VALUE, createSegment("txn-" + t));
+        }
+        memTable.write(batch, (long) t * keys + 1);
+      }
+      done.set(true);
+    });
+
+    Future<?>[] readers = new Future<?>[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = pool.submit(() -> {
+        EntryView view = new EntryView();
+        while (!done.get()) {
+          long SN = memTable.getPublishedSN();
+          if (SN < 0) {
+            continue;
+          }
+          String expected = null;
+          for (int k = 0; k < keys; k++) {
+            assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("key-" + k), SN, view));
+            String value = toString(view.getValue());
+            if (expected == null) {
+              expected = value;
+            }
+            assertEquals(expected, value);
+          }
+        }
+      });
+    }
+
+    writer.get(30, TimeUnit.SECONDS);
+    for (Future<?> reader : readers) {
+      reader.get(30, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+    assertEquals((long) batches * keys, memTable.getPublishedSN());
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,166 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableManager;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBufferManager;
+import az.zeynalov.memtable.exception.ArenaCapacityException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBufferManagerTest {
+
+  private final static int VALUE_SIZE = 256 << 10;
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<MemTableManager> managers = new ArrayList<>();
+  private WriteBufferManager writeBufferManager;
+
+  @AfterEach
+  void tearDown() {
+    for (MemTableManager manager : managers) {
+      manager.close();
+    }
+  }
+
+  @Test
+  void arenasReportAllocationsAndFreeThemOnClose() {
+    writeBufferManager = new WriteBufferManager(1 << 20);
+    Arena first = new Arena(writeBufferManager);
+    Arena second = new Arena(writeBufferManager);
+
+    first.allocate(100);
+    first.allocate(8);
+    second.allocate(64);
+    // The padding in front of the second allocation counts as well
+    assertEquals(112 + 64, writeBufferManager.getMemoryUsage());
+    assertEquals(first.getArenaSize() + second.getArenaSize(),
+        writeBufferManager.getMemoryUsage());
+
+    first.close();
+    first.close();
+    assertEquals(64, writeBufferManager.getMemoryUsage());
+    second.close();
+    assertEquals(0, writeBufferManager.getMemoryUsage());
+  }
+
+  @Test
+  void arenasChargeTheirCapacityUntilClosed() {
+    writeBufferManager = new WriteBufferManager(64 << 20);
+    long capacity = writeBufferManager.getArenaCapacity(4);
+    assertEquals(8 << 20, capacity);
+    assertEquals(32 << 20, writeBufferManager.getArenaCapacity(1));
+    assertEquals(Arena.DEFAULT_CAPACITY, new WriteBufferManager(1L << 30).getArenaCapacity(1));
+    assertThrows(IllegalArgumentException.class, () -> writeBufferManager.getArenaCapacity(0));
+
+    Arena first = new Arena(capacity, writeBufferManager);
+    Arena second = new Arena(capacity, writeBufferManager);
+    assertEquals(2 * capacity, writeBufferManager.getCommittedMemory());
+    assertEquals(0, writeBufferManager.getMemoryUsage());
+    assertEquals(capacity, first.getCapacity());
+    assertThrows(ArenaCapacityException.class, () -> first.allocate((int) capacity + 1));
+
+    first.close();
+    assertEquals(capacity, writeBufferManager.getCommittedMemory());
+    second.close();
+    assertEquals(0, writeBufferManager.getCommittedMemory());
+    assertThrows(IllegalArgumentException.class, () -> new Arena(0));
+  }
+
+  @Test
+  void crossingTheWatermarkRotatesTheLargestActiveMemTable() {
+    writeBufferManager = new WriteBufferManager(8 << 20, 0.5);
+    MemTableManager hot = newManager();
+    MemTableManager cold = newManager();
+    MemTable hotFirst = hot.getActive();
+    MemTable coldFirst = cold.getActive();
+    MemorySegment value = MemorySegment.ofArray(new byte[VALUE_SIZE]);
+
+    for (int i = 0; i < 10; i++) {
+      hot.put(createSegment("hot-" + i), i, RecordType.VALUE, value);
+    }
+    for (int i = 0; i < 5; i++) {
+      cold.put(createSegment("cold-" + i), i, RecordType.VALUE, value);
+    }
+    assertFalse(writeBufferManager.shouldFlush());
+    assertSame(hotFirst, hot.getActive());
+
+    // Active memtables now hold more than half of the budget
+    cold.put(createSegment("cold-5"), 5, RecordType.VALUE, value);
+    assertNotSame(hotFirst, hot.getActive());
+    assertSame(coldFirst, cold.getActive());
+    assertEquals(List.of(hotFirst), hot.getImmutableMemTables());
+    assertFalse(writeBufferManager.shouldFlush());
+
+    // Frozen memtables stay readable and accounted for until their flush is done
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.FOUND, hot.lookup(createSegment("hot-3"), 100, view));
+    long beforeFlush = writeBufferManager.getMemoryUsage();
+    long frozen = hotFirst.getMemoryUsage();
+    runTasks();
+    assertTrue(hot.getImmutableMemTables().isEmpty());
+    // Running the tasks also prepared the spare memtables, whose head nodes are accounted
+    assertTrue(writeBufferManager.getMemoryUsage() <= beforeFlush - frozen + (8L << 10));
+    assertEquals(LookupStatus.NOT_FOUND, hot.lookup(createSegment("hot-3"), 100, view));
+  }
+
+  @Test
+  void frozenMemoryAloneDoesNotTriggerAnotherFlush() {
+    writeBufferManager = new WriteBufferManager(4 << 20, 0.9);
+    MemTableManager manager = newManager();
+    MemorySegment value = MemorySegment.ofArray(new byte[VALUE_SIZE]);
+
+    // 3.5 MB reach the mutable limit of 3.6 MB only with the next put
+    for (int i = 0; i < 14; i++) {
+      manager.put(createSegment("key-" + i), i, RecordType.VALUE, value);
+    }
+    assertTrue(manager.getImmutableMemTables().isEmpty());
+    manager.put(createSegment("key-14"), 14, RecordType.VALUE, value);
+    assertEquals(1, manager.getImmutableMemTables().size());
+
+    // The budget is exceeded, but most of it waits for a flush already
+    manager.put(createSegment("key-15"), 15, RecordType.VALUE, value);
+    assertTrue(writeBufferManager.getMemoryUsage() >= writeBufferManager.getBufferSize());
+    assertFalse(writeBufferManager.shouldFlush());
+    assertEquals(1, manager.getImmutableMemTables().size());
+  }
+
+  private MemTableManager newManager() {
+    MemTableManager manager = MemTableManager.create(this::newMemTable, memTable -> { }, tasks::add,
+        1.0, writeBufferManager);
+    managers.add(manager);
+    return manager;
+  }
+
+  private MemTable newMemTable() {
+    Arena hotArena = new Arena(writeBufferManager);
+    Arena coldArena = new Arena(writeBufferManager);
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    return new MemTable(hotArena, coldArena, skipList);
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,147 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.MemTableManager;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteControllerTest {
+
+  private final static int VALUE_SIZE = 256 << 10;
+
+  private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private MemTableManager manager;
+
+  @AfterEach
+  void tearDown() {
+    if (manager != null) {
+      manager.close();
+    }
+  }
+
+  @Test
+  void slowdownAdmitsTheDelayedWriteRate() {
+    WriteController controller = new WriteController()
+        .limits(1, Long.MAX_VALUE, 10, Long.MAX_VALUE)
+        .delayedWriteRate(4 << 20);
+    manager = newManager(controller);
+    MemorySegment value = MemorySegment.ofArray(new byte[VALUE_SIZE]);
+
+    int SN = 0;
+    while (manager.getImmutableMemTables().isEmpty()) {
+      assertEquals(WriteController.State.NORMAL, controller.getState(manager));
+      manager.put(createSegment("key-" + SN), SN, RecordType.VALUE, value);
+      SN++;
+    }
+    assertEquals(0, controller.getDelayedWrites());
+    assertEquals(WriteController.State.SLOWDOWN, controller.getState(manager));
+
+    // 2 MB at 4 MB per second
+    long start = System.nanoTime();
+    for (int i = 0; i < 8; i++, SN++) {
+      manager.put(createSegment("key-" + SN), SN, RecordType.VALUE, value);
+    }
+    long elapsed = System.nanoTime() - start;
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(400), "elapsed " + elapsed);
+    assertTrue(controller.getDelayedWrites() >= 7);
+    assertTrue(controller.getDelayedNanos() >= TimeUnit.MILLISECONDS.toNanos(400));
+    assertEquals(0, controller.getStalledWrites());
+  }
+
+  @Test
+  void stopWaitsUntilAFlushCompletes() throws Exception {
+    WriteController controller = new WriteController()
+        .limits(1, Long.MAX_VALUE, 1, Long.MAX_VALUE);
+    manager = newManager(controller);
+    MemorySegment value = MemorySegment.ofArray(new byte[VALUE_SIZE]);
+
+    int SN = 0;
+    while (manager.getImmutableMemTables().isEmpty()) {
+      manager.put(createSegment("key-" + SN), SN, RecordType.VALUE, value);
+      SN++;
+    }
+    assertEquals(WriteController.State.STOP, controller.getState(manager));
+
+    int stalledSN = SN;
+    CompletableFuture<Void> writer = CompletableFuture.runAsync(() ->
+        manager.put(createSegment("stalled"), stalledSN, RecordType.VALUE, value));
+    Thread.sleep(200);
+    assertFalse(writer.isDone());
+
+    runTasks();
+    writer.get(10, TimeUnit.SECONDS);
+    assertEquals(WriteController.State.NORMAL, controller.getState(manager));
+    assertEquals(1, controller.getStalledWrites());
+    assertTrue(controller.getStalledNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  void bytesOfFrozenMemTablesCountAsWell() {
+    WriteController controller = new WriteController()
+        .limits(10, 1 << 20, 10, Long.MAX_VALUE)
+        .delayedWriteRate(1L << 30);
+    manager = newManager(controller);
+    manager.put(createSegment("small"), 1, RecordType.VALUE, createSegment("value"));
+    manager.rotate();
+    assertEquals(WriteController.State.NORMAL, controller.getState(manager));
+
+    manager.put(createSegment("large"), 2, RecordType.VALUE,
+        MemorySegment.ofArray(new byte[2 << 20]));
+    manager.rotate();
+    assertEquals(WriteController.State.SLOWDOWN, controller.getState(manager));
+  }
+
+  @Test
+  void limitsAreValidated() {
+    WriteController controller = new WriteController();
+    assertThrows(IllegalArgumentException.class,
+        () -> controller.limits(0, Long.MAX_VALUE, 5, Long.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class,
+        () -> controller.limits(3, Long.MAX_VALUE, 5, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> controller.limits(6, Long.MAX_VALUE, 5, Long.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class, () -> controller.limits(2, 2 << 20, 2, 1 << 20));
+    assertThrows(IllegalArgumentException.class, () -> controller.delayedWriteRate(0));
+
+    // Both limits may move past the defaults in one call
+    controller.limits(8, 1 << 20, 10, 1 << 20);
+    assertThrows(IllegalArgumentException.class,
+        () -> controller.limits(8, 2 << 20, 10, 1 << 20));
+  }
+
+  private MemTableManager newManager(WriteController controller) {
+    return MemTableManager.create(this::newMemTable, memTable -> { }, tasks::add, 0.05, null,
+        controller);
+  }
+
+  private MemTable newMemTable() {
+    Arena hotArena = new Arena();
+    Arena coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    return new MemTable(hotArena, coldArena, skipList);
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,137 @@
+package az.zeynalov.tests;
+
+import az.zeynalov.memtable.Arena;
+import az.zeynalov.memtable.EntryView;
+import az.zeynalov.memtable.LookupStatus;
+import az.zeynalov.memtable.MemTable;
+import az.zeynalov.memtable.RecordType;
+import az.zeynalov.memtable.SkipList;
+import az.zeynalov.memtable.WriteBatch;
+import az.zeynalov.memtable.WriteQueue;
+import az.zeynalov.memtable.exception.ArenaCapacityException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteQueueTest {
+
+  private Arena hotArena;
+  private Arena coldArena;
+  private MemTable memTable;
+
+  @BeforeEach
+  void setUp() {
+    hotArena = new Arena();
+    coldArena = new Arena();
+    SkipList skipList = new SkipList(hotArena, coldArena);
+    skipList.init();
+    memTable = new MemTable(hotArena, coldArena, skipList);
+  }
+
+  @AfterEach
+  void tearDown() {
+    hotArena.close();
+    coldArena.close();
+  }
+
+  @Test
+  void queueAssignsConsecutiveSNs() {
+    WriteQueue queue = new WriteQueue(memTable, 100);
+    assertEquals(100, queue.put(createSegment("a"), RecordType.VALUE, createSegment("1")));
+    assertEquals(103, queue.write(new WriteBatch()
+        .put(createSegment("b"), RecordType.VALUE, createSegment("2"))
+        .put(createSegment("c"), RecordType.VALUE, createSegment("3"))
+        .put(createSegment("a"), RecordType.TOMBSTONE, createSegment(""))));
+    assertEquals(103, queue.getLastSN());
+    assertEquals(103, memTable.getPublishedSN());
+
+    EntryView view = new EntryView();
+    assertEquals(LookupStatus.DELETED, memTable.lookup(createSegment("a"), 103, view));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("a"), 102, view));
+    assertEquals("1", toString(view.getValue()));
+    assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment("c"), 103, view));
+    assertEquals(102, view.getSN());
+  }
+
+  @Test
+  void failedGroupConsumesNoSNs() {
+    WriteQueue queue = new WriteQueue(memTable, 1);
+    MemorySegment huge = MemorySegment.ofArray(new byte[40 << 20]);
+    queue.put(createSegment("big"), RecordType.VALUE, huge);
+
+    assertThrows(ArenaCapacityException.class,
+        () -> queue.put(createSegment("bigger"), RecordType.VALUE, huge));
+    assertEquals(1, queue.getLastSN());
+    assertEquals(2, queue.put(createSegment("small"), RecordType.VALUE, createSegment("ok")));
+    assertEquals(LookupStatus.NOT_FOUND, memTable.lookup(createSegment("bigger"), 2));
+  }
+
+  @Test
+  @Tag("concurrency")
+  void concurrentWritersGetEveryRecordInOnce() throws Exception {
+    final int threads = 8;
+    final int perThread = 5_000;
+    WriteQueue queue = new WriteQueue(memTable, 1, 64);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<long[]>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(pool.submit(() -> {
+        long[] sns = new long[perThread];
+        for (int i = 0; i < perThread; i++) {
+          String key = "t" + thread + "-" + i;
+          sns[i] = queue.put(createSegment(key), RecordType.VALUE, createSegment(key));
+          // The write is visible as soon as put returns
+          assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment(key), sns[i]));
+        }
+        return sns;
+      }));
+    }
+
+    BitSet seen = new BitSet();
+    for (Future<long[]> future : futures) {
+      for (long SN : future.get(60, TimeUnit.SECONDS)) {
+        assertFalse(seen.get((int) SN), "SN handed out twice: " + SN);
+        seen.set((int) SN);
+      }
+    }
+    pool.shutdown();
+
+    long total = (long) threads * perThread;
+    assertEquals(total, seen.cardinality());
+    assertEquals(1, seen.nextSetBit(0));
+    assertEquals(total, queue.getLastSN());
+    assertEquals(total, memTable.getPublishedSN());
+
+    EntryView view = new EntryView();
+    for (int t = 0; t < threads; t++) {
+      for (int i = 0; i < perThread; i += 97) {
+        String key = "t" + t + "-" + i;
+        assertEquals(LookupStatus.FOUND, memTable.lookup(createSegment(key), total, view));
+        assertEquals(key, toString(view.getValue()));
+      }
+    }
+  }
+
+  private MemorySegment createSegment(String value) {
+    return MemorySegment.ofArray(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String toString(MemorySegment segment) {
+    return new String(segment.toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+  }
+}